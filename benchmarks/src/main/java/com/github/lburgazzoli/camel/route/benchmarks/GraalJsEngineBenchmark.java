@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.graalvm.polyglot.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+
+/**
+ * Compares the startup time of a number of GraalJS scripts evaluated with a
+ * shared engine against scripts evaluated each with its own engine, which
+ * is equivalent to creating a context with {@code Context.create()}.
+ *
+ * Requires a GraalVM runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 10)
+@Fork(5)
+public class GraalJsEngineBenchmark {
+    @Param({ "true", "false" })
+    public boolean shared;
+
+    @Param({ "1", "10", "100" })
+    public int scripts;
+
+    private List<Resource> resources;
+
+    @Setup
+    public void setUp() {
+        resources = Loaders.scripts(Loaders.GRAALJS, scripts);
+    }
+
+    @Benchmark
+    public CamelContext load() throws Exception {
+        final CamelContext context = new DefaultCamelContext();
+
+        if (shared) {
+            try (Loaders.Loader loader = Loaders.graalJs(Engine.create())) {
+                for (Resource resource : resources) {
+                    loader.accept(resource, Loaders.builder(context));
+                }
+            }
+        } else {
+            for (Resource resource : resources) {
+                try (Loaders.Loader loader = Loaders.graalJs(Engine.create())) {
+                    loader.accept(resource, Loaders.builder(context));
+                }
+            }
+        }
+
+        return context;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.lburgazzoli.camel.route.scripting.GraalJsContextManager;
+import com.github.lburgazzoli.camel.route.scripting.GraalJsRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.GroovyRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.GroovyScriptCache;
+import com.github.lburgazzoli.camel.route.scripting.NashornRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.YamlRouteLoader;
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.util.function.ThrowingBiConsumer;
+import org.apache.commons.io.FileUtils;
+import org.graalvm.polyglot.Engine;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Creates the loaders and the scripts used by the benchmarks.
+ *
+ * All the scripts define the same route: a component with a script defined
+ * exchange formatter and a route with a script defined processor.
+ */
+final class Loaders {
+    static final String NASHORN = "nashorn";
+    static final String GRAALJS = "graaljs";
+    static final String GROOVY = "groovy";
+    static final String GROOVY_STATIC = "groovy-static";
+    static final String GROOVY_CACHED = "groovy-cached";
+    static final String YAML = "yaml";
+
+    private static final String JS = ""
+        + "var f = components.make('bench%1$d', 'org.apache.camel.component.log.LogComponent')\n"
+        + "f.exchangeFormatter = function(e) {\n"
+        + "    return 'body=' + e.in.body + ', headers=' + e.in.headers\n"
+        + "}\n"
+        + "from('direct:bench%1$d')\n"
+        + "    .routeId('bench%1$d')\n"
+        + "    .process(function(e) { e.getIn().setHeader('RandomValue', e.getIn().getBody()) })\n"
+        + "    .to('bench%1$d:bench')\n";
+
+    // written to be valid for both the dynamic and the static mode
+    private static final String GROOVY_SCRIPT = ""
+        + "def f = components.make('bench%1$d', org.apache.camel.component.log.LogComponent)\n"
+        + "f.exchangeFormatter = { org.apache.camel.Exchange e ->\n"
+        + "    'body=' + e.in.body + ', headers=' + e.in.headers\n"
+        + "}\n"
+        + "from('direct:bench%1$d')\n"
+        + "    .routeId('bench%1$d')\n"
+        + "    .process { org.apache.camel.Exchange e -> e.in.setHeader('RandomValue', e.in.body) }\n"
+        + "    .to('bench%1$d:bench')\n";
+
+    // yaml routes can not define callbacks so the processor is replaced by
+    // a simple expression and the formatter by a plain component property
+    private static final String YAML_SCRIPT = ""
+        + "components:\n"
+        + "  - name: bench%1$d\n"
+        + "    type: org.apache.camel.component.seda.SedaComponent\n"
+        + "    properties:\n"
+        + "      queueSize: 100\n"
+        + "routes:\n"
+        + "  - from: direct:bench%1$d\n"
+        + "    id: bench%1$d\n"
+        + "    steps:\n"
+        + "      - set-header:\n"
+        + "          name: RandomValue\n"
+        + "          simple: ${body}\n"
+        + "      - to: bench%1$d:bench\n";
+
+    // the same route as the yaml one, with no callbacks, so engines can be
+    // compared with the yaml loader
+    private static final String JS_DECLARATIVE = ""
+        + "var f = components.make('bench%1$d', 'org.apache.camel.component.seda.SedaComponent')\n"
+        + "f.queueSize = 100\n"
+        + "from('direct:bench%1$d')\n"
+        + "    .routeId('bench%1$d')\n"
+        + "    .setHeader('RandomValue').simple('${body}')\n"
+        + "    .to('bench%1$d:bench')\n";
+
+    private static final String GROOVY_DECLARATIVE = ""
+        + "def f = components.make('bench%1$d', org.apache.camel.component.seda.SedaComponent)\n"
+        + "f.queueSize = 100\n"
+        + "from('direct:bench%1$d')\n"
+        + "    .routeId('bench%1$d')\n"
+        + "    .setHeader('RandomValue').simple('${body}')\n"
+        + "    .to('bench%1$d:bench')\n";
+
+    private Loaders() {
+    }
+
+    /**
+     * Creates the given number of scripts for the given loader, each script
+     * defines a route and a component with distinct names.
+     */
+    static List<Resource> scripts(String loader, int count) {
+        final List<Resource> answer = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            answer.add(script(loader, i));
+        }
+
+        return answer;
+    }
+
+    /**
+     * Creates the given number of scripts defining routes with no callbacks,
+     * the routes are the same for all the loaders.
+     */
+    static List<Resource> declarativeScripts(String loader, int count) {
+        final List<Resource> answer = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            switch (loader) {
+            case NASHORN:
+                answer.add(resource(JS_DECLARATIVE, i, "bench" + i + ".js"));
+                break;
+            case GRAALJS:
+                answer.add(resource(JS_DECLARATIVE, i, "bench" + i + ".gjs"));
+                break;
+            case GROOVY:
+            case GROOVY_STATIC:
+            case GROOVY_CACHED:
+                answer.add(resource(GROOVY_DECLARATIVE, i, "bench" + i + ".groovy"));
+                break;
+            default:
+                answer.add(script(loader, i));
+                break;
+            }
+        }
+
+        return answer;
+    }
+
+    static Resource script(String loader, int index) {
+        switch (loader) {
+        case YAML:
+            return resource(YAML_SCRIPT, index, "bench" + index + ".yaml");
+        case NASHORN:
+            return resource(JS, index, "bench" + index + ".js");
+        case GRAALJS:
+            return resource(JS, index, "bench" + index + ".gjs");
+        case GROOVY:
+        case GROOVY_STATIC:
+        case GROOVY_CACHED:
+            return resource(GROOVY_SCRIPT, index, "bench" + index + ".groovy");
+        default:
+            throw new IllegalArgumentException("Unknown loader: " + loader);
+        }
+    }
+
+    static Loader create(String loader) throws IOException {
+        return create(loader, true);
+    }
+
+    /**
+     * Creates the given loader, script callbacks are replaced by typed
+     * adapters only if requested and supported by the loader.
+     */
+    static Loader create(String loader, boolean typedCallbacks) throws IOException {
+        switch (loader) {
+        case NASHORN:
+            return new Loader(new NashornRouteLoader(), null, null);
+        case GRAALJS:
+            return graalJs(Engine.create(), typedCallbacks);
+        case GROOVY: {
+            GroovyRouteLoader groovy = new GroovyRouteLoader();
+            groovy.setTypedCallbacks(typedCallbacks);
+
+            return new Loader(groovy, null, null);
+        }
+        case GROOVY_STATIC: {
+            GroovyRouteLoader groovy = new GroovyRouteLoader();
+            groovy.setCompileStatic(true);
+            groovy.setTypedCallbacks(typedCallbacks);
+
+            return new Loader(groovy, null, null);
+        }
+        case YAML:
+            return new Loader(new YamlRouteLoader(), null, null);
+        case GROOVY_CACHED: {
+            Path dir = Files.createTempDirectory("groovy-cache");
+            GroovyRouteLoader groovy = new GroovyRouteLoader(new GroovyScriptCache(dir));
+            groovy.setTypedCallbacks(typedCallbacks);
+
+            return new Loader(groovy, null, () -> FileUtils.deleteQuietly(dir.toFile()));
+        }
+        default:
+            throw new IllegalArgumentException("Unknown loader: " + loader);
+        }
+    }
+
+    static Loader graalJs(Engine engine) {
+        return graalJs(engine, true);
+    }
+
+    static Loader graalJs(Engine engine, boolean typedCallbacks) {
+        final GraalJsContextManager manager = new GraalJsContextManager(engine, 1);
+        final GraalJsRouteLoader loader = new GraalJsRouteLoader(manager);
+        loader.setTypedCallbacks(typedCallbacks);
+
+        return new Loader(loader, manager::close, engine::close);
+    }
+
+    /**
+     * Creates a builder that does nothing when configured so scripts can be
+     * evaluated against it.
+     */
+    static RouteBuilder builder(CamelContext context) {
+        return new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+            }
+        };
+    }
+
+    private static Resource resource(String template, int index, String name) {
+        return new ByteArrayResource(String.format(template, index).getBytes(StandardCharsets.UTF_8), name);
+    }
+
+    static class Loader implements ThrowingBiConsumer<Resource, RouteBuilder, Exception>, AutoCloseable {
+        private final ThrowingBiConsumer<Resource, RouteBuilder, Exception> delegate;
+        private final Runnable reset;
+        private final Runnable close;
+
+        Loader(ThrowingBiConsumer<Resource, RouteBuilder, Exception> delegate, Runnable reset, Runnable close) {
+            this.delegate = delegate;
+            this.reset = reset;
+            this.close = close;
+        }
+
+        @Override
+        public void accept(Resource resource, RouteBuilder builder) throws Exception {
+            delegate.accept(resource, builder);
+        }
+
+        /**
+         * Releases the resources created by the scripts evaluated so far but
+         * keeps the engine, if any, so it stays warm.
+         */
+        public void reset() {
+            if (reset != null) {
+                reset.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            reset();
+
+            if (close != null) {
+                close.run();
+            }
+        }
+    }
+}
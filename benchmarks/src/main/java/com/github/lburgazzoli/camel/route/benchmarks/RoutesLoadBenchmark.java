@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+
+/**
+ * Measures the time needed to evaluate a number of scripts.
+ *
+ * The cold benchmark creates a new loader, and therefore a new engine, for
+ * every invocation whereas the warm one reuses the same loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutesLoadBenchmark {
+    @Param({ Loaders.NASHORN, Loaders.GRAALJS, Loaders.GROOVY, Loaders.GROOVY_STATIC, Loaders.GROOVY_CACHED, Loaders.YAML })
+    public String loader;
+
+    @Param({ "1", "10", "100" })
+    public int scripts;
+
+    private List<Resource> resources;
+    private Loaders.Loader warm;
+
+    @Setup
+    public void setUp() throws Exception {
+        resources = Loaders.scripts(loader, scripts);
+        warm = Loaders.create(loader);
+    }
+
+    @TearDown
+    public void tearDown() {
+        warm.close();
+    }
+
+    @TearDown(Level.Invocation)
+    public void reset() {
+        warm.reset();
+    }
+
+    @Benchmark
+    public CamelContext cold() throws Exception {
+        try (Loaders.Loader cold = Loaders.create(loader)) {
+            return load(cold);
+        }
+    }
+
+    @Benchmark
+    public CamelContext warm() throws Exception {
+        return load(warm);
+    }
+
+    private CamelContext load(Loaders.Loader loader) throws Exception {
+        final CamelContext context = new DefaultCamelContext();
+
+        for (Resource resource : resources) {
+            loader.accept(resource, Loaders.builder(context));
+        }
+
+        return context;
+    }
+}
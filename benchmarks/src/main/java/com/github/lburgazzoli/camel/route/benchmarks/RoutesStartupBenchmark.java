@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+
+/**
+ * Measures the time needed to start a camel context with routes loaded by a
+ * freshly created loader in a fresh JVM, that is the startup cost paid by an
+ * application.
+ *
+ * All the loaders load the same routes, which do not define any callback, so
+ * the yaml loader can be compared with the script engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class RoutesStartupBenchmark {
+    @Param({ Loaders.YAML, Loaders.NASHORN, Loaders.GRAALJS, Loaders.GROOVY, Loaders.GROOVY_STATIC })
+    public String loader;
+
+    @Param({ "1", "10" })
+    public int scripts;
+
+    private List<Resource> resources;
+
+    @Setup
+    public void setUp() {
+        resources = Loaders.declarativeScripts(loader, scripts);
+    }
+
+    @Benchmark
+    public CamelContext startup() throws Exception {
+        final CamelContext context = new DefaultCamelContext();
+
+        try (Loaders.Loader routes = Loaders.create(loader)) {
+            for (Resource resource : resources) {
+                context.addRoutes(new RouteBuilder(context) {
+                    @Override
+                    public void configure() throws Exception {
+                        routes.accept(resource, this);
+                    }
+                });
+            }
+
+            context.start();
+            context.stop();
+        }
+
+        return context;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteModelHelper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.ProcessDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per exchange cost of the processor and of the exchange
+ * formatter defined by a script against the same callbacks defined by a Java
+ * {@link RouteBuilder}.
+ *
+ * The {@code -proxy} flavours of the loaders keep the callbacks created by
+ * the engines instead of replacing them with typed adapters.
+ *
+ * Run with {@code -prof gc} to get the allocation rate per invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScriptCallbackBenchmark {
+    public static final String JAVA = "java";
+    public static final String PROXY = "-proxy";
+
+    @Param({
+        JAVA,
+        Loaders.NASHORN,
+        Loaders.GRAALJS, Loaders.GRAALJS + PROXY,
+        Loaders.GROOVY, Loaders.GROOVY + PROXY,
+        Loaders.GROOVY_STATIC, Loaders.GROOVY_STATIC + PROXY })
+    public String loader;
+
+    private CamelContext context;
+    private Loaders.Loader scripts;
+    private Processor processor;
+    private ExchangeFormatter formatter;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+
+        final RouteBuilder builder;
+
+        if (JAVA.equals(loader)) {
+            builder = new RouteBuilder(context) {
+                @Override
+                public void configure() throws Exception {
+                    LogComponent component = new LogComponent();
+                    component.setExchangeFormatter(e -> "body=" + e.getIn().getBody() + ", headers=" + e.getIn().getHeaders());
+
+                    getContext().addComponent("bench0", component);
+
+                    from("direct:bench0")
+                        .routeId("bench0")
+                        .process(e -> e.getIn().setHeader("RandomValue", e.getIn().getBody()))
+                        .to("bench0:bench");
+                }
+            };
+
+            builder.configureRoutes((ModelCamelContext) context);
+        } else {
+            final boolean proxy = loader.endsWith(PROXY);
+            final String name = proxy ? loader.substring(0, loader.length() - PROXY.length()) : loader;
+
+            builder = Loaders.builder(context);
+            scripts = Loaders.create(name, !proxy);
+            scripts.accept(Loaders.script(name, 0), builder);
+        }
+
+        processor = RouteModelHelper.filter(builder.getRouteCollection().getRoutes(), ProcessDefinition.class).get(0).getProcessor();
+        formatter = context.getComponent("bench0", LogComponent.class).getExchangeFormatter();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (scripts != null) {
+            scripts.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ExchangeState {
+        Exchange exchange;
+
+        @Setup
+        public void setUp(ScriptCallbackBenchmark benchmark) {
+            exchange = new DefaultExchange(benchmark.context);
+            exchange.getIn().setBody("hello");
+        }
+    }
+
+    @Benchmark
+    public Exchange process(ExchangeState state) throws Exception {
+        processor.process(state.exchange);
+
+        return state.exchange;
+    }
+
+    @Benchmark
+    public String format(ExchangeState state) {
+        return formatter.format(state.exchange);
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.function.ToIntFunction;
+
+import com.github.lburgazzoli.camel.route.scripting.GraalJsContextManager;
+import com.github.lburgazzoli.camel.route.scripting.GraalJsContextPool;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the size and the occupancy of the GraalJS context pools, gauges
+ * are looked up by script name so they keep reporting the right values when
+ * a script is loaded again.
+ */
+final class GraalJsContextPoolMetrics implements MeterBinder {
+    private final GraalJsContextManager manager;
+
+    GraalJsContextPoolMetrics(GraalJsContextManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        manager.getPools().forEach(pool -> bindTo(registry, pool));
+        manager.addListener(pool -> bindTo(registry, pool));
+    }
+
+    private void bindTo(MeterRegistry registry, GraalJsContextPool pool) {
+        gauge(registry, pool.getName(), "camel.routes.loader.graaljs.pool.max", "The maximum number of contexts", GraalJsContextPool::getMaxSize);
+        gauge(registry, pool.getName(), "camel.routes.loader.graaljs.pool.size", "The number of contexts created", GraalJsContextPool::getSize);
+        gauge(registry, pool.getName(), "camel.routes.loader.graaljs.pool.active", "The number of contexts in use", GraalJsContextPool::getActive);
+    }
+
+    private void gauge(MeterRegistry registry, String script, String name, String description, ToIntFunction<GraalJsContextPool> function) {
+        Gauge.builder(name, manager, m -> {
+                GraalJsContextPool pool = m.getPool(script);
+                return pool != null ? function.applyAsInt(pool) : 0;
+            })
+            .description(description)
+            .tag("script", script)
+            .register(registry);
+    }
+}
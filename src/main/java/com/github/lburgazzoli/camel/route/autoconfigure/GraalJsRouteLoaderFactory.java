@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import com.github.lburgazzoli.camel.route.scripting.GraalJsContextManager;
+import com.github.lburgazzoli.camel.route.scripting.GraalJsRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory;
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutorManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Loads {@code .gjs} scripts with GraalJS, the loader uses the context
+ * manager bean if any or owns its engine otherwise.
+ */
+public final class GraalJsRouteLoaderFactory implements RouteLoaderFactory {
+    static final String POLYGLOT_CLASS = "org.graalvm.polyglot.Engine";
+    static final String GRAAL_JS_CLASS = "com.oracle.truffle.js.scriptengine.GraalJSEngineFactory";
+
+    @Override
+    public String getName() {
+        return "graaljs";
+    }
+
+    @Override
+    public boolean isAvailable(ClassLoader classLoader) {
+        return isGraalJsPresent(classLoader);
+    }
+
+    @Override
+    public RouteLoader newInstance(ApplicationContext applicationContext) {
+        final GraalJsContextManager manager = RouteLoaderRegistry.bean(applicationContext, GraalJsContextManager.class);
+        final GraalJsRouteLoader loader = manager != null
+            ? new GraalJsRouteLoader(manager)
+            : GraalJsRouteLoader.standalone(RouteLoaderRegistry.configuration(applicationContext).getGraalJs().getPool().getMaxSize());
+
+        final ScriptExecutorManager executors = RouteLoaderRegistry.bean(applicationContext, ScriptExecutorManager.class);
+        if (executors != null) {
+            loader.setExecutors(executors);
+        }
+
+        loader.setMetrics(RouteLoaderRegistry.metrics(applicationContext, getName()));
+
+        return loader;
+    }
+
+    static boolean isGraalJsPresent(ClassLoader classLoader) {
+        return ClassUtils.isPresent(POLYGLOT_CLASS, classLoader) && ClassUtils.isPresent(GRAAL_JS_CLASS, classLoader);
+    }
+}
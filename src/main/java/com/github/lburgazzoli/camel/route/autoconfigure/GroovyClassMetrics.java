@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.function.ToIntFunction;
+
+import com.github.lburgazzoli.camel.route.scripting.GroovyClassManager;
+import com.github.lburgazzoli.camel.route.scripting.GroovyScriptClasses;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the class loaders and the classes held for every groovy script,
+ * gauges are looked up by script name and sum the values of all the versions
+ * of the script that have not been released so they should go back to the
+ * same values after the routes of a reloaded script have been replaced.
+ *
+ * The metaspace used by all the scripts is reported by the JVM memory
+ * metrics, the bytecode size gives an estimate of the share of each script.
+ */
+final class GroovyClassMetrics implements MeterBinder {
+    private final GroovyClassManager manager;
+
+    GroovyClassMetrics(GroovyClassManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        manager.getScripts().forEach(script -> bindTo(registry, script));
+        manager.addListener(script -> bindTo(registry, script));
+    }
+
+    private void bindTo(MeterRegistry registry, String script) {
+        gauge(registry, script, "camel.routes.loader.groovy.loaders", "The number of class loaders not released", c -> 1);
+        gauge(registry, script, "camel.routes.loader.groovy.classes", "The number of classes defined", GroovyScriptClasses::getLoadedClassCount);
+        gauge(registry, script, "camel.routes.loader.groovy.bytecode", "The size in bytes of the bytecode of the classes", GroovyScriptClasses::getBytecodeSize);
+    }
+
+    private void gauge(MeterRegistry registry, String script, String name, String description, ToIntFunction<GroovyScriptClasses> function) {
+        Gauge.builder(name, manager, m -> m.getClasses(script).stream().mapToInt(function).sum())
+            .description(description)
+            .tag("script", script)
+            .register(registry);
+    }
+}
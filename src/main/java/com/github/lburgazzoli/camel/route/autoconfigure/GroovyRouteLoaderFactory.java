@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import com.github.lburgazzoli.camel.route.scripting.GroovyClassManager;
+import com.github.lburgazzoli.camel.route.scripting.GroovyRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.GroovyScriptCache;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory;
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutorManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Loads {@code .groovy} scripts, compiled classes are cached if the script
+ * cache bean is available and the loaded classes are owned by the class
+ * manager bean if any or by the loader otherwise.
+ */
+public final class GroovyRouteLoaderFactory implements RouteLoaderFactory {
+    static final String GROOVY_CLASS = "groovy.lang.GroovySystem";
+
+    @Override
+    public String getName() {
+        return "groovy";
+    }
+
+    @Override
+    public boolean isAvailable(ClassLoader classLoader) {
+        return ClassUtils.isPresent(GROOVY_CLASS, classLoader);
+    }
+
+    @Override
+    public RouteLoader newInstance(ApplicationContext applicationContext) {
+        final RoutesLoaderConfigurationProperties.Groovy groovy = RouteLoaderRegistry.configuration(applicationContext).getGroovy();
+        final GroovyScriptCache cache = RouteLoaderRegistry.bean(applicationContext, GroovyScriptCache.class);
+        final GroovyClassManager classes = RouteLoaderRegistry.bean(applicationContext, GroovyClassManager.class);
+        final GroovyRouteLoader loader = classes != null
+            ? new GroovyRouteLoader(cache, classes)
+            : new GroovyRouteLoader(cache);
+
+        loader.setCompileStatic(groovy.isCompileStatic());
+        loader.setInvokeDynamic(groovy.isInvokeDynamic());
+
+        final ScriptExecutorManager executors = RouteLoaderRegistry.bean(applicationContext, ScriptExecutorManager.class);
+        if (executors != null) {
+            loader.setExecutors(executors);
+        }
+
+        loader.setMetrics(RouteLoaderRegistry.metrics(applicationContext, getName()));
+
+        return loader;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import com.github.lburgazzoli.camel.route.scripting.GroovyScriptCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the hits and the misses of the on disk cache of the compiled groovy
+ * scripts, a miss means the script has been compiled.
+ */
+final class GroovyScriptCacheMetrics implements MeterBinder {
+    private final GroovyScriptCache cache;
+
+    GroovyScriptCacheMetrics(GroovyScriptCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("camel.routes.loader.groovy.cache", cache, GroovyScriptCache::getHits)
+            .description("The number of scripts found in the on disk cache")
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("camel.routes.loader.groovy.cache", cache, GroovyScriptCache::getMisses)
+            .description("The number of scripts not found in the on disk cache")
+            .tag("result", "miss")
+            .register(registry);
+    }
+}
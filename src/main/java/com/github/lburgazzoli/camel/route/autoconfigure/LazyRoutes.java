@@ -0,0 +1,424 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Route;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.InterceptSendToEndpoint;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.EndpointStrategy;
+import org.apache.camel.support.RoutePolicySupport;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.apache.camel.util.ObjectHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Holds the scripts whose evaluation is deferred till their routes are
+ * needed, scripts are indexed by the endpoints their routes consume from
+ * which are found by scanning the scripts for {@code from} clauses.
+ *
+ * A script is activated, that is evaluated and its routes added to the
+ * context, either explicitly or when a message is sent to one of its direct
+ * or seda endpoints. Once activated, its routes are removed again when they
+ * have not processed any exchange for the configured idle timeout and are
+ * activated again the next time they are needed.
+ */
+public final class LazyRoutes {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyRoutes.class);
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    // matches from('uri') in scripts and from: uri in yaml
+    private static final Pattern FROM = Pattern.compile("from\\s*(?:\\(\\s*['\"]([^'\"]+)['\"]|:\\s*['\"]?([^'\"\\s#]+))");
+
+    // the endpoints that can be activated by sending a message to them
+    private static final Set<String> TRIGGERS = new HashSet<>(Arrays.asList("direct", "direct-vm", "seda", "vm"));
+
+    private final long idleTimeout;
+    private final Map<String, LazyScript> endpoints;
+    private final Map<String, LazyScript> scripts;
+    private volatile CamelContext camelContext;
+    private volatile RoutesLoader loader;
+
+    LazyRoutes(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        this.endpoints = new ConcurrentHashMap<>();
+        this.scripts = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the endpoints consumed by the lazy routes.
+     */
+    public Set<String> getEndpoints() {
+        return Collections.unmodifiableSet(endpoints.keySet());
+    }
+
+    /**
+     * @return the names of the scripts whose evaluation is deferred.
+     */
+    public Set<String> getScripts() {
+        return Collections.unmodifiableSet(scripts.keySet());
+    }
+
+    /**
+     * @return true if the script with the given name has been activated and
+     *         its routes are loaded.
+     */
+    public boolean isActive(String script) {
+        final LazyScript answer = scripts.get(script);
+
+        return answer != null && answer.routes != null;
+    }
+
+    /**
+     * Activates the script defining a route consuming from the given endpoint.
+     *
+     * @return false if no lazy route consumes from the given endpoint.
+     */
+    public boolean activate(String endpoint) {
+        final LazyScript script = endpoints.get(normalize(endpoint));
+        if (script == null) {
+            return false;
+        }
+
+        script.activate();
+
+        return true;
+    }
+
+    /**
+     * Activates the script with the given name.
+     *
+     * @return false if there is no lazy script with the given name.
+     */
+    public boolean activateScript(String name) {
+        final LazyScript script = scripts.get(name);
+        if (script == null) {
+            return false;
+        }
+
+        script.activate();
+
+        return true;
+    }
+
+    /**
+     * Removes the routes of the script with the given name, they are loaded
+     * again the next time they are needed.
+     *
+     * @return false if there is no lazy script with the given name.
+     */
+    public boolean deactivateScript(String name) {
+        final LazyScript script = scripts.get(name);
+        if (script == null) {
+            return false;
+        }
+
+        script.deactivate();
+
+        return true;
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    /**
+     * Scans the given script for the endpoints its routes consume from.
+     */
+    static Set<String> scan(Resource resource) throws IOException {
+        final String content = ScriptHelper.text(resource);
+
+        final Set<String> answer = new LinkedHashSet<>();
+        final Matcher matcher = FROM.matcher(content);
+
+        while (matcher.find()) {
+            answer.add(normalize(matcher.group(1) != null ? matcher.group(1) : matcher.group(2)));
+        }
+
+        return answer;
+    }
+
+    /**
+     * Moves the scripts matching the given patterns from the given sources to
+     * the lazy routes, scripts whose endpoints can not be found by scanning
+     * them are loaded as usual.
+     */
+    void defer(List<RoutesSource> sources, List<String> patterns, Map<Object, Exception> failures) {
+        for (Iterator<RoutesSource> it = sources.iterator(); it.hasNext();) {
+            final RoutesSource source = it.next();
+            final String name = ScriptHelper.name(source.getResource());
+
+            if (patterns.stream().noneMatch(pattern -> MATCHER.match(pattern, name))) {
+                continue;
+            }
+
+            try {
+                final Set<String> endpoints = scan(source.getResource());
+
+                if (!endpoints.isEmpty()) {
+                    LOGGER.info("Deferring Camel routes from: {} consuming from {}", source.getResource(), endpoints);
+
+                    register(source.getResource(), source.getMapping(), endpoints);
+                    it.remove();
+                }
+            } catch (Exception e) {
+                failures.put(source.getResource(), e);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Defers the loading of the given script.
+     */
+    void register(Resource resource, RoutesLoaderMapping mapping, Set<String> uris) {
+        final LazyScript script = new LazyScript(resource, mapping);
+
+        scripts.put(script.name, script);
+
+        for (String uri : uris) {
+            final LazyScript previous = endpoints.putIfAbsent(uri, script);
+
+            if (previous != null) {
+                LOGGER.warn("Endpoint {} is consumed by both {} and {}, activated by {} only", uri, previous.name, script.name, previous.name);
+            }
+        }
+    }
+
+    /**
+     * Starts intercepting the messages sent to the lazy endpoints and, if
+     * an idle timeout is set, checking for idle routes.
+     */
+    void bind(CamelContext camelContext, RoutesLoader loader) {
+        this.camelContext = camelContext;
+        this.loader = loader;
+
+        if (scripts.isEmpty()) {
+            return;
+        }
+
+        camelContext.addRegisterEndpointCallback(new ActivationStrategy());
+
+        if (idleTimeout > 0) {
+            final ScheduledExecutorService executor = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "LazyRoutes");
+            final long period = Math.max(idleTimeout / 2, 1000L);
+
+            executor.scheduleWithFixedDelay(this::unloadIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void unloadIdle() {
+        final long now = System.currentTimeMillis();
+
+        for (LazyScript script : scripts.values()) {
+            if (script.routes != null) {
+                try {
+                    script.deactivateIfIdle(now);
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to unload idle Camel routes from: {}", script.resource, e);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String uri) {
+        String answer = uri;
+
+        final int query = answer.indexOf('?');
+        if (query != -1) {
+            answer = answer.substring(0, query);
+        }
+
+        return answer.replaceFirst("://", ":");
+    }
+
+    private static String scheme(String uri) {
+        final int index = uri.indexOf(':');
+
+        return index != -1 ? uri.substring(0, index) : uri;
+    }
+
+    /**
+     * Wraps the lazy direct and seda endpoints so sending a message to them
+     * activates the script consuming from them beforehand.
+     */
+    private final class ActivationStrategy implements EndpointStrategy {
+        @Override
+        public Endpoint registerEndpoint(String uri, Endpoint endpoint) {
+            if (endpoint instanceof InterceptSendToEndpoint) {
+                return endpoint;
+            }
+
+            final String key = normalize(endpoint.getEndpointUri());
+            final LazyScript script = endpoints.get(key);
+
+            if (script == null || !TRIGGERS.contains(scheme(key))) {
+                return endpoint;
+            }
+
+            final InterceptSendToEndpoint answer = new InterceptSendToEndpoint(endpoint, false);
+            answer.setDetour(script::enter);
+
+            return answer;
+        }
+    }
+
+    private final class LazyScript {
+        private final Resource resource;
+        private final RoutesLoaderMapping mapping;
+        private final String name;
+        private final AtomicInteger inflight;
+        private volatile List<RouteDefinition> routes;
+        private volatile long lastActivity;
+
+        LazyScript(Resource resource, RoutesLoaderMapping mapping) {
+            this.resource = resource;
+            this.mapping = mapping;
+            this.name = ScriptHelper.name(resource);
+            this.inflight = new AtomicInteger();
+        }
+
+        synchronized void activate() {
+            if (routes != null) {
+                return;
+            }
+            if (camelContext == null) {
+                throw new IllegalStateException("Lazy Camel routes are not bound to a context yet");
+            }
+
+            LOGGER.info("Activating Camel routes from: {}", resource);
+
+            // not warmed up as activation happens while a message is
+            // waiting for the routes
+            final RouteBuilder builder = loader.builder(camelContext, resource, mapping, false);
+
+            try {
+                builder.configureRoutes(camelContext.adapt(ModelCamelContext.class));
+
+                final List<RouteDefinition> definitions = new ArrayList<>(builder.getRouteCollection().getRoutes());
+                for (RouteDefinition definition : definitions) {
+                    definition.routePolicy(new ActivityPolicy(this));
+                }
+
+                lastActivity = System.currentTimeMillis();
+                loader.add(camelContext, resource, builder);
+                routes = definitions;
+            } catch (Exception e) {
+                throw ObjectHelper.wrapRuntimeCamelException(e);
+            }
+        }
+
+        /**
+         * Activates the script, if needed, for the given exchange which is
+         * about to be sent to one of its routes, the exchange is counted as
+         * in flight till it is done so the routes are not unloaded before
+         * they receive it.
+         */
+        void enter(Exchange exchange) {
+            synchronized (this) {
+                activate();
+
+                inflight.incrementAndGet();
+                lastActivity = System.currentTimeMillis();
+            }
+
+            exchange.addOnCompletion(new SynchronizationAdapter() {
+                @Override
+                public void onDone(Exchange exchange) {
+                    leave();
+                }
+            });
+        }
+
+        void leave() {
+            inflight.decrementAndGet();
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized void deactivate() {
+            final List<RouteDefinition> definitions = routes;
+            if (definitions == null) {
+                return;
+            }
+
+            LOGGER.info("Unloading Camel routes from: {}", resource);
+
+            routes = null;
+            loader.remove(camelContext, resource, definitions);
+        }
+
+        /**
+         * Removes the routes of the script if no exchange is in flight and
+         * they have been idle for the configured timeout, the check is done
+         * under the same lock as the activation.
+         */
+        synchronized void deactivateIfIdle(long now) {
+            if (routes != null && inflight.get() == 0 && now - lastActivity >= idleTimeout) {
+                deactivate();
+            }
+        }
+    }
+
+    /**
+     * Tracks the exchanges processed by the routes of a lazy script.
+     */
+    private static final class ActivityPolicy extends RoutePolicySupport {
+        private final LazyScript script;
+
+        ActivityPolicy(LazyScript script) {
+            this.script = script;
+        }
+
+        @Override
+        public void onExchangeBegin(Route route, Exchange exchange) {
+            script.inflight.incrementAndGet();
+            script.lastActivity = System.currentTimeMillis();
+        }
+
+        @Override
+        public void onExchangeDone(Route route, Exchange exchange) {
+            script.leave();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.lburgazzoli.camel.route.scripting.NashornRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory;
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutorManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Loads {@code .js} scripts with nashorn, unless GraalJS is available.
+ */
+public final class NashornRouteLoaderFactory implements RouteLoaderFactory {
+    @Override
+    public String getName() {
+        return "nashorn";
+    }
+
+    @Override
+    public boolean isAvailable(ClassLoader classLoader) {
+        return ClassUtils.isPresent("jdk.nashorn.api.scripting.NashornScriptEngineFactory", classLoader)
+            && !GraalJsRouteLoaderFactory.isGraalJsPresent(classLoader);
+    }
+
+    @Override
+    public RouteLoader newInstance(ApplicationContext applicationContext) {
+        final RoutesLoaderConfigurationProperties.Nashorn nashorn = RouteLoaderRegistry.configuration(applicationContext).getNashorn();
+        final List<String> options = new ArrayList<>();
+
+        if (nashorn.getOptimisticTypes() != null) {
+            options.add("--optimistic-types=" + nashorn.getOptimisticTypes());
+        }
+        if (nashorn.getClassCacheSize() != null) {
+            options.add("--class-cache-size=" + nashorn.getClassCacheSize());
+        }
+        if (nashorn.isPersistentCodeCache()) {
+            options.add("--persistent-code-cache=true");
+        }
+
+        final NashornRouteLoader loader = new NashornRouteLoader(options.toArray(new String[0]));
+
+        if (nashorn.isPersistentCodeCache()) {
+            loader.setCodeCacheDirectory(nashorn.getCodeCacheDirectory());
+        }
+
+        final ScriptExecutorManager executors = RouteLoaderRegistry.bean(applicationContext, ScriptExecutorManager.class);
+        if (executors != null) {
+            loader.setExecutors(executors);
+        }
+
+        loader.setMetrics(RouteLoaderRegistry.metrics(applicationContext, getName()));
+
+        return loader;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Holds the loaders created by the {@link RouteLoaderFactory}s found on the
+ * classpath and closes them when closed.
+ */
+final class RouteLoaderRegistry implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteLoaderRegistry.class);
+
+    private final List<RouteLoader> loaders;
+
+    private RouteLoaderRegistry(List<RouteLoader> loaders) {
+        this.loaders = loaders;
+    }
+
+    public List<RouteLoader> getLoaders() {
+        return Collections.unmodifiableList(loaders);
+    }
+
+    /**
+     * @return a mapping for every extension handled by the loaders, in the
+     *         order the factories have been discovered.
+     */
+    public List<RoutesLoaderMapping> getMappings() {
+        final List<RoutesLoaderMapping> answer = new ArrayList<>();
+
+        for (RouteLoader loader : loaders) {
+            for (String extension : loader.getExtensions()) {
+                answer.add(new RoutesLoaderMapping(extension, loader));
+            }
+        }
+
+        return answer;
+    }
+
+    @Override
+    public void close() {
+        for (RouteLoader loader : loaders) {
+            try {
+                loader.close();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to close route loader {}", loader, e);
+            }
+        }
+    }
+
+    /**
+     * Discovers the factories with the given class loader and creates the
+     * loaders of those that are available, the creation of the loaders is
+     * recorded by the startup timeline if any.
+     */
+    static RouteLoaderRegistry create(ApplicationContext applicationContext, ClassLoader classLoader) throws Exception {
+        final List<RouteLoader> loaders = new ArrayList<>();
+        final RoutesLoaderTimeline timeline = bean(applicationContext, RoutesLoaderTimeline.class);
+
+        try {
+            for (RouteLoaderFactory factory : ServiceLoader.load(RouteLoaderFactory.class, classLoader)) {
+                if (factory.isAvailable(classLoader)) {
+                    LOGGER.debug("Creating {} route loader", factory.getName());
+
+                    final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+                    final RouteLoader loader = factory.newInstance(applicationContext);
+
+                    if (timeline != null) {
+                        timeline.engine(loader, factory.getName());
+                        timeline.record(RoutesLoaderTimeline.ENGINE, factory.getName(), null, stopwatch);
+                    }
+
+                    loaders.add(loader);
+                } else {
+                    LOGGER.debug("Skipping {} route loader, not available", factory.getName());
+                }
+            }
+        } catch (Exception e) {
+            new RouteLoaderRegistry(loaders).close();
+            throw e;
+        }
+
+        return new RouteLoaderRegistry(loaders);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    /**
+     * @return the configuration bound to the application context or the
+     *         default configuration if there is none.
+     */
+    static RoutesLoaderConfigurationProperties configuration(ApplicationContext applicationContext) {
+        final RoutesLoaderConfigurationProperties answer = bean(applicationContext, RoutesLoaderConfigurationProperties.class);
+
+        return answer != null ? answer : new RoutesLoaderConfigurationProperties();
+    }
+
+    /**
+     * @return the metrics the loader of the given engine should report to,
+     *         that is the metrics bean, if any, and the startup timeline if
+     *         enabled.
+     */
+    static ScriptMetrics metrics(ApplicationContext applicationContext, String engine) {
+        final ScriptMetrics metrics = bean(applicationContext, ScriptMetrics.class);
+        final RoutesLoaderTimeline timeline = bean(applicationContext, RoutesLoaderTimeline.class);
+
+        return timeline != null ? timeline.metrics(engine, metrics) : metrics;
+    }
+
+    /**
+     * @return the only bean of the given type or null if there is none or
+     *         more than one.
+     */
+    static <T> T bean(ApplicationContext applicationContext, Class<T> type) {
+        final Map<String, T> beans = applicationContext.getBeansOfType(type);
+
+        return beans.size() == 1 ? beans.values().iterator().next() : null;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import org.apache.camel.CamelContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Loads the scripts found by traversing the configured directories, scripts
+ * are loaded as they are found instead of being resolved upfront so the
+ * memory used does not depend on the number of scripts.
+ */
+final class RoutesDirectories {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesDirectories.class);
+
+    private final RoutesLoaderConfigurationProperties configuration;
+    private final RoutesResolver resolver;
+    private final RoutesEvaluator evaluator;
+    private final RoutesPipeline pipeline;
+    private final RoutesLoaderProgress progress;
+
+    RoutesDirectories(
+            RoutesLoaderConfigurationProperties configuration,
+            RoutesResolver resolver,
+            RoutesEvaluator evaluator,
+            RoutesPipeline pipeline,
+            RoutesLoaderProgress progress) {
+
+        this.configuration = configuration;
+        this.resolver = resolver;
+        this.evaluator = evaluator;
+        this.pipeline = pipeline;
+        this.progress = progress;
+    }
+
+    /**
+     * Loads the scripts found in the configured directories, when parallel
+     * loading is enabled at most in-flight scripts are evaluated ahead of
+     * the one whose routes are being added.
+     */
+    void load(CamelContext camelContext, Set<RouteLoader> loaders, Map<Object, Exception> failures) {
+        final RoutesLoaderConfigurationProperties.Directories directories = configuration.getDirectories();
+        final RoutesLoaderConfigurationProperties.Parallel parallel = configuration.getParallel();
+
+        if (directories.getLocations().isEmpty()) {
+            return;
+        }
+
+        final ExecutorService executor = parallel.isEnabled()
+            ? camelContext.getExecutorServiceManager().newFixedThreadPool(this, "RoutesLoaderDirectories", parallel.getThreads())
+            : null;
+        final int inFlight = Math.max(1, directories.getInFlight());
+        final Deque<RoutesPipeline.Evaluation> evaluations = new ArrayDeque<>(inFlight);
+
+        try {
+            for (String location : directories.getLocations()) {
+                final RoutesDirectory directory;
+
+                try {
+                    directory = new RoutesDirectory(ResourceUtils.getFile(location).toPath(), directories.getPatterns());
+                } catch (Exception e) {
+                    failures.put(location, e);
+                    continue;
+                }
+
+                LOGGER.info("Loading additional Camel routes from directory: {}", directory.getRoot());
+
+                try {
+                    while (!Thread.currentThread().isInterrupted() && directory.hasNext()) {
+                        final Resource resource = new FileSystemResource(directory.next().toFile());
+                        final RoutesLoaderMapping mapping = resolver.mapping(resource);
+
+                        if (mapping == null) {
+                            continue;
+                        }
+
+                        final RoutesSource source = new RoutesSource(resource, mapping);
+
+                        evaluator.warmUp(loaders, Collections.singletonList(source));
+                        progress.discovered();
+
+                        if (executor == null) {
+                            pipeline.load(camelContext, Collections.singletonList(source), failures);
+                            continue;
+                        }
+                        if (evaluations.size() >= inFlight) {
+                            pipeline.complete(camelContext, evaluations.poll(), failures);
+                        }
+
+                        evaluations.add(pipeline.submit(camelContext, executor, source));
+                    }
+                } catch (UncheckedIOException e) {
+                    failures.put(location, e.getCause());
+                }
+            }
+
+            while (!evaluations.isEmpty()) {
+                pipeline.complete(camelContext, evaluations.poll(), failures);
+            }
+        } finally {
+            if (executor != null) {
+                camelContext.getExecutorServiceManager().shutdownNow(executor);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+/**
+ * Walks a directory depth first and yields the regular files whose path,
+ * relative to the directory, matches one of the given patterns.
+ *
+ * The entries of a directory are listed only when the walk enters it and are
+ * visited in lexicographic order so the walk is deterministic and only the
+ * listings of the directories on the current path are held in memory.
+ * Symbolic links to directories are not followed.
+ */
+final class RoutesDirectory implements Iterator<Path> {
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+    private static final Comparator<Path> ORDER = Comparator.comparing(path -> path.getFileName().toString());
+
+    private final Path root;
+    private final List<String> patterns;
+    private final Deque<Iterator<Path>> listings;
+    private Path next;
+
+    RoutesDirectory(Path root, List<String> patterns) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException(root + " is not a directory");
+        }
+
+        this.root = root;
+        this.patterns = patterns;
+        this.listings = new ArrayDeque<>();
+        this.listings.push(list(root));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @throws UncheckedIOException if a directory can not be listed.
+     */
+    @Override
+    public boolean hasNext() {
+        while (next == null && !listings.isEmpty()) {
+            final Iterator<Path> listing = listings.peek();
+
+            if (!listing.hasNext()) {
+                listings.pop();
+                continue;
+            }
+
+            final Path path = listing.next();
+
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    listings.push(list(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else if (Files.isRegularFile(path) && matches(path)) {
+                next = path;
+            }
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final Path answer = next;
+        next = null;
+
+        return answer;
+    }
+
+    private boolean matches(Path path) {
+        final String relative = StringUtils.cleanPath(root.relativize(path).toString());
+
+        for (String pattern : patterns) {
+            if (MATCHER.match(pattern, relative)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Iterator<Path> list(Path directory) throws IOException {
+        final List<Path> entries = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+
+        entries.sort(ORDER);
+
+        return entries.iterator();
+    }
+}
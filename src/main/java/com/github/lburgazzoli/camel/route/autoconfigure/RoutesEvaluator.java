@@ -0,0 +1,300 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lburgazzoli.camel.route.scripting.ExchangeFormattersAware;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteModelHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Creates the builders evaluating the scripts, the routes of a script are
+ * taken from the snapshot when it holds the script, its callbacks are then
+ * warmed up and instrumented if enabled.
+ */
+final class RoutesEvaluator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesEvaluator.class);
+
+    private final ApplicationContext applicationContext;
+    private final RoutesLoaderConfigurationProperties configuration;
+    private final ScriptMetrics metrics;
+    private final RoutesWarmUp warmUp;
+    private final RoutesLoaderTimeline timeline;
+    private volatile RoutesSnapshot snapshot;
+    private volatile RoutesManifest manifest;
+
+    RoutesEvaluator(
+            ApplicationContext applicationContext,
+            RoutesLoaderConfigurationProperties configuration,
+            ScriptMetrics metrics,
+            RoutesLoaderTimeline timeline) {
+
+        this.applicationContext = applicationContext;
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.timeline = timeline;
+        this.warmUp = configuration.getWarmUp().isEnabled() ? new RoutesWarmUp(configuration.getWarmUp()) : null;
+    }
+
+    /**
+     * Loads the snapshot and, if it holds any script, the manifest of the
+     * configured directories.
+     */
+    void open(Map<Object, Exception> failures) {
+        if (configuration.getSnapshot().isEnabled()) {
+            final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+
+            try {
+                snapshot = RoutesSnapshot.load(applicationContext, configuration.getSnapshot().getLocation());
+            } catch (Exception e) {
+                failures.put(configuration.getSnapshot().getLocation(), e);
+            }
+
+            if (timeline != null) {
+                timeline.record(RoutesLoaderTimeline.SNAPSHOT, null, null, stopwatch);
+            }
+        }
+
+        final String location = configuration.getDirectories().getManifest();
+
+        // the manifest only saves reading scripts held by the snapshot
+        if (StringUtils.hasText(location) && snapshot != null && !snapshot.isEmpty()) {
+            try {
+                manifest = RoutesManifest.load(ResourceUtils.getFile(location).toPath());
+            } catch (Exception e) {
+                failures.put(location, e);
+            }
+        }
+    }
+
+    /**
+     * Saves the manifest, if any, once the initial scripts are loaded.
+     */
+    void close(Map<Object, Exception> failures) {
+        final RoutesManifest manifest = this.manifest;
+
+        if (manifest != null) {
+            try {
+                manifest.save();
+            } catch (Exception e) {
+                failures.put(configuration.getDirectories().getManifest(), e);
+            }
+
+            // scripts reloaded later on are read as usual
+            this.manifest = null;
+        }
+    }
+
+    /**
+     * Gives the loaders needed by the given sources, and not yet in the given
+     * set, the chance to initialize their engine once before scripts are
+     * evaluated, possibly concurrently. Sources held by the snapshot are not
+     * evaluated so they do not need their engine.
+     */
+    void warmUp(Set<RouteLoader> loaders, List<RoutesSource> sources) {
+        for (RoutesSource source : sources) {
+            final Object mapper = source.getMapping().getMapper();
+
+            if (!(mapper instanceof RouteLoader) || loaders.contains(mapper) || isSnapshotted(source)) {
+                continue;
+            }
+
+            final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+
+            loaders.add((RouteLoader) mapper);
+
+            try {
+                ((RouteLoader) mapper).warmUp();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to warm up route loader {}", mapper, e);
+            }
+
+            if (timeline != null) {
+                timeline.record(RoutesLoaderTimeline.ENGINE, timeline.engine(mapper), null, stopwatch);
+            }
+        }
+    }
+
+    /**
+     * Creates a builder that evaluates the given resource when configured,
+     * if warm-up is enabled and requested the callbacks of the routes are
+     * warmed up before being instrumented so warm-up invocations are not
+     * recorded.
+     */
+    RouteBuilder builder(CamelContext camelContext, Resource resource, RoutesLoaderMapping mapping, boolean warm) {
+        final RoutesWarmUp warmUp = warm ? this.warmUp : null;
+
+        if (metrics == null && warmUp == null) {
+            return new RouteBuilder(camelContext) {
+                @Override
+                public void configure() throws Exception {
+                    evaluate(resource, mapping, this);
+                }
+            };
+        }
+
+        return new InstrumentedRouteBuilder(camelContext, resource, mapping, warmUp);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    /**
+     * @return true if the given source is held by the snapshot so it does
+     *         not need to be evaluated.
+     */
+    private boolean isSnapshotted(RoutesSource source) {
+        final RoutesSnapshot snapshot = this.snapshot;
+        final RoutesManifest manifest = this.manifest;
+        final Resource resource = source.getResource();
+        final String extension = source.getMapping().getExtension();
+
+        if (snapshot == null || snapshot.isEmpty()) {
+            return false;
+        }
+
+        try {
+            return manifest != null && resource.isFile()
+                ? snapshot.contains(manifest.key(resource.getFile().toPath(), extension))
+                : snapshot.contains(resource, extension);
+        } catch (Exception e) {
+            // the source is evaluated and reports the failure
+            return false;
+        }
+    }
+
+    /**
+     * Adds the routes defined by the given script to the builder, from the
+     * snapshot if it holds the script or by evaluating it otherwise.
+     */
+    private void evaluate(Resource resource, RoutesLoaderMapping mapping, RouteBuilder builder) throws Exception {
+        final RoutesSnapshot snapshot = this.snapshot;
+        final RoutesManifest manifest = this.manifest;
+
+        if (snapshot != null) {
+            final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+            final boolean found = manifest != null && resource.isFile()
+                ? snapshot.apply(manifest.key(resource.getFile().toPath(), mapping.getExtension()), builder)
+                : snapshot.apply(resource, mapping.getExtension(), builder);
+
+            if (timeline != null) {
+                timeline.record(RoutesLoaderTimeline.SNAPSHOT, timeline.engine(mapping.getMapper()), ScriptHelper.name(resource), stopwatch);
+            }
+            if (found) {
+                return;
+            }
+        }
+
+        mapping.getMapper().accept(resource, builder);
+    }
+
+    /**
+     * Wraps the callbacks provided by the script so their invocations are
+     * recorded, routes are left untouched when metrics are not enabled.
+     */
+    private void instrument(String script, List<RouteDefinition> routes) {
+        RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+            @Override
+            public Processor processor(RouteDefinition route, Processor processor) {
+                return metrics.processor(script, route, processor);
+            }
+
+            @Override
+            public Predicate predicate(RouteDefinition route, Predicate predicate) {
+                return metrics.predicate(script, route, predicate);
+            }
+
+            @Override
+            public Expression expression(RouteDefinition route, Expression expression) {
+                return metrics.expression(script, route, expression);
+            }
+        });
+    }
+
+    /**
+     * Evaluates a script and then warms up and instruments its callbacks,
+     * the exchange formatters the script sets on log components are
+     * reported by the loader.
+     */
+    private final class InstrumentedRouteBuilder extends RouteBuilder implements ExchangeFormattersAware {
+        private final Resource resource;
+        private final RoutesLoaderMapping mapping;
+        private final RoutesWarmUp warmUp;
+        private List<ExchangeFormatter> formatters;
+
+        InstrumentedRouteBuilder(CamelContext camelContext, Resource resource, RoutesLoaderMapping mapping, RoutesWarmUp warmUp) {
+            super(camelContext);
+
+            this.resource = resource;
+            this.mapping = mapping;
+            this.warmUp = warmUp;
+            this.formatters = Collections.emptyList();
+        }
+
+        @Override
+        public void setExchangeFormatters(List<ExchangeFormatter> formatters) {
+            this.formatters = formatters;
+        }
+
+        @Override
+        public void configure() throws Exception {
+            final String script = ScriptHelper.name(resource);
+
+            try {
+                evaluate(resource, mapping, this);
+            } catch (Exception e) {
+                if (metrics != null) {
+                    metrics.failure(script);
+                }
+
+                throw e;
+            }
+
+            final List<RouteDefinition> routes = getRouteCollection().getRoutes();
+
+            if (warmUp != null) {
+                warmUp.warmUp(getContext(), script, routes, formatters);
+            }
+            if (metrics != null) {
+                metrics.routes(script, routes.size());
+                instrument(script, routes);
+            }
+        }
+    }
+}
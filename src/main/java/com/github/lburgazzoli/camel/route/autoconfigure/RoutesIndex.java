@@ -0,0 +1,255 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+
+/**
+ * A list of the route scripts available on the classpath generated at build
+ * time so they can be resolved without scanning the classpath at startup.
+ *
+ * The index is a text file with one classpath location per line, it can be
+ * generated by running this class with the classes directory and a comma
+ * separated list of patterns, relative to the classes directory, as
+ * arguments.
+ *
+ * An index only covers the classpath root, the jar or the directory, it has
+ * been found in: its entries are resolved against that root and the other
+ * roots are scanned as usual.
+ */
+public final class RoutesIndex {
+    public static final String DEFAULT_LOCATION = "META-INF/camel-routes.idx";
+
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    private final Map<String, List<String>> roots;
+
+    private RoutesIndex(Map<String, List<String>> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * @return the paths of the indexed scripts, relative to the root of
+     *         their index.
+     */
+    public List<String> getEntries() {
+        return roots.values().stream()
+            .flatMap(List::stream)
+            .collect(Collectors.toList());
+    }
+
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    /**
+     * Resolves the given location, the scripts of the classpath roots that
+     * have an index are taken from their index and the other roots, or any
+     * location that is not a classpath pattern, are resolved by the given
+     * resolver.
+     */
+    public List<Resource> resolve(ResourcePatternResolver resolver, String location) throws IOException {
+        final String path = path(location);
+
+        if (roots.isEmpty() || !isClasspath(location) || !MATCHER.isPattern(path)) {
+            return Arrays.asList(resolver.getResources(location));
+        }
+
+        final boolean all = location.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX);
+        final String directory = directory(path);
+        final String pattern = path.substring(directory.length());
+        final Set<Resource> answer = new LinkedHashSet<>();
+
+        // every indexed root is covered by a classpath*: location even if
+        // its jar has no entry for the directory
+        if (all) {
+            for (String root : roots.keySet()) {
+                resolve(resolver, root, path, answer);
+            }
+        }
+
+        final Resource[] directories = all
+            ? resolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + directory)
+            : new Resource[] { resolver.getResource(ResourcePatternResolver.CLASSPATH_URL_PREFIX + directory) };
+
+        for (Resource candidate : directories) {
+            if (!candidate.exists()) {
+                continue;
+            }
+
+            final String url = candidate.getURL().toString();
+            final String root = root(url, directory);
+
+            if (root == null) {
+                answer.addAll(Arrays.asList(resolver.getResources(url + pattern)));
+            } else if (!all) {
+                resolve(resolver, root, path, answer);
+            }
+        }
+
+        return new ArrayList<>(answer);
+    }
+
+    /**
+     * Reads all the index files found at the given location, every index
+     * is bound to the classpath root it has been found in.
+     */
+    public static RoutesIndex load(ResourcePatternResolver resolver, String location) throws IOException {
+        final Map<String, List<String>> roots = new LinkedHashMap<>();
+
+        if (StringUtils.hasText(location)) {
+            final String path = path(location);
+
+            for (Resource resource : resolver.getResources(location)) {
+                final String url = resource.getURL().toString();
+
+                // the root can only be told for an index found at a known
+                // path, the roots of other indexes are scanned
+                if (!url.endsWith(path)) {
+                    continue;
+                }
+
+                final List<String> entries = roots.computeIfAbsent(url.substring(0, url.length() - path.length()), k -> new ArrayList<>());
+
+                try (InputStream is = resource.getInputStream();
+                     BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            entries.add(path(line));
+                        }
+                    }
+                }
+            }
+        }
+
+        return new RoutesIndex(roots);
+    }
+
+    // ********************************
+    //
+    // Generator
+    //
+    // ********************************
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: RoutesIndex <classes directory> <patterns>");
+        }
+
+        final Path root = Paths.get(args[0]);
+        final String[] patterns = StringUtils.commaDelimitedListToStringArray(args[1]);
+        final Path index = root.resolve(DEFAULT_LOCATION);
+
+        final List<String> entries;
+        try (Stream<Path> paths = Files.walk(root)) {
+            entries = paths
+                .filter(Files::isRegularFile)
+                .map(path -> StringUtils.cleanPath(root.relativize(path).toString()))
+                .filter(path -> Stream.of(patterns).anyMatch(pattern -> MATCHER.match(pattern.trim(), path)))
+                .sorted()
+                .map(path -> ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + path)
+                .collect(Collectors.toList());
+        }
+
+        Files.createDirectories(index.getParent());
+        Files.write(index, entries, StandardCharsets.UTF_8);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void resolve(ResourcePatternResolver resolver, String root, String path, Set<Resource> answer) {
+        for (String entry : roots.get(root)) {
+            if (MATCHER.match(path, entry)) {
+                answer.add(resolver.getResource(root + entry));
+            }
+        }
+    }
+
+    /**
+     * @return the indexed root the given url of a directory belongs to or
+     *         null if the root of the directory has no index.
+     */
+    private String root(String url, String directory) {
+        for (String root : roots.keySet()) {
+            if (url.equals(root + directory)) {
+                return root;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the leading part of the given path without wildcards, as
+     *         Spring determines the root directory of a pattern.
+     */
+    private static String directory(String path) {
+        int end = path.length();
+
+        while (end > 0 && MATCHER.isPattern(path.substring(0, end))) {
+            end = path.lastIndexOf('/', end - 2) + 1;
+        }
+
+        return path.substring(0, end);
+    }
+
+    private static boolean isClasspath(String location) {
+        return location.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)
+            || location.startsWith(ResourcePatternResolver.CLASSPATH_URL_PREFIX);
+    }
+
+    private static String path(String location) {
+        String path = location;
+
+        if (path.startsWith(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX)) {
+            path = path.substring(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX.length());
+        } else if (path.startsWith(ResourcePatternResolver.CLASSPATH_URL_PREFIX)) {
+            path = path.substring(ResourcePatternResolver.CLASSPATH_URL_PREFIX.length());
+        }
+
+        return StringUtils.trimLeadingCharacter(path, '/');
+    }
+}
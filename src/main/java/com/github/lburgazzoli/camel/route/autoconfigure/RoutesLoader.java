@@ -16,58 +16,270 @@
  */
 package com.github.lburgazzoli.camel.route.autoconfigure;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
 import org.apache.camel.CamelContext;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.RouteDefinition;
 import org.apache.camel.spring.boot.CamelContextConfiguration;
-import org.apache.camel.util.function.ThrowingBiConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.Resource;
 
+/**
+ * Loads the routes defined by the scripts found in the configured locations
+ * and directories, the features of the loader are delegated to:
+ * <ul>
+ *   <li>{@link RoutesResolver}: the resolution of the locations and libraries</li>
+ *   <li>{@link RoutesEvaluator}: the evaluation of the scripts, snapshot, warm-up and instrumentation</li>
+ *   <li>{@link RoutesPipeline}: the sequential or parallel loading of the scripts</li>
+ *   <li>{@link RoutesDirectories}: the loading of the scripts found in directories</li>
+ *   <li>{@link LazyRoutes}: the deferred loading of the scripts</li>
+ *   <li>{@link RoutesReloader}: the reloading of the scripts</li>
+ * </ul>
+ */
 final class RoutesLoader implements CamelContextConfiguration {
     private static final Logger LOGGER = LoggerFactory.getLogger(RoutesLoader.class);
 
-    private final ApplicationContext applicationContext;
     private final RoutesLoaderConfigurationProperties configuration;
-    private final String extension;
-    private final ThrowingBiConsumer<Resource, RouteBuilder, Exception> mapper;
+    private final RoutesLoaderProgress progress;
+    private final LazyRoutes lazy;
+    private final RoutesLoaderTimeline timeline;
+    private final RoutesResolver resolver;
+    private final RoutesEvaluator evaluator;
+    private final RoutesPipeline pipeline;
+    private final RoutesDirectories directories;
+    private final RoutesReloader reloader;
 
     RoutesLoader(
             ApplicationContext applicationContext,
             RoutesLoaderConfigurationProperties configuration,
-            String extension,
-            ThrowingBiConsumer<Resource, RouteBuilder, Exception> mapper) {
+            List<RoutesLoaderMapping> mappings,
+            ScriptMetrics metrics,
+            RoutesLoaderProgress progress,
+            LazyRoutes lazy,
+            RoutesLoaderTimeline timeline) {
 
-        this.applicationContext = applicationContext;
         this.configuration = configuration;
-        this.extension = extension;
-        this.mapper = mapper;
+        this.progress = progress;
+        this.lazy = lazy;
+        this.timeline = timeline;
+        this.resolver = new RoutesResolver(applicationContext, configuration, mappings, timeline);
+        this.evaluator = new RoutesEvaluator(applicationContext, configuration, metrics, timeline);
+        this.pipeline = new RoutesPipeline(this, progress);
+        this.directories = new RoutesDirectories(configuration, resolver, evaluator, pipeline, progress);
+        this.reloader = configuration.getWatch().isEnabled() ? new RoutesReloader(this) : null;
     }
 
     @Override
     public void beforeApplicationStart(CamelContext camelContext) {
-        try {
-            for (String location: configuration.getLocations()) {
-                for (Resource source : applicationContext.getResources(location)) {
-                    if (source.getFilename().endsWith(extension)) {
-                        LOGGER.info("Loading additional Camel routes from: {}", source);
-
-                        camelContext.addRoutes(new RouteBuilder() {
-                            @Override
-                            public void configure() throws Exception {
-                                mapper.accept(source, this);
-                            }
-                        });
-                    }
-                }
+        if (!configuration.getAsync().isEnabled()) {
+            try {
+                loadAll(camelContext);
+            } catch (RuntimeException e) {
+                progress.abort(e);
+                throw e;
             }
-        } catch (Exception e) {
-            LOGGER.warn("", e);
         }
     }
 
     @Override
     public void afterApplicationStart(CamelContext camelContext) {
+        if (!configuration.getAsync().isEnabled()) {
+            watch(camelContext);
+            return;
+        }
+
+        // the routes defined by scripts are added to the running context so
+        // they are started as soon as they are added, the executor is shut
+        // down by the context when it is stopped which aborts the loading
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final ExecutorService executor = camelContext.getExecutorServiceManager().newSingleThreadExecutor(this, "RoutesLoaderAsync");
+
+        executor.submit(() -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+
+            try {
+                loadAll(camelContext);
+                watch(camelContext);
+            } catch (Throwable e) {
+                LOGGER.warn("Failed to load Camel routes", e);
+                progress.abort(e);
+            } finally {
+                camelContext.getExecutorServiceManager().shutdown(executor);
+            }
+        });
+    }
+
+    /**
+     * @return the mapping in charge of the given resource or null if none
+     *         of the loaders handles it.
+     */
+    RoutesLoaderMapping mapping(Resource resource) {
+        return resolver.mapping(resource);
+    }
+
+    /**
+     * @return the reloader tracking the routes added by this loader or null
+     *         if watching the locations is not enabled.
+     */
+    RoutesReloader getReloader() {
+        return reloader;
+    }
+
+    /**
+     * Creates a builder that evaluates the given resource when configured.
+     */
+    RouteBuilder builder(CamelContext camelContext, Resource resource, RoutesLoaderMapping mapping) {
+        return builder(camelContext, resource, mapping, true);
+    }
+
+    /**
+     * Creates a builder that evaluates the given resource when configured,
+     * if warm-up is enabled and requested the callbacks of the routes are
+     * warmed up before being instrumented so warm-up invocations are not
+     * recorded.
+     */
+    RouteBuilder builder(CamelContext camelContext, Resource resource, RoutesLoaderMapping mapping, boolean warm) {
+        return evaluator.builder(camelContext, resource, mapping, warm);
+    }
+
+    /**
+     * Adds the routes of the given builder, created by {@link #builder(CamelContext, Resource, RoutesLoaderMapping)},
+     * to the context.
+     */
+    void add(CamelContext camelContext, Resource resource, RouteBuilder builder) throws Exception {
+        final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+
+        List<RoutesReloader.LoadedRoute> loaded = null;
+
+        if (reloader != null) {
+            // evaluate the script beforehand so the routes can be inspected
+            // as they are defined by the script
+            builder.configureRoutes(camelContext.adapt(ModelCamelContext.class));
+            loaded = reloader.inspect(camelContext, resource, builder);
+        }
+
+        camelContext.addRoutes(builder);
+
+        if (loaded != null) {
+            // record the routes once added so the ids assigned by Camel are
+            // known
+            reloader.record(resource, loaded);
+        }
+
+        if (timeline != null) {
+            final RoutesLoaderMapping mapping = mapping(resource);
+
+            timeline.record(
+                RoutesLoaderTimeline.ADD,
+                mapping != null ? timeline.engine(mapping.getMapper()) : null,
+                ScriptHelper.name(resource),
+                stopwatch);
+        }
+    }
+
+    /**
+     * Removes the given routes, defined by the given resource, from the
+     * context.
+     */
+    void remove(CamelContext camelContext, Resource resource, List<RouteDefinition> routes) {
+        if (reloader != null) {
+            reloader.unload(camelContext, resource);
+            return;
+        }
+
+        final ModelCamelContext model = camelContext.adapt(ModelCamelContext.class);
+
+        for (RouteDefinition route : routes) {
+            try {
+                model.removeRouteDefinition(route);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to remove Camel route {}", route.getId(), e);
+            }
+        }
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void loadAll(CamelContext camelContext) {
+        final Map<Object, Exception> failures = new LinkedHashMap<>();
+
+        resolver.libraries(failures);
+
+        final List<RoutesSource> sources = resolver.resolve(failures);
+
+        if (configuration.getAsync().isEnabled()) {
+            RoutesResolver.prioritize(sources, configuration.getAsync().getPriorities());
+        }
+        if (lazy != null) {
+            lazy.defer(sources, configuration.getLazy().getScripts(), failures);
+            lazy.bind(camelContext, this);
+        }
+
+        final Set<RouteLoader> loaders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        evaluator.open(failures);
+
+        // the snapshot is known at this point so only the engines needed by
+        // the scripts it does not hold are warmed up
+        evaluator.warmUp(loaders, sources);
+        progress.start(sources.size());
+
+        final RoutesLoaderConfigurationProperties.Parallel parallel = configuration.getParallel();
+
+        if (parallel.isEnabled() && sources.size() > 1) {
+            pipeline.loadParallel(camelContext, sources, parallel.getThreads(), failures);
+        } else {
+            pipeline.load(camelContext, sources, failures);
+        }
+
+        directories.load(camelContext, loaders, failures);
+        evaluator.close(failures);
+
+        if (!failures.isEmpty()) {
+            failures.forEach((source, e) -> LOGGER.warn("Failed to load Camel routes from: {}", source, e));
+            LOGGER.warn("Failed to load Camel routes from {} of {} sources", failures.size(), progress.getTotal());
+        }
+
+        if (timeline != null) {
+            timeline.report(configuration.getTimeline().getLocation());
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            progress.abort(new InterruptedException("Loading of Camel routes interrupted"));
+        } else {
+            progress.complete();
+        }
+    }
+
+    private void watch(CamelContext camelContext) {
+        if (reloader != null) {
+            final RoutesLoaderConfigurationProperties.Watch watch = configuration.getWatch();
+
+            try {
+                camelContext.addService(
+                    new RoutesWatcher(reloader, camelContext, configuration.getLocations(), watch.getDebounce()),
+                    true
+                );
+            } catch (Exception e) {
+                LOGGER.warn("Failed to watch Camel routes locations", e);
+            }
+        }
     }
 }
@@ -16,104 +16,281 @@
  */
 package com.github.lburgazzoli.camel.route.autoconfigure;
 
-import javax.script.ScriptEngineManager;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import com.github.lburgazzoli.camel.route.scripting.GraalJsRouteLoader;
-import com.github.lburgazzoli.camel.route.scripting.GroovyRouteLoader;
-import com.github.lburgazzoli.camel.route.scripting.NashornRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.GraalJsContextManager;
+import com.github.lburgazzoli.camel.route.scripting.GroovyClassManager;
+import com.github.lburgazzoli.camel.route.scripting.GroovyScriptCache;
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutorManager;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.camel.spring.boot.CamelContextConfiguration;
+import org.graalvm.polyglot.Engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Condition;
-import org.springframework.context.annotation.ConditionContext;
-import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.context.annotation.Lazy;
 
 @Configuration
 @ConditionalOnProperty(prefix = "camel.routes.loader", name = "enabled")
 @EnableConfigurationProperties(RoutesLoaderConfigurationProperties.class)
 public class RoutesLoaderAutoConfiguration {
     private static final Logger LOGGER = LoggerFactory.getLogger(RoutesLoaderAutoConfiguration.class);
-    private static final ScriptEngineManager ENGINE_MANAGER = new ScriptEngineManager();
-
-    // ********************************
-    //
-    // Loaders
-    //
-    // ********************************
 
+    /**
+     * Resolves the configured locations once and dispatches the resources
+     * found to the loaders registered for their extension.
+     */
     @Bean
-    @Conditional(NashornScriptCondition.class)
-    public CamelContextConfiguration nashornRoutes(
-        final ApplicationContext applicationContext,
-        final RoutesLoaderConfigurationProperties configuration) {
+    public CamelContextConfiguration routesLoader(
+            final ApplicationContext applicationContext,
+            final RoutesLoaderConfigurationProperties configuration,
+            final ObjectProvider<List<RoutesLoaderMapping>> mappings,
+            final RouteLoaderRegistry loaders,
+            final ObjectProvider<ScriptMetrics> metrics,
+            final RoutesLoaderProgress progress,
+            final ObjectProvider<LazyRoutes> lazy,
+            final ObjectProvider<RoutesLoaderTimeline> timeline) {
+
+        // mappings defined as beans take precedence over the loaders found
+        // on the classpath
+        final List<RoutesLoaderMapping> answer = new ArrayList<>(mappings.getIfAvailable(Collections::emptyList));
+        answer.addAll(loaders.getMappings());
 
         return new RoutesLoader(
             applicationContext,
             configuration,
-            ".js",
-            new NashornRouteLoader()
+            answer,
+            metrics.getIfAvailable(),
+            progress,
+            lazy.getIfAvailable(),
+            timeline.getIfAvailable()
         );
     }
 
+    /**
+     * Tracks the loading of the routes, its future can be used to wait for
+     * the routes to be loaded when they are loaded in background.
+     */
+    @Bean
+    public RoutesLoaderProgress routesLoaderProgress() {
+        return new RoutesLoaderProgress();
+    }
+
+    /**
+     * Records the wall-clock and the CPU time of the phases of the loading of
+     * the routes, the loaders report to it once created so it is created
+     * before them.
+     */
+    @Bean
+    @ConditionalOnClass(name = "com.fasterxml.jackson.databind.ObjectMapper")
+    @ConditionalOnProperty(prefix = "camel.routes.loader.timeline", name = "enabled")
+    public RoutesLoaderTimeline routesLoaderTimeline() {
+        return new RoutesLoaderTimeline();
+    }
 
+    /**
+     * Defers the evaluation of scripts till their routes are needed and can
+     * be used to activate them explicitly.
+     */
     @Bean
-    @Conditional(GraalJsScriptCondition.class)
-    public CamelContextConfiguration graalJsRoutes(
-        final ApplicationContext applicationContext,
-        final RoutesLoaderConfigurationProperties configuration) {
+    @ConditionalOnProperty(prefix = "camel.routes.loader.lazy", name = "enabled")
+    public LazyRoutes lazyRoutes(final RoutesLoaderConfigurationProperties configuration) {
+        return new LazyRoutes(configuration.getLazy().getIdleTimeout());
+    }
 
-        return new RoutesLoader(
-            applicationContext,
-            configuration,
-            ".gjs",
-            new GraalJsRouteLoader()
-        );
+    // ********************************
+    //
+    // Loaders
+    //
+    // ********************************
+
+    /**
+     * The loaders provided by the {@link com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory}
+     * implementations found on the classpath, a loader is created only if
+     * the classes it requires are available.
+     */
+    @Bean(destroyMethod = "close")
+    RouteLoaderRegistry routeLoaderRegistry(final ApplicationContext applicationContext) throws Exception {
+        return RouteLoaderRegistry.create(applicationContext, applicationContext.getClassLoader());
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = { GraalJsRouteLoaderFactory.POLYGLOT_CLASS, GraalJsRouteLoaderFactory.GRAAL_JS_CLASS })
+    static class GraalJsConfiguration {
+        /**
+         * The polyglot engine shared by all the GraalJS routes, it is closed
+         * when the application context is closed. The engine is created only
+         * once a script has to be evaluated, i.e. not when all the scripts
+         * are loaded from the routes snapshot.
+         */
+        @Lazy
+        @Bean(destroyMethod = "close")
+        public Engine graalJsEngine() {
+            return Engine.create();
+        }
+
+        /**
+         * Keeps the contexts created by the GraalJS routes alive for the
+         * lifetime of the routes.
+         */
+        @Bean(destroyMethod = "close")
+        public GraalJsContextManager graalJsContextManager(
+                final RoutesLoaderConfigurationProperties configuration,
+                final ObjectProvider<Engine> engine) {
+
+            return new GraalJsContextManager(
+                engine::getObject,
+                configuration.getGraalJs().getPool().getMaxSize()
+            );
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+        static class GraalJsMetricsConfiguration {
+            @Bean
+            public MeterBinder graalJsContextPoolMetrics(final GraalJsContextManager manager) {
+                return new GraalJsContextPoolMetrics(manager);
+            }
+        }
     }
 
+    // ********************************
+    //
+    // Groovy
+    //
+    // ********************************
+
+    @Configuration
+    @ConditionalOnClass(name = GroovyRouteLoaderFactory.GROOVY_CLASS)
+    static class GroovyConfiguration {
+        @Bean
+        @ConditionalOnProperty(prefix = "camel.routes.loader.groovy.cache", name = "enabled")
+        public GroovyScriptCache groovyScriptCache(
+                final RoutesLoaderConfigurationProperties configuration) {
+
+            LOGGER.info("Caching compiled groovy routes in: {}", configuration.getGroovy().getCache().getDirectory());
+
+            return new GroovyScriptCache(
+                Paths.get(configuration.getGroovy().getCache().getDirectory())
+            );
+        }
+
+        /**
+         * Owns the classes of the groovy routes so they are unloaded once the
+         * routes using them have been removed.
+         */
+        @Bean(destroyMethod = "close")
+        public GroovyClassManager groovyClassManager(
+                final RoutesLoaderConfigurationProperties configuration) {
+
+            return new GroovyClassManager(
+                configuration.getGroovy().getClasses().getMaxSize()
+            );
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+        static class GroovyMetricsConfiguration {
+            @Bean
+            public MeterBinder groovyClassMetrics(final GroovyClassManager manager) {
+                return new GroovyClassMetrics(manager);
+            }
+
+            @Bean
+            @ConditionalOnProperty(prefix = "camel.routes.loader.groovy.cache", name = "enabled")
+            public MeterBinder groovyScriptCacheMetrics(final GroovyScriptCache cache) {
+                return new GroovyScriptCacheMetrics(cache);
+            }
+        }
+    }
+
+    // ********************************
+    //
+    // Executors
+    //
+    // ********************************
+
+    /**
+     * Owns the executors created by the scripts through the {@code executors}
+     * helper so they are shared by name among the scripts of all the loaders.
+     */
     @Bean
-    @Conditional(GroovyCondition.class)
-    public CamelContextConfiguration groovyRoutes(
-            final ApplicationContext applicationContext,
-            final RoutesLoaderConfigurationProperties configuration) {
+    public ScriptExecutorManager scriptExecutorManager() {
+        return new ScriptExecutorManager();
+    }
 
-        return new RoutesLoader(
-            applicationContext,
-            configuration,
-            ".groovy",
-            new GroovyRouteLoader()
-        );
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class ExecutorsMetricsConfiguration {
+        @Bean
+        public MeterBinder scriptExecutorMetrics(final ScriptExecutorManager manager) {
+            return new ScriptExecutorMetrics(manager);
+        }
     }
 
     // ********************************
     //
-    // Helpers
+    // Metrics
     //
     // ********************************
 
-    private static final class GroovyCondition implements Condition {
-        @Override
-        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
-            return ENGINE_MANAGER.getEngineByName("groovy") != null;
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "camel.routes.loader.metrics", name = "enabled", matchIfMissing = true)
+    static class MetricsConfiguration {
+        /**
+         * Records the loading of the scripts and the invocations of the
+         * callbacks they provide, if there is no meter registry no metrics
+         * are recorded and routes are not instrumented.
+         */
+        @Bean
+        public ScriptMetrics routesLoaderMetrics(final ObjectProvider<MeterRegistry> registry) {
+            final MeterRegistry meterRegistry = registry.getIfUnique();
+
+            return meterRegistry != null ? new RoutesLoaderMetrics(meterRegistry) : null;
         }
     }
 
-    private static final class NashornScriptCondition implements Condition {
-        @Override
-        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
-            return ENGINE_MANAGER.getEngineByName("nashorn") != null && ENGINE_MANAGER.getEngineByName("graal.js") == null;
+    // ********************************
+    //
+    // Health
+    //
+    // ********************************
+
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    static class HealthConfiguration {
+        @Bean
+        public HealthIndicator routesLoaderHealthIndicator(final RoutesLoaderProgress progress) {
+            return new RoutesLoaderHealthIndicator(progress);
         }
     }
 
-    private static final class GraalJsScriptCondition implements Condition {
-        @Override
-        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
-            return ENGINE_MANAGER.getEngineByName("graal.js") != null;
+    // ********************************
+    //
+    // Timeline
+    //
+    // ********************************
+
+    @Configuration
+    @ConditionalOnClass(name = { "org.springframework.boot.actuate.endpoint.annotation.Endpoint", "com.fasterxml.jackson.databind.ObjectMapper" })
+    @ConditionalOnProperty(prefix = "camel.routes.loader.timeline", name = "enabled")
+    static class TimelineConfiguration {
+        @Bean
+        public RoutesLoaderTimelineEndpoint routesLoaderTimelineEndpoint(final RoutesLoaderTimeline timeline) {
+            return new RoutesLoaderTimelineEndpoint(timeline);
         }
     }
 }
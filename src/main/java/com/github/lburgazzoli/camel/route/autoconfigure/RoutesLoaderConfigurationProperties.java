@@ -16,10 +16,15 @@
  */
 package com.github.lburgazzoli.camel.route.autoconfigure;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.github.lburgazzoli.camel.route.scripting.GroovyClassManager;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties("camel.routes.loader")
@@ -30,9 +35,80 @@ public class RoutesLoaderConfigurationProperties {
     boolean enabled = true;
 
     /**
-     * Locations to searches for js/groovy routes.
+     * Locations to searches for js/groovy routes, locations are searched in
+     * the order they are listed.
      */
-    public Set<String> locations = new HashSet<>(Collections.singleton("classpath:camel/*"));
+    public Set<String> locations = new LinkedHashSet<>(Collections.singleton("classpath:camel/*"));
+
+    /**
+     * Routes directories configuration.
+     */
+    private final Directories directories = new Directories();
+
+    /**
+     * Library scripts configuration.
+     */
+    private final Libraries libraries = new Libraries();
+
+    /**
+     * Routes index configuration.
+     */
+    private final Index index = new Index();
+
+    /**
+     * Routes snapshot configuration.
+     */
+    private final Snapshot snapshot = new Snapshot();
+
+    /**
+     * Parallel loading configuration.
+     */
+    private final Parallel parallel = new Parallel();
+
+    /**
+     * Asynchronous loading configuration.
+     */
+    private final Async async = new Async();
+
+    /**
+     * Lazy loading configuration.
+     */
+    private final Lazy lazy = new Lazy();
+
+    /**
+     * Warm-up configuration.
+     */
+    private final WarmUp warmUp = new WarmUp();
+
+    /**
+     * Routes reloading configuration.
+     */
+    private final Watch watch = new Watch();
+
+    /**
+     * Metrics configuration.
+     */
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * Startup timeline configuration.
+     */
+    private final Timeline timeline = new Timeline();
+
+    /**
+     * Groovy routes configuration.
+     */
+    private final Groovy groovy = new Groovy();
+
+    /**
+     * Nashorn routes configuration.
+     */
+    private final Nashorn nashorn = new Nashorn();
+
+    /**
+     * GraalJS routes configuration.
+     */
+    private final GraalJs graalJs = new GraalJs();
 
     public boolean isEnabled() {
         return enabled;
@@ -49,4 +125,718 @@ public class RoutesLoaderConfigurationProperties {
     public void setLocations(Set<String> locations) {
         this.locations = locations;
     }
+
+    public Directories getDirectories() {
+        return directories;
+    }
+
+    public Libraries getLibraries() {
+        return libraries;
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Parallel getParallel() {
+        return parallel;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Lazy getLazy() {
+        return lazy;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public Watch getWatch() {
+        return watch;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Timeline getTimeline() {
+        return timeline;
+    }
+
+    public Groovy getGroovy() {
+        return groovy;
+    }
+
+    public Nashorn getNashorn() {
+        return nashorn;
+    }
+
+    public GraalJs getGraalJs() {
+        return graalJs;
+    }
+
+    public static class Directories {
+        /**
+         * Directories holding a large number of scripts, i.e. file:/opt/routes,
+         * scripts are loaded once those found in the locations have been
+         * loaded. Directories are traversed lazily, one directory listing at
+         * a time, and scripts are loaded in the lexicographic order of their
+         * path relative to the directory. Scripts found in directories are
+         * neither prioritized, deferred nor watched.
+         */
+        List<String> locations = new ArrayList<>();
+
+        /**
+         * Patterns matched against the path of the scripts relative to the
+         * directory, files not matching any pattern are skipped.
+         */
+        List<String> patterns = new ArrayList<>(Collections.singletonList("**/*"));
+
+        /**
+         * The maximum number of scripts being evaluated, or evaluated and
+         * waiting for their routes to be added to the camel context, it bounds
+         * the memory used when scripts are evaluated concurrently.
+         */
+        int inFlight = 64;
+
+        /**
+         * Path of the manifest recording the size, the last modified time and
+         * the content digest of the scripts loaded from the file system, the
+         * scripts that have not changed since the manifest has been written
+         * are looked up in the routes snapshot without being read. The
+         * manifest is rewritten once the scripts have been loaded.
+         */
+        String manifest;
+
+        public List<String> getLocations() {
+            return locations;
+        }
+
+        public void setLocations(List<String> locations) {
+            this.locations = locations;
+        }
+
+        public List<String> getPatterns() {
+            return patterns;
+        }
+
+        public void setPatterns(List<String> patterns) {
+            this.patterns = patterns;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public void setInFlight(int inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        public String getManifest() {
+            return manifest;
+        }
+
+        public void setManifest(String manifest) {
+            this.manifest = manifest;
+        }
+    }
+
+    public static class Libraries {
+        /**
+         * Locations to search for library scripts, libraries are compiled
+         * once by the loader in charge of their extension and what they
+         * define is available to all the scripts of the same language.
+         * Libraries are not reloaded and must not be in the routes
+         * locations.
+         */
+        Set<String> locations = new LinkedHashSet<>();
+
+        public Set<String> getLocations() {
+            return locations;
+        }
+
+        public void setLocations(Set<String> locations) {
+            this.locations = locations;
+        }
+    }
+
+    public static class Index {
+        /**
+         * Set if classpath locations should be resolved against the routes
+         * index, when found, instead of scanning the classpath. An index
+         * only covers the jar or the directory it has been found in, the
+         * other classpath roots are scanned.
+         */
+        boolean enabled = true;
+
+        /**
+         * Location of the routes index files.
+         */
+        String location = "classpath*:" + RoutesIndex.DEFAULT_LOCATION;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+    }
+
+    public static class Snapshot {
+        /**
+         * Set if the routes defined by scripts that have not changed since
+         * the snapshot has been generated should be loaded from the snapshot
+         * instead of evaluating the scripts.
+         */
+        boolean enabled = true;
+
+        /**
+         * Location of the routes snapshot files.
+         */
+        String location = "classpath*:" + RoutesSnapshot.DEFAULT_LOCATION;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+    }
+
+    public static class Parallel {
+        /**
+         * Set if scripts should be evaluated concurrently, routes are then
+         * added to the camel context in the order scripts are found.
+         */
+        boolean enabled;
+
+        /**
+         * The number of threads used to evaluate scripts.
+         */
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Async {
+        /**
+         * Set if scripts should be loaded in background once the camel
+         * context has been started instead of before starting it, routes
+         * are then started as soon as they are loaded.
+         */
+        boolean enabled;
+
+        /**
+         * Patterns matched against the script file names, scripts are loaded
+         * in the order of the first pattern they match and scripts matching
+         * no pattern are loaded last.
+         */
+        List<String> priorities = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPriorities() {
+            return priorities;
+        }
+
+        public void setPriorities(List<String> priorities) {
+            this.priorities = priorities;
+        }
+    }
+
+    public static class Lazy {
+        /**
+         * Set if scripts should be evaluated only once one of their routes
+         * is needed, that is when a message is sent to the direct or seda
+         * endpoint the route consumes from or when explicitly activated.
+         */
+        boolean enabled;
+
+        /**
+         * Patterns matched against the script file names to select the
+         * scripts to load lazily.
+         */
+        List<String> scripts = new ArrayList<>(Collections.singletonList("*"));
+
+        /**
+         * The time in milliseconds after which routes loaded lazily that
+         * have not processed any exchange are removed, 0 to keep them.
+         */
+        long idleTimeout;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getScripts() {
+            return scripts;
+        }
+
+        public void setScripts(List<String> scripts) {
+            this.scripts = scripts;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    public static class WarmUp {
+        /**
+         * Set if the processors, predicates and expressions defined by
+         * scripts should be invoked with synthetic exchanges before their
+         * routes are started so they are compiled by the JIT, callbacks must
+         * then tolerate being invoked outside of the routes. Scripts loaded
+         * lazily are not warmed up.
+         */
+        boolean enabled;
+
+        /**
+         * The maximum number of invocations per callback.
+         */
+        int iterations = 10000;
+
+        /**
+         * The maximum time in milliseconds spent warming up a callback, 0 to
+         * bound the warm-up by the number of iterations only.
+         */
+        long duration;
+
+        /**
+         * The number of invocations whose mean latency is compared to detect
+         * the steady state.
+         */
+        int batchSize = 100;
+
+        /**
+         * The maximum relative variation of the mean latency of consecutive
+         * batches for a callback to be considered in steady state.
+         */
+        double tolerance = 0.1;
+
+        /**
+         * The body of the synthetic exchanges.
+         */
+        String body = "";
+
+        /**
+         * Per route settings, by route id or, for routes without id, by the
+         * uri they consume from.
+         */
+        Map<String, Route> routes = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+
+        public long getDuration() {
+            return duration;
+        }
+
+        public void setDuration(long duration) {
+            this.duration = duration;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+
+        public Map<String, Route> getRoutes() {
+            return routes;
+        }
+
+        public void setRoutes(Map<String, Route> routes) {
+            this.routes = routes;
+        }
+
+        public static class Route {
+            /**
+             * The maximum number of invocations per callback of the route,
+             * if not set the global setting applies.
+             */
+            Integer iterations;
+
+            /**
+             * The maximum time in milliseconds spent warming up a callback
+             * of the route, if not set the global setting applies.
+             */
+            Long duration;
+
+            /**
+             * The body of the synthetic exchanges, if not set the global
+             * setting applies.
+             */
+            String body;
+
+            public Integer getIterations() {
+                return iterations;
+            }
+
+            public void setIterations(Integer iterations) {
+                this.iterations = iterations;
+            }
+
+            public Long getDuration() {
+                return duration;
+            }
+
+            public void setDuration(Long duration) {
+                this.duration = duration;
+            }
+
+            public String getBody() {
+                return body;
+            }
+
+            public void setBody(String body) {
+                this.body = body;
+            }
+        }
+    }
+
+    public static class Watch {
+        /**
+         * Set if file locations should be watched for changes, a changed
+         * script is evaluated again and only the routes it defines that
+         * have changed are replaced. Only the {@code file:} entries of the
+         * locations are watched, the directories are not as watching a
+         * large tree requires a watch per sub directory.
+         */
+        boolean enabled;
+
+        /**
+         * The time in milliseconds to wait for further changes before
+         * reloading changed scripts.
+         */
+        long debounce = 250;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDebounce() {
+            return debounce;
+        }
+
+        public void setDebounce(long debounce) {
+            this.debounce = debounce;
+        }
+    }
+
+    public static class Metrics {
+        /**
+         * Set if the loading of scripts and the invocations of the callbacks
+         * they provide should be recorded, requires a meter registry.
+         */
+        boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Timeline {
+        /**
+         * Set if the wall-clock and the CPU time of the phases of the loading
+         * of the routes should be recorded, the timeline is logged as JSON
+         * once the routes have been loaded and is exposed by the routestimeline
+         * actuator endpoint. Requires jackson-databind.
+         */
+        boolean enabled;
+
+        /**
+         * Path of the file the timeline is written to, as JSON, once the
+         * routes have been loaded.
+         */
+        String location;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+    }
+
+    public static class Groovy {
+        /**
+         * Compiled scripts cache configuration.
+         */
+        private final Cache cache = new Cache();
+
+        /**
+         * Loaded script classes configuration.
+         */
+        private final Classes classes = new Classes();
+
+        /**
+         * Set if groovy routes should be statically compiled, scripts must
+         * then be type safe.
+         */
+        boolean compileStatic;
+
+        /**
+         * Set if groovy routes should be compiled using invokedynamic.
+         */
+        boolean invokeDynamic;
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public Classes getClasses() {
+            return classes;
+        }
+
+        public boolean isCompileStatic() {
+            return compileStatic;
+        }
+
+        public void setCompileStatic(boolean compileStatic) {
+            this.compileStatic = compileStatic;
+        }
+
+        public boolean isInvokeDynamic() {
+            return invokeDynamic;
+        }
+
+        public void setInvokeDynamic(boolean invokeDynamic) {
+            this.invokeDynamic = invokeDynamic;
+        }
+
+        public static class Cache {
+            /**
+             * Set if compiled groovy routes should be cached on disk and reused
+             * across restarts.
+             */
+            boolean enabled;
+
+            /**
+             * Directory where compiled groovy routes are stored.
+             */
+            String directory = System.getProperty("java.io.tmpdir") + "/camel-routes-loader/groovy";
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+        }
+
+        public static class Classes {
+            /**
+             * The maximum number of scripts whose classes are kept loaded
+             * when none of their routes is running so they can be evaluated
+             * again without defining new classes, i.e. lazily loaded routes.
+             */
+            int maxSize = GroovyClassManager.DEFAULT_MAX_SIZE;
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+        }
+    }
+
+    public static class Nashorn {
+        /**
+         * Set if nashorn should use optimistic types, if not set the engine
+         * default applies.
+         */
+        Boolean optimisticTypes;
+
+        /**
+         * Set if nashorn should persist the classes generated by compiling
+         * scripts so they can be reused across restarts.
+         */
+        boolean persistentCodeCache;
+
+        /**
+         * The directory used by the persistent code cache, it only applies to
+         * the engine of the loader, other nashorn engines of the JVM are not
+         * affected.
+         */
+        String codeCacheDirectory;
+
+        /**
+         * The size of the class cache of the engine, if not set the engine
+         * default applies.
+         */
+        Integer classCacheSize;
+
+        public Boolean getOptimisticTypes() {
+            return optimisticTypes;
+        }
+
+        public void setOptimisticTypes(Boolean optimisticTypes) {
+            this.optimisticTypes = optimisticTypes;
+        }
+
+        public boolean isPersistentCodeCache() {
+            return persistentCodeCache;
+        }
+
+        public void setPersistentCodeCache(boolean persistentCodeCache) {
+            this.persistentCodeCache = persistentCodeCache;
+        }
+
+        public String getCodeCacheDirectory() {
+            return codeCacheDirectory;
+        }
+
+        public void setCodeCacheDirectory(String codeCacheDirectory) {
+            this.codeCacheDirectory = codeCacheDirectory;
+        }
+
+        public Integer getClassCacheSize() {
+            return classCacheSize;
+        }
+
+        public void setClassCacheSize(Integer classCacheSize) {
+            this.classCacheSize = classCacheSize;
+        }
+    }
+
+    public static class GraalJs {
+        /**
+         * Contexts pool configuration.
+         */
+        private final Pool pool = new Pool();
+
+        public Pool getPool() {
+            return pool;
+        }
+
+        public static class Pool {
+            /**
+             * The maximum number of contexts per script used to run the
+             * processors, predicates and expressions defined by the script
+             * concurrently.
+             */
+            int maxSize = Runtime.getRuntime().availableProcessors();
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+        }
+    }
 }
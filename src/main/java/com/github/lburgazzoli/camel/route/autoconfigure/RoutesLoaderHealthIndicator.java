@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports the routes loader as out of service till all the scripts have been
+ * loaded so instances loading their routes in background do not receive
+ * traffic too early, scripts that failed to load are reported as details.
+ */
+final class RoutesLoaderHealthIndicator extends AbstractHealthIndicator {
+    private final RoutesLoaderProgress progress;
+
+    RoutesLoaderHealthIndicator(RoutesLoaderProgress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) throws Exception {
+        if (!progress.isDone()) {
+            builder.outOfService();
+        } else if (progress.getCause() != null) {
+            builder.down(progress.getCause());
+        } else {
+            builder.up();
+        }
+
+        builder.withDetail("total", progress.getTotal());
+        builder.withDetail("loaded", progress.getLoaded());
+        builder.withDetail("failed", progress.getFailed());
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.util.function.ThrowingBiConsumer;
+import org.springframework.core.io.Resource;
+
+/**
+ * Binds a file extension to the loader in charge of the matching resources,
+ * mappings defined as beans take precedence over the loaders found on the
+ * classpath, i.e. to handle an extension with a custom loader.
+ */
+public final class RoutesLoaderMapping {
+    private final String extension;
+    private final ThrowingBiConsumer<Resource, RouteBuilder, Exception> mapper;
+
+    public RoutesLoaderMapping(String extension, ThrowingBiConsumer<Resource, RouteBuilder, Exception> mapper) {
+        this.extension = extension;
+        this.mapper = mapper;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public ThrowingBiConsumer<Resource, RouteBuilder, Exception> getMapper() {
+        return mapper;
+    }
+
+    public boolean matches(Resource resource) {
+        final String name = resource.getFilename();
+
+        return name != null && name.endsWith(extension);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutesLoaderMapping{"
+            + "extension='" + extension + '\''
+            + ", mapper=" + mapper
+            + '}';
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.model.RouteDefinition;
+
+/**
+ * Records the loading of scripts and the invocations of the callbacks they
+ * provide with micrometer, callbacks timers are tagged with the id of the
+ * route which is resolved on the first invocation as ids may be assigned
+ * only once the route is started.
+ */
+final class RoutesLoaderMetrics implements ScriptMetrics {
+    private final MeterRegistry registry;
+
+    RoutesLoaderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void phase(String script, String phase, long nanos) {
+        Timer.builder("camel.routes.loader.script.load")
+            .description("The time spent loading scripts")
+            .tag("script", script)
+            .tag("phase", phase)
+            .register(registry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void routes(String script, int count) {
+        Counter.builder("camel.routes.loader.script.routes")
+            .description("The number of routes defined by scripts")
+            .tag("script", script)
+            .register(registry)
+            .increment(count);
+    }
+
+    @Override
+    public void failure(String script) {
+        Counter.builder("camel.routes.loader.script.failures")
+            .description("The number of scripts failed to load")
+            .tag("script", script)
+            .register(registry)
+            .increment();
+    }
+
+    @Override
+    public Processor processor(String script, RouteDefinition route, Processor processor) {
+        return new TimedProcessor(new CallbackTimer(script, route, "processor"), processor);
+    }
+
+    @Override
+    public Predicate predicate(String script, RouteDefinition route, Predicate predicate) {
+        return new TimedPredicate(new CallbackTimer(script, route, "predicate"), predicate);
+    }
+
+    @Override
+    public Expression expression(String script, RouteDefinition route, Expression expression) {
+        return new TimedExpression(new CallbackTimer(script, route, "expression"), expression);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private final class CallbackTimer {
+        private final String script;
+        private final RouteDefinition route;
+        private final String type;
+        private volatile Timer timer;
+
+        CallbackTimer(String script, RouteDefinition route, String type) {
+            this.script = script;
+            this.route = route;
+            this.type = type;
+        }
+
+        void record(long start) {
+            Timer answer = timer;
+
+            if (answer == null) {
+                answer = Timer.builder("camel.routes.loader.callback")
+                    .description("The time spent invoking callbacks provided by scripts")
+                    .tag("script", script)
+                    .tag("route", route.getId() != null ? route.getId() : "undefined")
+                    .tag("type", type)
+                    .publishPercentileHistogram()
+                    .register(registry);
+
+                // keep looking the timer up till the route gets an id
+                if (route.getId() != null) {
+                    timer = answer;
+                }
+            }
+
+            answer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class TimedProcessor implements Processor {
+        private final CallbackTimer timer;
+        private final Processor delegate;
+
+        TimedProcessor(CallbackTimer timer, Processor delegate) {
+            this.timer = timer;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void process(Exchange exchange) throws Exception {
+            final long start = System.nanoTime();
+
+            try {
+                delegate.process(exchange);
+            } finally {
+                timer.record(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static final class TimedPredicate implements Predicate {
+        private final CallbackTimer timer;
+        private final Predicate delegate;
+
+        TimedPredicate(CallbackTimer timer, Predicate delegate) {
+            this.timer = timer;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean matches(Exchange exchange) {
+            final long start = System.nanoTime();
+
+            try {
+                return delegate.matches(exchange);
+            } finally {
+                timer.record(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static final class TimedExpression implements Expression {
+        private final CallbackTimer timer;
+        private final Expression delegate;
+
+        TimedExpression(CallbackTimer timer, Expression delegate) {
+            this.timer = timer;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public <T> T evaluate(Exchange exchange, Class<T> type) {
+            final long start = System.nanoTime();
+
+            try {
+                return delegate.evaluate(exchange, type);
+            } finally {
+                timer.record(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the loading of the routes defined by scripts, the future completes
+ * once all the scripts have been handled, whether or not they failed to load,
+ * and completes exceptionally only if the loading itself is aborted.
+ */
+public final class RoutesLoaderProgress {
+    private final CompletableFuture<Void> future;
+    private final AtomicInteger loaded;
+    private final AtomicInteger failed;
+    private volatile int total;
+    private volatile Throwable cause;
+
+    RoutesLoaderProgress() {
+        this.future = new CompletableFuture<>();
+        this.loaded = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.total = -1;
+    }
+
+    /**
+     * @return a future completed once all the scripts have been loaded, it
+     *         can not be used to cancel the loading.
+     */
+    public CompletableFuture<Void> getFuture() {
+        return future.thenApply(v -> v);
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * @return the number of scripts to load or -1 if the locations have not
+     *         been resolved yet, it grows while the directories holding
+     *         scripts are traversed.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the reason the loading has been aborted or null.
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    void start(int total) {
+        this.total = total;
+    }
+
+    void discovered() {
+        // only the loading thread updates the total
+        total++;
+    }
+
+    void loaded() {
+        loaded.incrementAndGet();
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    void complete() {
+        future.complete(null);
+    }
+
+    void abort(Throwable cause) {
+        this.cause = cause;
+        future.completeExceptionally(cause);
+    }
+}
@@ -0,0 +1,384 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.model.RouteDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Records the wall-clock and the CPU time of the phases of the loading of the
+ * routes, per script and per engine, so it can be told where the startup time
+ * goes without profiling the application.
+ *
+ * The phases are:
+ * <ul>
+ *   <li>{@code scan}: the resolution of a location to the scripts it holds</li>
+ *   <li>{@code snapshot}: the loading of the routes snapshot and of the routes
+ *       of a script from the snapshot</li>
+ *   <li>{@code engine}: the creation and the warm-up of an engine</li>
+ *   <li>{@code parse}, {@code compile} and {@code evaluate}: the phases
+ *       reported by the loaders, evaluate being the evaluation of the DSL</li>
+ *   <li>{@code add}: the addition of the routes of a script to the camel
+ *       context</li>
+ * </ul>
+ *
+ * The CPU time is the one of the thread running the phase, phases run on
+ * different threads when scripts are loaded in parallel and the phases of
+ * the loaders are nested in the add phase when routes are watched.
+ *
+ * Only the startup is recorded: phases ending after the timeline has been
+ * completed, i.e. reloads, are ignored and at most {@link #MAX_SPANS} phases
+ * are kept, the number of phases dropped beyond that is reported.
+ */
+public final class RoutesLoaderTimeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesLoaderTimeline.class);
+
+    public static final String SCAN = "scan";
+    public static final String SNAPSHOT = "snapshot";
+    public static final String ENGINE = "engine";
+    public static final String ADD = "add";
+    public static final int MAX_SPANS = 100_000;
+
+    private final Instant started;
+    private final long origin;
+    private final Queue<Span> spans;
+    private final AtomicInteger size;
+    private final AtomicInteger dropped;
+    private final Map<Object, String> engines;
+    private volatile long completed;
+
+    RoutesLoaderTimeline() {
+        this.started = Instant.now();
+        this.origin = System.nanoTime();
+        this.spans = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+        this.dropped = new AtomicInteger();
+        this.engines = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.completed = -1;
+    }
+
+    public boolean isComplete() {
+        return completed >= 0;
+    }
+
+    /**
+     * @return the timeline as a tree of maps, lists and plain values, times
+     *         are in milliseconds and are relative to the creation of the
+     *         timeline.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> answer = new LinkedHashMap<>();
+        final Map<String, Totals> phases = new LinkedHashMap<>();
+        final Map<String, Map<String, Totals>> perEngine = new LinkedHashMap<>();
+        final Map<String, Map<String, Object>> perScript = new LinkedHashMap<>();
+        final List<Object> timeline = new ArrayList<>();
+
+        for (Span span : spans) {
+            phases.computeIfAbsent(span.phase, k -> new Totals()).add(span);
+
+            if (span.engine != null) {
+                perEngine.computeIfAbsent(span.engine, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(span.phase, k -> new Totals())
+                    .add(span);
+            }
+            if (span.script != null && !SCAN.equals(span.phase) && !ENGINE.equals(span.phase)) {
+                final Map<String, Object> script = perScript.computeIfAbsent(span.script, k -> new LinkedHashMap<>());
+
+                if (span.engine != null) {
+                    script.put("engine", span.engine);
+                }
+
+                ((Totals) script.computeIfAbsent(span.phase, k -> new Totals())).add(span);
+            }
+
+            timeline.add(span.toMap());
+        }
+
+        answer.put("started", started.toString());
+        answer.put("complete", isComplete());
+        answer.put("wall", millis(isComplete() ? completed : System.nanoTime() - origin));
+        answer.put("dropped", dropped.get());
+        answer.put("phases", toMap(phases));
+
+        final Map<String, Object> byEngine = new LinkedHashMap<>();
+        perEngine.forEach((engine, totals) -> byEngine.put(engine, toMap(totals)));
+        answer.put("engines", byEngine);
+
+        final Map<String, Object> byScript = new LinkedHashMap<>();
+        perScript.forEach((name, script) -> {
+            final Map<String, Object> item = new LinkedHashMap<>();
+            script.forEach((key, value) -> item.put(key, value instanceof Totals ? ((Totals) value).toMap() : value));
+            byScript.put(name, item);
+        });
+        answer.put("scripts", byScript);
+        answer.put("timeline", timeline);
+
+        return answer;
+    }
+
+    /**
+     * @return the timeline as a JSON document.
+     */
+    public String toJson() {
+        // jackson is optional, the mapper is created on demand so the static
+        // helpers of this class can be used without it
+        try {
+            return new ObjectMapper().writeValueAsString(toMap());
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to write the routes loader timeline as JSON", e);
+        }
+    }
+
+    // ********************************
+    //
+    // Recording
+    //
+    // ********************************
+
+    /**
+     * @return a stopwatch started now, on the current thread.
+     */
+    static Stopwatch start() {
+        return new Stopwatch(System.nanoTime(), ScriptHelper.cpuTime());
+    }
+
+    /**
+     * Records a phase measured by the given stopwatch, engine and script may
+     * be null.
+     */
+    void record(String phase, String engine, String script, Stopwatch stopwatch) {
+        record(phase, engine, script, System.nanoTime() - stopwatch.wall, ScriptHelper.cpuTimeSince(stopwatch.cpu));
+    }
+
+    /**
+     * Records a phase that has just ended.
+     */
+    void record(String phase, String engine, String script, long nanos, long cpuNanos) {
+        if (isComplete()) {
+            return;
+        }
+        if (size.incrementAndGet() > MAX_SPANS) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+
+        spans.add(new Span(phase, engine, script, System.nanoTime() - nanos - origin, nanos, cpuNanos, Thread.currentThread().getName()));
+    }
+
+    void complete() {
+        completed = System.nanoTime() - origin;
+    }
+
+    /**
+     * Completes the timeline and emits it as JSON to the log and, if a
+     * location is given, to a file.
+     */
+    void report(String location) {
+        complete();
+
+        final String json = toJson();
+
+        LOGGER.info("Camel routes loader timeline: {}", json);
+
+        if (StringUtils.hasText(location)) {
+            try {
+                final Path path = ResourceUtils.getFile(location).toPath();
+
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+
+                Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to write Camel routes loader timeline to: {}", location, e);
+            }
+        }
+    }
+
+    /**
+     * Associates a name to the given loader, used to tell which engine the
+     * phases of its scripts belong to.
+     */
+    void engine(Object loader, String name) {
+        engines.put(loader, name);
+    }
+
+    /**
+     * @return the name associated to the given loader or its class name.
+     */
+    String engine(Object loader) {
+        final String answer = engines.get(loader);
+
+        return answer != null ? answer : loader.getClass().getSimpleName();
+    }
+
+    /**
+     * @return metrics recording the phases reported by the loader of the given
+     *         engine and forwarding everything to the given metrics, if any.
+     */
+    ScriptMetrics metrics(String engine, ScriptMetrics delegate) {
+        return new ScriptMetrics() {
+            @Override
+            public void phase(String script, String phase, long nanos) {
+                phase(script, phase, nanos, -1);
+            }
+
+            @Override
+            public void phase(String script, String phase, long nanos, long cpuNanos) {
+                record(phase, engine, script, nanos, cpuNanos);
+
+                if (delegate != null) {
+                    delegate.phase(script, phase, nanos, cpuNanos);
+                }
+            }
+
+            @Override
+            public void routes(String script, int count) {
+                if (delegate != null) {
+                    delegate.routes(script, count);
+                }
+            }
+
+            @Override
+            public void failure(String script) {
+                if (delegate != null) {
+                    delegate.failure(script);
+                }
+            }
+
+            @Override
+            public Processor processor(String script, RouteDefinition route, Processor processor) {
+                return delegate != null ? delegate.processor(script, route, processor) : processor;
+            }
+
+            @Override
+            public Predicate predicate(String script, RouteDefinition route, Predicate predicate) {
+                return delegate != null ? delegate.predicate(script, route, predicate) : predicate;
+            }
+
+            @Override
+            public Expression expression(String script, RouteDefinition route, Expression expression) {
+                return delegate != null ? delegate.expression(script, route, expression) : expression;
+            }
+        };
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static Map<String, Object> toMap(Map<String, Totals> totals) {
+        final Map<String, Object> answer = new LinkedHashMap<>();
+        totals.forEach((phase, total) -> answer.put(phase, total.toMap()));
+
+        return answer;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    static final class Stopwatch {
+        private final long wall;
+        private final long cpu;
+
+        Stopwatch(long wall, long cpu) {
+            this.wall = wall;
+            this.cpu = cpu;
+        }
+    }
+
+    private static final class Span {
+        private final String phase;
+        private final String engine;
+        private final String script;
+        private final long offset;
+        private final long wall;
+        private final long cpu;
+        private final String thread;
+
+        Span(String phase, String engine, String script, long offset, long wall, long cpu, String thread) {
+            this.phase = phase;
+            this.engine = engine;
+            this.script = script;
+            this.offset = offset;
+            this.wall = wall;
+            this.cpu = cpu;
+            this.thread = thread;
+        }
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> answer = new LinkedHashMap<>();
+            answer.put("phase", phase);
+            answer.put("engine", engine);
+            answer.put("script", script);
+            answer.put("offset", millis(offset));
+            answer.put("wall", millis(wall));
+            answer.put("cpu", cpu >= 0 ? millis(cpu) : null);
+            answer.put("thread", thread);
+
+            return answer;
+        }
+    }
+
+    private static final class Totals {
+        private int count;
+        private long wall;
+        private long cpu;
+
+        void add(Span span) {
+            count++;
+            wall += span.wall;
+            cpu += Math.max(0, span.cpu);
+        }
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> answer = new LinkedHashMap<>();
+            answer.put("count", count);
+            answer.put("wall", millis(wall));
+            answer.put("cpu", millis(cpu));
+
+            return answer;
+        }
+    }
+}
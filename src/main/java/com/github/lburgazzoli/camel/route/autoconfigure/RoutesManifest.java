@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the size, the last modified time and the snapshot key of the
+ * scripts loaded from the file system so that, on the next start, the key of
+ * the scripts that have not changed is known without reading them.
+ *
+ * The manifest is a text file with one tab separated line per script made of
+ * the key, the size, the last modified time in milliseconds and the absolute
+ * path of the script. It is rewritten as a whole once the scripts have been
+ * loaded and then only holds the scripts seen by that loading.
+ */
+final class RoutesManifest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesManifest.class);
+
+    private final Path location;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current;
+
+    private RoutesManifest(Path location, Map<String, Entry> previous) {
+        this.location = location;
+        this.previous = previous;
+        this.current = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the snapshot key of the given script, the script is read only
+     *         if its size or its last modified time differ from the ones
+     *         recorded by the manifest.
+     */
+    String key(Path script, String extension) throws IOException {
+        final String path = script.toAbsolutePath().normalize().toString();
+
+        // the attributes are read before the content so a change made while
+        // reading the script is detected on the next start
+        final BasicFileAttributes attributes = Files.readAttributes(script, BasicFileAttributes.class);
+        final long modified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = previous.get(path);
+        if (entry == null || entry.size != attributes.size() || entry.modified != modified) {
+            entry = new Entry(RoutesSnapshot.key(Files.readAllBytes(script), extension), attributes.size(), modified);
+        }
+
+        current.put(path, entry);
+
+        return entry.key;
+    }
+
+    /**
+     * Replaces the manifest file with the scripts seen since it has been
+     * loaded.
+     */
+    void save() throws IOException {
+        final Path temp = location.resolveSibling(location.getFileName() + ".tmp");
+
+        if (location.getParent() != null) {
+            Files.createDirectories(location.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> item : new TreeMap<>(current).entrySet()) {
+                final Entry entry = item.getValue();
+
+                writer.write(entry.key + '\t' + entry.size + '\t' + entry.modified + '\t' + item.getKey());
+                writer.write('\n');
+            }
+        }
+
+        Files.move(temp, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the manifest file at the given path, a missing file results in
+     * an empty manifest and malformed lines are ignored.
+     */
+    static RoutesManifest load(Path location) throws IOException {
+        if (!Files.exists(location)) {
+            return new RoutesManifest(location, Collections.emptyMap());
+        }
+
+        final Map<String, Entry> entries = new HashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(location, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] items = line.split("\t", 4);
+                final Entry entry = items.length == 4 ? Entry.parse(items) : null;
+
+                if (entry != null) {
+                    entries.put(items[3], entry);
+                } else {
+                    LOGGER.debug("Ignoring malformed line of routes manifest {}: {}", location, line);
+                }
+            }
+        }
+
+        return new RoutesManifest(location, entries);
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final long size;
+        private final long modified;
+
+        Entry(String key, long size, long modified) {
+            this.key = key;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static Entry parse(String[] items) {
+            try {
+                return new Entry(items[0], Long.parseLong(items[1]), Long.parseLong(items[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
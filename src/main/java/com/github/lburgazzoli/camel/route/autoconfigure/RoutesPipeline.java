@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.ModelCamelContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * Evaluates scripts, sequentially or concurrently, and adds the resulting
+ * routes to the {@link CamelContext} in the order of the scripts.
+ */
+final class RoutesPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesPipeline.class);
+
+    private final RoutesLoader loader;
+    private final RoutesLoaderProgress progress;
+
+    RoutesPipeline(RoutesLoader loader, RoutesLoaderProgress progress) {
+        this.loader = loader;
+        this.progress = progress;
+    }
+
+    /**
+     * Evaluates the scripts one after the other adding their routes to the
+     * context as soon as they have been evaluated.
+     */
+    void load(CamelContext camelContext, List<RoutesSource> sources, Map<Object, Exception> failures) {
+        for (RoutesSource source : sources) {
+            LOGGER.info("Loading additional Camel routes from: {}", source.getResource());
+
+            try {
+                loader.add(camelContext, source.getResource(), builder(camelContext, source));
+                progress.loaded();
+            } catch (Exception e) {
+                failures.put(source.getResource(), e);
+                progress.failed();
+            }
+        }
+    }
+
+    /**
+     * Evaluates the scripts concurrently and then adds the resulting routes to
+     * the {@link CamelContext} in the same order they would have been added by
+     * {@link #load(CamelContext, List, Map)}.
+     */
+    void loadParallel(CamelContext camelContext, List<RoutesSource> sources, int threads, Map<Object, Exception> failures) {
+        final ExecutorService executor = camelContext.getExecutorServiceManager().newFixedThreadPool(this, "RoutesLoader", threads);
+        final List<Evaluation> evaluations = new ArrayList<>(sources.size());
+
+        try {
+            for (RoutesSource source : sources) {
+                evaluations.add(submit(camelContext, executor, source));
+            }
+
+            for (Evaluation evaluation : evaluations) {
+                if (!complete(camelContext, evaluation, failures)) {
+                    break;
+                }
+            }
+        } finally {
+            camelContext.getExecutorServiceManager().shutdownNow(executor);
+        }
+    }
+
+    /**
+     * Submits the evaluation of the given script to the executor.
+     */
+    Evaluation submit(CamelContext camelContext, ExecutorService executor, RoutesSource source) {
+        final ModelCamelContext modelContext = camelContext.adapt(ModelCamelContext.class);
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        final RouteBuilder builder = builder(camelContext, source);
+
+        final Future<?> future = executor.submit(() -> {
+            LOGGER.info("Loading additional Camel routes from: {}", source.getResource());
+
+            // some engines resolve classes through the thread context
+            // class loader so propagate the caller's one
+            Thread.currentThread().setContextClassLoader(classLoader);
+
+            // configuring the builder evaluates the script, the
+            // builder remembers it has been configured so adding
+            // it to the context does not evaluate the script again
+            return builder.configureRoutes(modelContext);
+        });
+
+        return new Evaluation(source, builder, future);
+    }
+
+    /**
+     * Waits for the given evaluation to complete and adds the resulting routes
+     * to the context.
+     *
+     * @return false if the loading has been interrupted.
+     */
+    boolean complete(CamelContext camelContext, Evaluation evaluation, Map<Object, Exception> failures) {
+        final Resource source = evaluation.source.getResource();
+
+        try {
+            evaluation.future.get();
+            loader.add(camelContext, source, evaluation.builder);
+            progress.loaded();
+        } catch (ExecutionException e) {
+            failures.put(source, e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+            progress.failed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.put(source, e);
+            progress.failed();
+            return false;
+        } catch (Exception e) {
+            failures.put(source, e);
+            progress.failed();
+        }
+
+        return true;
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private RouteBuilder builder(CamelContext camelContext, RoutesSource source) {
+        return loader.builder(camelContext, source.getResource(), source.getMapping());
+    }
+
+    static final class Evaluation {
+        private final RoutesSource source;
+        private final RouteBuilder builder;
+        private final Future<?> future;
+
+        Evaluation(RoutesSource source, RouteBuilder builder, Future<?> future) {
+            this.source = source;
+            this.builder = builder;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteModelHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.MultipleConsumersSupport;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.FromDefinition;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.ModelHelper;
+import org.apache.camel.model.RouteDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+/**
+ * Keeps track of the routes defined by each script so that, when a script
+ * changes, only the routes whose definition has changed are replaced.
+ *
+ * Routes are matched by their id when the script sets one, otherwise by their
+ * input endpoints and their position among the routes consuming from the same
+ * endpoints. A changed route is started side by side with the route it
+ * replaces, under a new id made of the original route id and a generation
+ * number, and the previous route is removed only once the new one is running.
+ * If the endpoints of the route do not support multiple consumers, the
+ * previous route is stopped first and the new one is started under the same
+ * id; if it fails to start, the previous route is restored.
+ */
+final class RoutesReloader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesReloader.class);
+
+    private final RoutesLoader loader;
+    private final Map<String, List<LoadedRoute>> routes;
+    private final AtomicLong generation;
+
+    RoutesReloader(RoutesLoader loader) {
+        this.loader = loader;
+        this.routes = new ConcurrentHashMap<>();
+        this.generation = new AtomicLong();
+    }
+
+    /**
+     * Inspects the routes defined by the given builder, the builder must have
+     * been configured from the given resource but its routes not yet added
+     * to the context.
+     */
+    List<LoadedRoute> inspect(CamelContext camelContext, Resource resource, RouteBuilder builder) {
+        final List<LoadedRoute> loaded = new ArrayList<>();
+        final Map<String, Integer> occurrences = new HashMap<>();
+        final String digest = digest(resource);
+
+        for (RouteDefinition definition : builder.getRouteCollection().getRoutes()) {
+            loaded.add(new LoadedRoute(camelContext, definition, occurrences, digest));
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Records the routes defined by the given resource once they have been
+     * added to the context, so their ids are the ones assigned by Camel.
+     */
+    void record(Resource resource, List<LoadedRoute> loaded) {
+        for (LoadedRoute route : loaded) {
+            route.base = route.definition.getId();
+        }
+
+        routes.put(key(resource), loaded);
+    }
+
+    /**
+     * Evaluates the given resource again and replaces the routes that have
+     * changed since the last evaluation.
+     */
+    void reload(CamelContext camelContext, Resource resource) {
+        final RoutesLoaderMapping mapping = loader.mapping(resource);
+        if (mapping == null) {
+            return;
+        }
+
+        LOGGER.info("Reloading Camel routes from: {}", resource);
+
+        final long start = System.nanoTime();
+        final ModelCamelContext model = camelContext.adapt(ModelCamelContext.class);
+        final RouteBuilder builder = loader.builder(camelContext, resource, mapping);
+
+        try {
+            builder.configureRoutes(model);
+        } catch (Exception e) {
+            // keep the routes defined by the previous version of the script
+            LOGGER.warn("Failed to reload Camel routes from: {}", resource, e);
+            return;
+        }
+
+        final String key = key(resource);
+        final List<LoadedRoute> previous = routes.getOrDefault(key, Collections.emptyList());
+        final List<LoadedRoute> next = inspect(camelContext, resource, builder);
+        final Map<String, LoadedRoute> candidates = new HashMap<>();
+        final Map<LoadedRoute, LoadedRoute> matches = new IdentityHashMap<>();
+        final Set<LoadedRoute> retained = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<LoadedRoute> current = new ArrayList<>();
+
+        for (LoadedRoute route : previous) {
+            candidates.put(route.key, route);
+        }
+        for (LoadedRoute route : next) {
+            final LoadedRoute old = candidates.remove(route.key);
+            if (old != null) {
+                matches.put(route, old);
+                retained.add(old);
+            }
+        }
+
+        int added = 0;
+        int swapped = 0;
+        int removed = 0;
+
+        // remove the routes no longer defined by the script first, so the
+        // routes added in their place can consume from the same endpoints
+        for (LoadedRoute route : previous) {
+            if (!retained.contains(route)) {
+                try {
+                    model.removeRouteDefinition(route.definition);
+                    removed++;
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to remove Camel route {}", route.definition.getId(), e);
+                }
+            }
+        }
+
+        for (LoadedRoute route : next) {
+            final LoadedRoute old = matches.get(route);
+
+            try {
+                if (old == null) {
+                    model.addRouteDefinition(route.definition);
+                    route.base = route.definition.getId();
+                    current.add(route);
+                    added++;
+                } else if (old.isSameAs(route)) {
+                    current.add(old);
+                } else {
+                    swap(camelContext, model, old, route);
+                    current.add(route);
+                    swapped++;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to reload Camel route {} from: {}", route.definition, resource, e);
+
+                if (old != null) {
+                    current.add(old);
+                }
+            }
+        }
+
+        routes.put(key, current);
+
+        LOGGER.info("Reloaded Camel routes from: {} in {} ms (swapped: {}, added: {}, removed: {}, unchanged: {})",
+            resource,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            swapped,
+            added,
+            removed,
+            current.size() - swapped - added);
+    }
+
+    /**
+     * Removes all the routes defined by the given resource.
+     */
+    void unload(CamelContext camelContext, Resource resource) {
+        final List<LoadedRoute> previous = routes.remove(key(resource));
+        if (previous == null) {
+            return;
+        }
+
+        LOGGER.info("Removing Camel routes loaded from: {}", resource);
+
+        final ModelCamelContext model = camelContext.adapt(ModelCamelContext.class);
+
+        for (LoadedRoute route : previous) {
+            try {
+                model.removeRouteDefinition(route.definition);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to remove Camel route {}", route.definition.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * The ids of the routes currently recorded for the given resource.
+     */
+    List<String> getRouteIds(Resource resource) {
+        final List<String> answer = new ArrayList<>();
+
+        for (LoadedRoute route : routes.getOrDefault(key(resource), Collections.emptyList())) {
+            answer.add(route.definition.getId());
+        }
+
+        return answer;
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void swap(CamelContext camelContext, ModelCamelContext model, LoadedRoute old, LoadedRoute route) throws Exception {
+        if (!isMultipleConsumersSupported(camelContext, route.definition)) {
+            replace(camelContext, model, old, route);
+            return;
+        }
+
+        final RouteDefinition definition = route.definition;
+        definition.setId(old.base + "-" + generation.incrementAndGet());
+
+        try {
+            model.addRouteDefinition(definition);
+        } catch (Exception e) {
+            removeQuietly(model, definition);
+            throw e;
+        }
+
+        route.base = old.base;
+
+        // the new route is running so the previous one can go
+        try {
+            model.removeRouteDefinition(old.definition);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to remove Camel route {} replaced by {}", old.definition.getId(), definition.getId(), e);
+        }
+    }
+
+    private void replace(CamelContext camelContext, ModelCamelContext model, LoadedRoute old, LoadedRoute route) throws Exception {
+        final String id = old.definition.getId();
+
+        route.definition.setId(id);
+
+        camelContext.stopRoute(id);
+        model.removeRouteDefinition(old.definition);
+
+        try {
+            model.addRouteDefinition(route.definition);
+        } catch (Exception e) {
+            LOGGER.debug("Unable to start the new definition of route {}, restoring the previous one", id, e);
+
+            removeQuietly(model, route.definition);
+            model.addRouteDefinition(old.definition);
+
+            throw e;
+        }
+
+        route.base = old.base;
+    }
+
+    /**
+     * @return true if all the endpoints the given route consumes from accept
+     *         a second consumer, so the route can be started side by side
+     *         with the route it replaces.
+     */
+    private static boolean isMultipleConsumersSupported(CamelContext camelContext, RouteDefinition definition) {
+        for (FromDefinition input : definition.getInputs()) {
+            final Endpoint endpoint;
+
+            try {
+                endpoint = input.getUri() != null
+                    ? camelContext.getEndpoint(input.getUri())
+                    : camelContext.getRegistry().lookupByNameAndType(input.getRef(), Endpoint.class);
+            } catch (Exception e) {
+                return false;
+            }
+
+            if (!(endpoint instanceof MultipleConsumersSupport) || !((MultipleConsumersSupport) endpoint).isMultipleConsumersSupported()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void removeQuietly(ModelCamelContext model, RouteDefinition definition) {
+        try {
+            model.removeRouteDefinition(definition);
+        } catch (Exception ignored) {
+            // the definition may not have been added at all
+        }
+    }
+
+    private static String key(Resource resource) {
+        return ScriptHelper.uri(resource);
+    }
+
+    private static String digest(Resource resource) {
+        try {
+            return ScriptHelper.sha256(ScriptHelper.read(resource));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static final class LoadedRoute {
+        private final String key;
+        private final String fingerprint;
+        private final RouteDefinition definition;
+
+        // the id the route has been first added with, routes started side by
+        // side are given this id suffixed with a generation number
+        private String base;
+
+        LoadedRoute(CamelContext camelContext, RouteDefinition definition, Map<String, Integer> occurrences, String digest) {
+            this.key = key(definition, occurrences);
+            this.fingerprint = fingerprint(camelContext, definition, digest);
+            this.definition = definition;
+        }
+
+        boolean isSameAs(LoadedRoute other) {
+            return fingerprint != null && Objects.equals(fingerprint, other.fingerprint);
+        }
+
+        private static String key(RouteDefinition definition, Map<String, Integer> occurrences) {
+            if (definition.hasCustomIdAssigned()) {
+                return "id:" + definition.getId();
+            }
+
+            final StringBuilder inputs = new StringBuilder("from:");
+            for (FromDefinition input : definition.getInputs()) {
+                inputs.append(input.getUri() != null ? input.getUri() : input.getRef()).append(' ');
+            }
+
+            // routes consuming from the same endpoints are told apart by the
+            // order in which the script defines them
+            final String key = inputs.toString();
+            final int position = occurrences.merge(key, 1, Integer::sum);
+
+            return key + "#" + position;
+        }
+
+        private static String fingerprint(CamelContext camelContext, RouteDefinition definition, String digest) {
+            final String model;
+
+            try {
+                model = definition + "\n" + ModelHelper.dumpModelAsXml(camelContext, definition);
+            } catch (Exception e) {
+                return null;
+            }
+
+            // the code of the callbacks is not part of the model, a route
+            // holding callbacks is unchanged only if the script is
+            if (RouteModelHelper.hasCallbacks(definition)) {
+                return digest != null ? "sha256:" + digest + "\n" + model : null;
+            }
+
+            return model;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Resolves the configured locations and libraries and dispatches the
+ * resources found to the mappings in charge of them.
+ */
+final class RoutesResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesResolver.class);
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+
+    private final ApplicationContext applicationContext;
+    private final RoutesLoaderConfigurationProperties configuration;
+    private final List<RoutesLoaderMapping> mappings;
+    private final RoutesLoaderTimeline timeline;
+
+    RoutesResolver(
+            ApplicationContext applicationContext,
+            RoutesLoaderConfigurationProperties configuration,
+            List<RoutesLoaderMapping> mappings,
+            RoutesLoaderTimeline timeline) {
+
+        this.applicationContext = applicationContext;
+        this.configuration = configuration;
+        this.mappings = mappings;
+        this.timeline = timeline;
+    }
+
+    /**
+     * @return the mapping in charge of the given resource or null if none
+     *         of the loaders handles it.
+     */
+    RoutesLoaderMapping mapping(Resource resource) {
+        for (RoutesLoaderMapping mapping : mappings) {
+            if (mapping.matches(resource)) {
+                return mapping;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Registers the library scripts found in the configured locations to the
+     * loaders in charge of their extension.
+     */
+    void libraries(Map<Object, Exception> failures) {
+        for (String location : configuration.getLibraries().getLocations()) {
+            final Resource[] resources;
+
+            try {
+                resources = applicationContext.getResources(location);
+            } catch (Exception e) {
+                failures.put(location, e);
+                continue;
+            }
+
+            for (Resource resource : resources) {
+                final RoutesLoaderMapping mapping = mapping(resource);
+
+                try {
+                    if (mapping == null || !(mapping.getMapper() instanceof RouteLoader) || !((RouteLoader) mapping.getMapper()).supportsLibraries()) {
+                        throw new IllegalArgumentException("No loader supports libraries for " + resource.getFilename());
+                    }
+
+                    LOGGER.info("Loading Camel routes library from: {}", resource);
+
+                    ((RouteLoader) mapping.getMapper()).addLibrary(resource);
+                } catch (Exception e) {
+                    failures.put(resource, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the configured locations once and dispatches the resources
+     * found to the loaders according to their extension, classpath locations
+     * are resolved against the routes index when available to avoid scanning
+     * the classpath roots it has been found in.
+     */
+    List<RoutesSource> resolve(Map<Object, Exception> failures) {
+        final Set<Resource> resources = new LinkedHashSet<>();
+
+        RoutesIndex index = null;
+        if (configuration.getIndex().isEnabled()) {
+            final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+
+            try {
+                index = RoutesIndex.load(applicationContext, configuration.getIndex().getLocation());
+            } catch (Exception e) {
+                failures.put(configuration.getIndex().getLocation(), e);
+            }
+
+            if (timeline != null) {
+                timeline.record(RoutesLoaderTimeline.SCAN, null, configuration.getIndex().getLocation(), stopwatch);
+            }
+        }
+
+        for (String location: configuration.getLocations()) {
+            final RoutesLoaderTimeline.Stopwatch stopwatch = RoutesLoaderTimeline.start();
+
+            try {
+                if (index != null) {
+                    resources.addAll(index.resolve(applicationContext, location));
+                } else {
+                    for (Resource resource : applicationContext.getResources(location)) {
+                        resources.add(resource);
+                    }
+                }
+            } catch (Exception e) {
+                failures.put(location, e);
+            }
+
+            if (timeline != null) {
+                timeline.record(RoutesLoaderTimeline.SCAN, null, location, stopwatch);
+            }
+        }
+
+        final List<RoutesSource> sources = new ArrayList<>(resources.size());
+
+        for (RoutesLoaderMapping mapping : mappings) {
+            for (Resource resource : resources) {
+                if (mapping(resource) == mapping) {
+                    sources.add(new RoutesSource(resource, mapping));
+                }
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * Sorts the sources according to the first pattern matching their file
+     * name, sources not matching any pattern come last, the sort is stable so
+     * the order of the sources having the same priority is preserved.
+     */
+    static void prioritize(List<RoutesSource> sources, List<String> priorities) {
+        if (priorities.isEmpty()) {
+            return;
+        }
+
+        sources.sort(Comparator.comparingInt(source -> {
+            final String name = ScriptHelper.name(source.getResource());
+
+            for (int i = 0; i < priorities.size(); i++) {
+                if (MATCHER.match(priorities.get(i), name)) {
+                    return i;
+                }
+            }
+
+            return priorities.size();
+        }));
+    }
+}
@@ -0,0 +1,433 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.lburgazzoli.camel.route.scripting.Components;
+import com.github.lburgazzoli.camel.route.scripting.RouteModelHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Component;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.ModelHelper;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.RoutesDefinition;
+import org.apache.camel.util.IntrospectionSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+/**
+ * The route model produced by evaluating the route scripts at build time, so
+ * scripts that have not changed since the build can be loaded at startup
+ * without evaluating them.
+ *
+ * The snapshot is a yaml file that holds, for every script, the routes it
+ * defines as xml and the components it registers with their properties. The
+ * entries are keyed by the digest of the script content, a script with no
+ * entry, i.e. because it has been changed, is evaluated as usual.
+ *
+ * A script is part of the snapshot only if what it produces can be rebuilt
+ * from the xml and the component properties, scripts providing callbacks
+ * such as processors or setting non plain component properties are always
+ * evaluated. Side effects other than registering components, like binding
+ * beans, are not captured.
+ *
+ * The snapshot can be generated by running this class with the classes
+ * directory and a comma separated list of patterns, relative to the classes
+ * directory, as arguments.
+ */
+public final class RoutesSnapshot {
+    public static final String DEFAULT_LOCATION = "META-INF/camel-routes.snapshot";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesSnapshot.class);
+    private static final AntPathMatcher MATCHER = new AntPathMatcher();
+    private static final int VERSION = 1;
+
+    private final Map<String, Entry> entries;
+
+    private RoutesSnapshot(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return true if the snapshot holds the script having the given key, as
+     *         computed by {@link #key(byte[], String)}.
+     */
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return true if the snapshot holds the given script.
+     */
+    public boolean contains(Resource resource, String extension) throws IOException {
+        return !entries.isEmpty() && contains(key(ScriptHelper.read(resource), extension));
+    }
+
+    /**
+     * Adds the components and the routes recorded for the given script to the
+     * builder.
+     *
+     * @return true if the snapshot holds the given script, false if the script
+     *         has to be evaluated.
+     */
+    public boolean apply(Resource resource, String extension, RouteBuilder builder) throws Exception {
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        return apply(key(ScriptHelper.read(resource), extension), builder);
+    }
+
+    /**
+     * Adds the components and the routes recorded for the script having the
+     * given key, as computed by {@link #key(byte[], String)}, to the builder.
+     *
+     * @return true if the snapshot holds the given script, false if the script
+     *         has to be evaluated.
+     */
+    public boolean apply(String key, RouteBuilder builder) throws Exception {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+
+        LOGGER.debug("Loading Camel routes from snapshot of: {}", entry.script);
+
+        entry.apply(builder);
+
+        return true;
+    }
+
+    /**
+     * Reads and merges all the snapshot files found at the given location.
+     */
+    @SuppressWarnings("unchecked")
+    public static RoutesSnapshot load(ResourcePatternResolver resolver, String location) throws IOException {
+        final Map<String, Entry> entries = new HashMap<>();
+
+        if (StringUtils.hasText(location)) {
+            for (Resource resource : resolver.getResources(location)) {
+                final Map<String, Object> snapshot;
+
+                try (InputStream is = resource.getInputStream()) {
+                    snapshot = new Yaml(new SafeConstructor()).load(is);
+                }
+
+                if (snapshot == null) {
+                    continue;
+                }
+                if (!Objects.equals(VERSION, snapshot.get("version"))) {
+                    throw new IOException("Unsupported routes snapshot version " + snapshot.get("version") + " in " + resource);
+                }
+
+                for (Map<String, Object> item : (List<Map<String, Object>>) snapshot.get("entries")) {
+                    entries.put((String) item.get("key"), new Entry(item));
+                }
+            }
+        }
+
+        return new RoutesSnapshot(entries);
+    }
+
+    // ********************************
+    //
+    // Generator
+    //
+    // ********************************
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: RoutesSnapshot <classes directory> <patterns>");
+        }
+
+        final Path root = Paths.get(args[0]);
+        final String[] patterns = StringUtils.commaDelimitedListToStringArray(args[1]);
+        final Path target = root.resolve(DEFAULT_LOCATION);
+
+        final List<String> scripts;
+        try (Stream<Path> paths = Files.walk(root)) {
+            scripts = paths
+                .filter(Files::isRegularFile)
+                .map(path -> StringUtils.cleanPath(root.relativize(path).toString()))
+                .filter(path -> Stream.of(patterns).anyMatch(pattern -> MATCHER.match(pattern.trim(), path)))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        final List<Map<String, Object>> entries = new ArrayList<>();
+
+        // the loaders are discovered as at runtime but are not bound to any
+        // application context so they use their default settings
+        try (GenericApplicationContext applicationContext = new GenericApplicationContext();
+             RouteLoaderRegistry loaders = registry(applicationContext)) {
+
+            final List<RoutesLoaderMapping> mappings = loaders.getMappings();
+
+            for (String script : scripts) {
+                final Resource resource = new FileSystemResource(root.resolve(script).toFile());
+                final RoutesLoaderMapping mapping = mappings.stream().filter(m -> m.matches(resource)).findFirst().orElse(null);
+
+                if (mapping == null) {
+                    LOGGER.info("Skipping {}: no loader available", script);
+                    continue;
+                }
+
+                try {
+                    final Map<String, Object> entry = snapshot(script, resource, mapping);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                } catch (Exception e) {
+                    // the script is evaluated at runtime as usual
+                    LOGGER.warn("Skipping {}: failed to evaluate it", script, e);
+                }
+            }
+        }
+
+        final Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("version", VERSION);
+        snapshot.put("entries", entries);
+
+        final DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+
+        Files.createDirectories(target.getParent());
+        Files.write(target, new Yaml(options).dump(snapshot).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Evaluates the given script against a dedicated context, which is never
+     * started, and records what it produces.
+     *
+     * @return the snapshot entry of the script or null if the script has to
+     *         be evaluated at runtime.
+     */
+    private static Map<String, Object> snapshot(String script, Resource resource, RoutesLoaderMapping mapping) throws Exception {
+        final DefaultCamelContext context = new DefaultCamelContext();
+        final Map<String, Component> before = components(context);
+
+        final RouteBuilder builder = new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                mapping.getMapper().accept(resource, this);
+            }
+        };
+
+        builder.configureRoutes(context);
+
+        final RoutesDefinition routes = builder.getRouteCollection();
+
+        for (RouteDefinition route : routes.getRoutes()) {
+            if (RouteModelHelper.hasCallbacks(route)) {
+                LOGGER.info("Skipping {}: route {} has processors, policies or executors defined by the script", script, route);
+                return null;
+            }
+
+            // anything that is not part of the xml model, i.e. an expression
+            // provided as object, is lost by the round trip
+            final String xml = ModelHelper.dumpModelAsXml(context, route);
+            final RouteDefinition copy = ModelHelper.createModelFromXml(context, xml, RouteDefinition.class);
+
+            if (!Objects.equals(route.toString(), copy.toString())) {
+                LOGGER.info("Skipping {}: route {} can not be represented as xml", script, route);
+                return null;
+            }
+        }
+
+        final List<Map<String, Object>> components = new ArrayList<>();
+
+        for (Map.Entry<String, Component> entry : components(context).entrySet()) {
+            if (before.get(entry.getKey()) == entry.getValue()) {
+                continue;
+            }
+
+            final Map<String, Object> properties = properties(context, entry.getValue());
+            if (properties == null) {
+                LOGGER.info("Skipping {}: component {} has properties that can not be represented as text", script, entry.getKey());
+                return null;
+            }
+
+            final Map<String, Object> component = new LinkedHashMap<>();
+            component.put("name", entry.getKey());
+            component.put("type", entry.getValue().getClass().getName());
+            component.put("properties", properties);
+
+            components.add(component);
+        }
+
+        final Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("key", key(ScriptHelper.read(resource), mapping.getExtension()));
+        entry.put("script", script);
+        entry.put("components", components);
+        entry.put("routes", ModelHelper.dumpModelAsXml(context, routes));
+
+        LOGGER.info("Snapshot of {}: {} routes, {} components", script, routes.getRoutes().size(), components.size());
+
+        return entry;
+    }
+
+    private static RouteLoaderRegistry registry(GenericApplicationContext applicationContext) throws Exception {
+        applicationContext.refresh();
+
+        return RouteLoaderRegistry.create(applicationContext, RoutesSnapshot.class.getClassLoader());
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    /**
+     * @return the key of the entry of a script having the given content and
+     *         handled by the loader mapped to the given extension.
+     */
+    static String key(byte[] content, String extension) {
+        return ScriptHelper.sha256(content, extension);
+    }
+
+    private static Map<String, Component> components(CamelContext context) {
+        final Map<String, Component> answer = new TreeMap<>();
+
+        for (String name : context.getComponentNames()) {
+            answer.put(name, context.hasComponent(name));
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return the properties of the given component that differ from the ones
+     *         of a newly created instance of the same type, or null if any of
+     *         them is not a plain value.
+     */
+    private static Map<String, Object> properties(CamelContext context, Component component) throws Exception {
+        final Map<String, Object> actual = new TreeMap<>();
+        final Map<String, Object> defaults = new HashMap<>();
+
+        IntrospectionSupport.getProperties(component, actual, null);
+        IntrospectionSupport.getProperties(context.getInjector().newInstance(component.getClass()), defaults, null);
+
+        // set by the context when the component is added
+        actual.remove("camelContext");
+
+        final Map<String, Object> answer = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> entry : actual.entrySet()) {
+            final Object value = entry.getValue();
+
+            if (Objects.equals(value, defaults.get(entry.getKey()))) {
+                continue;
+            }
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum)) {
+                return null;
+            }
+
+            answer.put(entry.getKey(), value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+        }
+
+        return answer;
+    }
+
+    private static final class Entry {
+        private final String script;
+        private final List<Map<String, Object>> components;
+        private final String routes;
+
+        @SuppressWarnings("unchecked")
+        Entry(Map<String, Object> item) {
+            this.script = (String) item.get("script");
+            this.routes = (String) item.get("routes");
+
+            final Object items = item.get("components");
+            this.components = items != null ? (List<Map<String, Object>>) items : Collections.emptyList();
+        }
+
+        @SuppressWarnings("unchecked")
+        void apply(RouteBuilder builder) throws Exception {
+            final CamelContext context = builder.getContext();
+            final Components registry = new Components(context);
+
+            for (Map<String, Object> item : components) {
+                final String name = (String) item.get("name");
+                final Object properties = item.get("properties");
+
+                // the application may already provide the component, i.e.
+                // as a bean, in which case only the recorded properties are
+                // applied to it
+                Component component = context.hasComponent(name);
+                boolean created = false;
+
+                if (component == null) {
+                    final Class<?> type = context.getClassResolver().resolveMandatoryClass((String) item.get("type"));
+
+                    component = (Component) context.getInjector().newInstance(type);
+                    created = true;
+                }
+
+                if (properties != null) {
+                    IntrospectionSupport.setProperties(context.getTypeConverter(), component, new HashMap<>((Map<String, Object>) properties));
+                }
+
+                if (created) {
+                    registry.put(name, component);
+                }
+            }
+
+            final RoutesDefinition definitions = ModelHelper.createModelFromXml(context, routes, RoutesDefinition.class);
+
+            for (RouteDefinition definition : definitions.getRoutes()) {
+                builder.getRouteCollection().route(definition);
+            }
+        }
+    }
+}
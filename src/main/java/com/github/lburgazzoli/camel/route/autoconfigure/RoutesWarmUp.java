@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteModelHelper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invokes the callbacks provided by a script with synthetic exchanges before
+ * its routes are started so they are compiled by the JIT before they have to
+ * process real traffic.
+ *
+ * Callbacks are invoked in batches, a callback is considered to have reached
+ * steady state once the mean latency of {@link #STABLE_BATCHES} consecutive
+ * batches varies less than the configured tolerance, warming up a callback
+ * stops when steady state is reached or when its budget is exhausted.
+ */
+final class RoutesWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesWarmUp.class);
+    private static final int STABLE_BATCHES = 3;
+
+    private final RoutesLoaderConfigurationProperties.WarmUp configuration;
+    private final Set<ExchangeFormatter> formatters;
+
+    RoutesWarmUp(RoutesLoaderConfigurationProperties.WarmUp configuration) {
+        this.configuration = configuration;
+        this.formatters = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * Warms up the callbacks of the given routes, defined by the given script,
+     * and the exchange formatters the script has set on the log components it
+     * retrieved, as reported by its loader, so the components shared with
+     * other scripts are left untouched. A formatter shared by several scripts
+     * is warmed up once.
+     */
+    void warmUp(CamelContext camelContext, String script, List<RouteDefinition> routes, List<ExchangeFormatter> formatters) {
+        RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+            @Override
+            public Processor processor(RouteDefinition route, Processor processor) {
+                run(camelContext, script, route, "processor", processor::process);
+                return processor;
+            }
+
+            @Override
+            public Predicate predicate(RouteDefinition route, Predicate predicate) {
+                run(camelContext, script, route, "predicate", predicate::matches);
+                return predicate;
+            }
+
+            @Override
+            public Expression expression(RouteDefinition route, Expression expression) {
+                run(camelContext, script, route, "expression", exchange -> expression.evaluate(exchange, Object.class));
+                return expression;
+            }
+        });
+
+        for (ExchangeFormatter formatter : formatters) {
+            if (this.formatters.add(formatter)) {
+                run(camelContext, script, null, "formatter", formatter::format);
+            }
+        }
+    }
+
+    private void run(CamelContext camelContext, String script, RouteDefinition route, String type, Callback callback) {
+        final String label = route != null ? label(route) : null;
+        final RoutesLoaderConfigurationProperties.WarmUp.Route settings = label != null
+            ? configuration.getRoutes().get(label)
+            : null;
+
+        final int iterations = settings != null && settings.getIterations() != null ? settings.getIterations() : configuration.getIterations();
+        final long duration = settings != null && settings.getDuration() != null ? settings.getDuration() : configuration.getDuration();
+        final String body = settings != null && settings.getBody() != null ? settings.getBody() : configuration.getBody();
+        final int batch = Math.max(1, configuration.getBatchSize());
+        final long deadline = duration > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration) : 0;
+
+        int invocations = 0;
+        int stable = 0;
+        double previous = -1;
+        double mean = -1;
+
+        while (invocations < iterations && stable < STABLE_BATCHES && (deadline == 0 || System.nanoTime() < deadline)) {
+            final int count = Math.min(batch, iterations - invocations);
+            final long start = System.nanoTime();
+
+            try {
+                for (int i = 0; i < count; i++) {
+                    callback.invoke(exchange(camelContext, route, body));
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Skipping warm-up of {} of {} ({}): {}", type, label != null ? label : script, script, e.getMessage());
+                return;
+            }
+
+            mean = (double)(System.nanoTime() - start) / count;
+            invocations += count;
+
+            stable = previous > 0 && Math.abs(mean - previous) <= configuration.getTolerance() * previous ? stable + 1 : 0;
+            previous = mean;
+        }
+
+        if (stable >= STABLE_BATCHES) {
+            LOGGER.info("Warmed up {} of {} ({}): steady state reached after {} invocations, {} ns/op",
+                type, label != null ? label : script, script, invocations, Math.round(mean));
+        } else {
+            LOGGER.info("Warmed up {} of {} ({}): steady state not reached after {} invocations, {} ns/op",
+                type, label != null ? label : script, script, invocations, Math.round(mean));
+        }
+    }
+
+    private static Exchange exchange(CamelContext camelContext, RouteDefinition route, String body) {
+        final Exchange exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setBody(body);
+
+        if (route != null) {
+            exchange.setFromRouteId(route.getId());
+        }
+
+        return exchange;
+    }
+
+    /**
+     * @return the id of the route or the uri it consumes from when no id has
+     *         been set by the script.
+     */
+    private static String label(RouteDefinition route) {
+        if (route.getId() != null) {
+            return route.getId();
+        }
+
+        return route.getInputs().isEmpty() ? null : route.getInputs().get(0).getUri();
+    }
+
+    @FunctionalInterface
+    private interface Callback {
+        void invoke(Exchange exchange) throws Exception;
+    }
+}
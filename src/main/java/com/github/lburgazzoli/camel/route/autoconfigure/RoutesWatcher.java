@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Watches the directories of the {@code file:} locations and reloads the
+ * scripts that have been changed, created or deleted.
+ *
+ * The scripts loaded from the configured directories are not watched: they
+ * are meant to hold thousands of scripts in deep trees and a watch key would
+ * be needed for every sub directory.
+ */
+final class RoutesWatcher extends ServiceSupport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutesWatcher.class);
+
+    private final RoutesReloader reloader;
+    private final CamelContext camelContext;
+    private final Collection<String> locations;
+    private final long debounce;
+    private final AntPathMatcher matcher;
+    private final Map<WatchKey, Path> keys;
+    private final List<String> patterns;
+
+    private WatchService watchService;
+    private ExecutorService executor;
+
+    RoutesWatcher(RoutesReloader reloader, CamelContext camelContext, Collection<String> locations, long debounce) {
+        this.reloader = reloader;
+        this.camelContext = camelContext;
+        this.locations = locations;
+        this.debounce = debounce;
+        this.matcher = new AntPathMatcher();
+        this.keys = new LinkedHashMap<>();
+        this.patterns = new ArrayList<>();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        watchService = FileSystems.getDefault().newWatchService();
+
+        for (String location : locations) {
+            if (location.startsWith(ResourceUtils.FILE_URL_PREFIX)) {
+                watch(location.substring(ResourceUtils.FILE_URL_PREFIX.length()));
+            }
+        }
+
+        if (keys.isEmpty()) {
+            LOGGER.debug("No file locations to watch");
+            return;
+        }
+
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        executor = camelContext.getExecutorServiceManager().newSingleThreadExecutor(this, "RoutesWatcher");
+        executor.submit(() -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            run();
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+        if (executor != null) {
+            camelContext.getExecutorServiceManager().shutdownNow(executor);
+            executor = null;
+        }
+
+        keys.clear();
+        patterns.clear();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void watch(String location) throws IOException {
+        final int wildcard = indexOfWildcard(location);
+        final String base = wildcard < 0 ? location : location.substring(0, location.lastIndexOf('/', wildcard) + 1);
+        final String remainder = location.substring(base.length());
+        final Path path = Paths.get(base.isEmpty() ? "." : base).toAbsolutePath().normalize();
+
+        final Path dir;
+        if (Files.isRegularFile(path)) {
+            dir = path.getParent();
+            patterns.add(path(path));
+        } else {
+            dir = path;
+            patterns.add(path(dir) + "/" + remainder);
+        }
+
+        if (!Files.isDirectory(dir)) {
+            LOGGER.warn("Unable to watch {}, not a directory", dir);
+            return;
+        }
+
+        LOGGER.info("Watching Camel routes in: {}", dir);
+
+        if (remainder.contains("**")) {
+            final List<Path> dirs;
+            try (Stream<Path> paths = Files.walk(dir)) {
+                dirs = paths.filter(Files::isDirectory).collect(Collectors.toList());
+            }
+
+            for (Path child : dirs) {
+                register(child);
+            }
+        } else {
+            register(dir);
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        keys.put(
+            dir.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE),
+            dir
+        );
+    }
+
+    private void run() {
+        try {
+            while (isRunAllowed()) {
+                final Set<Path> changes = new LinkedHashSet<>();
+
+                // wait for a change then collect the changes that follow
+                // in a short time, i.e. editors write files in many steps
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collect(key, changes);
+                    key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path path : changes) {
+                    if (!matches(path)) {
+                        continue;
+                    }
+
+                    if (Files.exists(path)) {
+                        reloader.reload(camelContext, new FileSystemResource(path.toFile()));
+                    } else {
+                        reloader.unload(camelContext, new FileSystemResource(path.toFile()));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changes) {
+        final Path dir = keys.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir != null && event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                changes.add(dir.resolve((Path)event.context()));
+            }
+        }
+
+        key.reset();
+    }
+
+    private boolean matches(Path path) {
+        final String candidate = path(path);
+
+        for (String pattern : patterns) {
+            if (matcher.match(pattern, candidate)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String path(Path path) {
+        return StringUtils.cleanPath(path.toAbsolutePath().normalize().toString());
+    }
+
+    private static int indexOfWildcard(String location) {
+        for (int i = 0; i < location.length(); i++) {
+            final char c = location.charAt(i);
+
+            if (c == '*' || c == '?' || c == '{') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.function.ToIntFunction;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutor;
+import com.github.lburgazzoli.camel.route.scripting.ScriptExecutorManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the state of the executors created by the scripts, gauges are
+ * looked up by executor name so they keep reporting the executor of a script
+ * that has been reloaded and report 0 once the executor has been shut down.
+ */
+final class ScriptExecutorMetrics implements MeterBinder {
+    private final ScriptExecutorManager manager;
+
+    ScriptExecutorMetrics(ScriptExecutorManager manager) {
+        this.manager = manager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        manager.getNames().forEach(name -> bindTo(registry, name));
+        manager.addListener(name -> bindTo(registry, name));
+    }
+
+    private void bindTo(MeterRegistry registry, String name) {
+        gauge(registry, name, "camel.routes.loader.executor.active", "The number of threads running a task", ScriptExecutor::getActiveCount);
+        gauge(registry, name, "camel.routes.loader.executor.queue", "The number of tasks waiting for a thread", ScriptExecutor::getQueueSize);
+        gauge(registry, name, "camel.routes.loader.executor.size", "The number of threads of the pool", ScriptExecutor::getPoolSize);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String metric, String description, ToIntFunction<ScriptExecutor> function) {
+        Gauge.builder(metric, manager, m -> {
+                final ScriptExecutor executor = m.getExecutor(name);
+
+                return executor != null && !executor.isShutdown() ? Math.max(0, function.applyAsInt(executor)) : 0;
+            })
+            .description(description)
+            .tag("executor", name)
+            .register(registry);
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import com.github.lburgazzoli.camel.route.scripting.RouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory;
+import com.github.lburgazzoli.camel.route.scripting.YamlRouteLoader;
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Loads {@code .yaml} and {@code .yml} route definitions.
+ */
+public final class YamlRouteLoaderFactory implements RouteLoaderFactory {
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public boolean isAvailable(ClassLoader classLoader) {
+        return ClassUtils.isPresent("org.yaml.snakeyaml.Yaml", classLoader);
+    }
+
+    @Override
+    public RouteLoader newInstance(ApplicationContext applicationContext) {
+        final YamlRouteLoader loader = new YamlRouteLoader();
+        loader.setMetrics(RouteLoaderRegistry.metrics(applicationContext, getName()));
+
+        return loader;
+    }
+}
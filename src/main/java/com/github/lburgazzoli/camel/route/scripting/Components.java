@@ -1,21 +1,53 @@
 package com.github.lburgazzoli.camel.route.scripting;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import org.apache.camel.CamelContext;
 import org.apache.camel.Component;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.spi.ExchangeFormatter;
 
 public class Components {
+    // the script that registered each component, guarded by itself so
+    // that checking and replacing a component is atomic across scripts
+    // loaded in parallel
+    private static final Map<Component, String> OWNERS = new WeakHashMap<>();
+
     private CamelContext context;
+    private final String owner;
+    private final Map<String, Component> components;
 
     public Components(CamelContext context) {
+        this(context, null);
+    }
+
+    /**
+     * @param owner the script the components are registered by, a component
+     *              registered by a previous evaluation of the same script is
+     *              replaced instead of failing as a duplicate.
+     */
+    public Components(CamelContext context, String owner) {
         this.context = context;
+        this.owner = owner;
+        this.components = new LinkedHashMap<>();
     }
 
     public Component get(String scheme) {
-        return context.getComponent(scheme, true);
+        final Component component = context.getComponent(scheme, true);
+        track(scheme, component);
+
+        return component;
     }
 
     public Component put(String scheme, Component instance) {
-        context.addComponent(scheme, instance);
+        add(scheme, instance);
 
         return instance;
     }
@@ -24,8 +56,98 @@ public class Components {
         final Class<?> clazz = context.getClassResolver().resolveClass(type);
         final Component instance = (Component)context.getInjector().newInstance(clazz);
 
-        context.addComponent(scheme, instance);
+        add(scheme, instance);
 
         return instance;
     }
+
+    /**
+     * Creates and registers a component of the given type, this is the type
+     * safe flavour of {@link #make(String, String)}.
+     */
+    public <T extends Component> T make(String scheme, Class<T> type) {
+        final T instance = context.getInjector().newInstance(type);
+
+        add(scheme, instance);
+
+        return instance;
+    }
+
+    private void add(String scheme, Component instance) {
+        synchronized (OWNERS) {
+            final Component existing = context.hasComponent(scheme);
+
+            // a script that is evaluated again, i.e. because it has been
+            // reloaded, replaces the components it created the first time
+            if (existing != null && owner != null && owner.equals(OWNERS.get(existing))) {
+                context.removeComponent(scheme);
+            }
+
+            context.addComponent(scheme, instance);
+
+            if (owner != null) {
+                OWNERS.put(instance, owner);
+            }
+        }
+
+        track(scheme, instance);
+    }
+
+    /**
+     * Keeps track of the given component by the scheme the script retrieved
+     * it with, components are kept in the order the script retrieves them
+     * so evaluating the same script twice yields them in the same order.
+     */
+    void track(String scheme, Component component) {
+        components.put(scheme, component);
+    }
+
+    /**
+     * @return the component tracked for the given scheme or null if the
+     *         script did not retrieve it.
+     */
+    Component tracked(String scheme) {
+        return components.get(scheme);
+    }
+
+    /**
+     * @return the components retrieved or registered through this instance,
+     *         the script may have set callbacks on them.
+     */
+    Collection<Component> getComponents() {
+        return Collections.unmodifiableCollection(components.values());
+    }
+
+    /**
+     * Reports the exchange formatters provided by the script to the log
+     * components retrieved through this instance, if the given builder is
+     * {@link ExchangeFormattersAware}.
+     */
+    void report(RouteBuilder builder) {
+        if (!(builder instanceof ExchangeFormattersAware)) {
+            return;
+        }
+
+        final List<ExchangeFormatter> formatters = new ArrayList<>();
+
+        for (Component component : components.values()) {
+            if (component instanceof LogComponent) {
+                final ExchangeFormatter formatter = ((LogComponent) component).getExchangeFormatter();
+
+                if (RouteModelHelper.isCallback(formatter) && !formatters.contains(formatter)) {
+                    formatters.add(formatter);
+                }
+            }
+        }
+
+        ((ExchangeFormattersAware) builder).setExchangeFormatters(formatters);
+    }
+
+    /**
+     * @return the components retrieved or registered through this instance
+     *         by the scheme the script retrieved them with.
+     */
+    Map<String, Component> getComponentsByScheme() {
+        return Collections.unmodifiableMap(components);
+    }
 }
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Component;
+
+/**
+ * A {@link Components} that never touches the components registered in the
+ * {@link CamelContext}, it is used when a script is evaluated again only to
+ * retrieve its callbacks so the setup done by the script is not applied twice.
+ * The detached instances are still tracked so the callbacks set on them by
+ * the script can be retrieved, a scheme retrieved twice yields the same
+ * instance as it does from the {@link CamelContext}.
+ */
+class DetachedComponents extends Components {
+    private final CamelContext context;
+
+    DetachedComponents(CamelContext context) {
+        super(context);
+
+        this.context = context;
+    }
+
+    @Override
+    public Component get(String scheme) {
+        final Component tracked = tracked(scheme);
+        if (tracked != null) {
+            return tracked;
+        }
+
+        final Component component = context.getComponent(scheme, true);
+        final Component answer = (Component)context.getInjector().newInstance(component.getClass());
+
+        track(scheme, answer);
+
+        return answer;
+    }
+
+    @Override
+    public Component put(String scheme, Component instance) {
+        track(scheme, instance);
+
+        return instance;
+    }
+
+    @Override
+    public Component make(String scheme, String type) {
+        final Class<?> clazz = context.getClassResolver().resolveClass(type);
+        final Component answer = (Component)context.getInjector().newInstance(clazz);
+
+        track(scheme, answer);
+
+        return answer;
+    }
+
+    @Override
+    public <T extends Component> T make(String scheme, Class<T> type) {
+        final T answer = context.getInjector().newInstance(type);
+
+        track(scheme, answer);
+
+        return answer;
+    }
+}
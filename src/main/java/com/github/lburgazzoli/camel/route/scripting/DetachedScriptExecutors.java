@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+
+/**
+ * A {@link ScriptExecutors} that never creates nor resizes the executors
+ * owned by the {@link ScriptExecutorManager}, it is used when a script is
+ * evaluated again only to retrieve its callbacks so the routes the executors
+ * are bound to are never started and the executors never run any task.
+ */
+class DetachedScriptExecutors extends ScriptExecutors {
+    private static final ExecutorService DETACHED = new DetachedExecutorService();
+
+    DetachedScriptExecutors(CamelContext context) {
+        super(context, null);
+    }
+
+    @Override
+    public ExecutorService pool(String name, int threads, int queueSize) {
+        return DETACHED;
+    }
+
+    @Override
+    public ExecutorService virtual(String name) {
+        return DETACHED;
+    }
+
+    private static final class DetachedExecutorService extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            throw new RejectedExecutionException("Executors of a detached script evaluation can not run tasks");
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
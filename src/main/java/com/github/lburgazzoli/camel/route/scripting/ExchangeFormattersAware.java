@@ -0,0 +1,31 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.List;
+
+import org.apache.camel.spi.ExchangeFormatter;
+
+/**
+ * Implemented by the route builders that need the exchange formatters a
+ * script sets on the log components it retrieves, as they are not reflected
+ * by the route model. The loaders report them once the script has been
+ * evaluated, after they have been adapted or pooled.
+ */
+public interface ExchangeFormattersAware {
+    void setExchangeFormatters(List<ExchangeFormatter> formatters);
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.camel.Component;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+
+/**
+ * Replaces the host proxies GraalJS creates when a function is converted to
+ * a Camel callback with typed adapters.
+ *
+ * A converted function is a {@link java.lang.reflect.Proxy} whose handler
+ * looks up the invoked method and converts its result on every invocation,
+ * the adapters instead execute the function value resolved once.
+ */
+final class GraalJsCallbacks {
+    private GraalJsCallbacks() {
+    }
+
+    /**
+     * Adapts the given processor, defined in the given context, or returns
+     * it as it is if it is not a function defined by the script.
+     */
+    static Processor processor(Context context, Processor processor) {
+        final Value function = function(context, processor);
+
+        return function != null ? new GraalJsProcessor(function, processor) : processor;
+    }
+
+    /**
+     * Adapts the given exchange formatter, defined in the given context, or
+     * returns it as it is if it is not a function defined by the script.
+     */
+    static ExchangeFormatter formatter(Context context, ExchangeFormatter formatter) {
+        final Value function = function(context, formatter);
+
+        return function != null ? new GraalJsFormatter(function, formatter) : formatter;
+    }
+
+    /**
+     * @return the log components retrieved by the script whose exchange
+     *         formatter is a function defined by the script, in the given
+     *         context, keyed by their position, made of the scheme they have
+     *         been retrieved with, in the order they have been retrieved.
+     */
+    static Map<String, LogComponent> formatted(Context context, Components components) {
+        final Map<String, LogComponent> answer = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Component> entry : components.getComponentsByScheme().entrySet()) {
+            final Component component = entry.getValue();
+
+            if (component instanceof LogComponent && isFunction(context, ((LogComponent) component).getExchangeFormatter())) {
+                answer.put("component/" + entry.getKey(), (LogComponent) component);
+            }
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return true if the given callback has been converted from a function
+     *         defined by the script in the given context, false if it is a
+     *         plain host object such as a processor written in Java.
+     */
+    static boolean isFunction(Context context, Object callback) {
+        return function(context, callback) != null;
+    }
+
+    /**
+     * @return the function the given callback has been converted from or
+     *         null if the callback is a plain host object.
+     */
+    private static Value function(Context context, Object callback) {
+        if (callback == null || !RouteModelHelper.isCallback(callback)) {
+            return null;
+        }
+
+        final Value value = context.asValue(callback);
+
+        return !value.isHostObject() && value.canExecute() ? value : null;
+    }
+
+    private static final class GraalJsProcessor implements Processor {
+        private final Value function;
+        private final Object target;
+
+        GraalJsProcessor(Value function, Object target) {
+            this.function = function;
+            this.target = target;
+        }
+
+        @Override
+        public void process(Exchange exchange) throws Exception {
+            function.execute(exchange);
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsProcessor[" + target + "]";
+        }
+    }
+
+    private static final class GraalJsFormatter implements ExchangeFormatter {
+        private final Value function;
+        private final Object target;
+
+        GraalJsFormatter(Value function, Object target) {
+            this.function = function;
+            this.target = target;
+        }
+
+        @Override
+        public String format(Exchange exchange) {
+            final Value answer = function.execute(exchange);
+
+            if (answer.isNull()) {
+                return null;
+            }
+
+            return answer.isString() ? answer.asString() : answer.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsFormatter[" + target + "]";
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Route;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.support.LifecycleStrategySupport;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+
+/**
+ * Owns the contexts created to evaluate GraalJS scripts and keeps them
+ * alive as long as the routes they defined.
+ *
+ * When a script is loaded again, the pool created by the previous evaluation
+ * is retired and closed only once all its routes have been removed from the
+ * {@link CamelContext} as they may still be running.
+ */
+public class GraalJsContextManager implements AutoCloseable {
+    private final Supplier<Engine> engine;
+    private final int poolSize;
+    private final Map<String, GraalJsContextPool> pools;
+    private final Set<GraalJsContextPool> retired;
+    private final RoutesRemovedStrategy strategy;
+    private final List<Consumer<GraalJsContextPool>> listeners;
+
+    /**
+     * @param engine   the engine shared by all the contexts.
+     * @param poolSize the maximum number of contexts per script used to run
+     *                 callbacks concurrently.
+     */
+    public GraalJsContextManager(Engine engine, int poolSize) {
+        this(() -> engine, poolSize);
+    }
+
+    /**
+     * @param engine   supplies the engine shared by all the contexts, it is
+     *                 invoked only when a script is loaded so the engine can
+     *                 be created lazily.
+     * @param poolSize the maximum number of contexts per script used to run
+     *                 callbacks concurrently.
+     */
+    public GraalJsContextManager(Supplier<Engine> engine, int poolSize) {
+        this.engine = engine;
+        this.poolSize = poolSize;
+        this.pools = new ConcurrentHashMap<>();
+        this.retired = ConcurrentHashMap.newKeySet();
+        this.strategy = new RoutesRemovedStrategy();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public Engine getEngine() {
+        return engine.get();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public Collection<GraalJsContextPool> getPools() {
+        return Collections.unmodifiableCollection(pools.values());
+    }
+
+    /**
+     * @return the pool owned by the script with the given uri or null if the
+     *         script has not been loaded or has been released.
+     */
+    public GraalJsContextPool getPool(String name) {
+        return pools.get(name);
+    }
+
+    /**
+     * Registers a listener notified whenever a new pool is created.
+     */
+    public void addListener(Consumer<GraalJsContextPool> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Closes the contexts owned by the script with the given uri.
+     */
+    public void release(String name) {
+        GraalJsContextPool pool = pools.remove(name);
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (String name : pools.keySet()) {
+            release(name);
+        }
+        for (GraalJsContextPool pool : retired) {
+            pool.close();
+        }
+
+        retired.clear();
+    }
+
+    /**
+     * Creates and fills the pool of the script with the given uri, the pool
+     * created by a previous evaluation of the script is replaced only once
+     * the new one has been filled.
+     */
+    GraalJsContextPool register(String name, List<Source> sources, CamelContext camelContext, Context definition, Set<String> callbacks, boolean typedCallbacks, Collection<RouteDefinition> routes) {
+        synchronized (strategy) {
+            if (!camelContext.getLifecycleStrategies().contains(strategy)) {
+                camelContext.addLifecycleStrategy(strategy);
+            }
+        }
+
+        final GraalJsContextPool pool = new GraalJsContextPool(name, getEngine(), sources, camelContext, definition, callbacks, typedCallbacks, poolSize, routes);
+
+        try {
+            pool.fill();
+        } catch (RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+
+        final GraalJsContextPool old = pools.put(name, pool);
+
+        if (old != null) {
+            if (old.hasRoutes()) {
+                retired.add(old);
+            } else {
+                old.close();
+            }
+        }
+
+        listeners.forEach(l -> l.accept(pool));
+
+        return pool;
+    }
+
+    private final class RoutesRemovedStrategy extends LifecycleStrategySupport {
+        @Override
+        public void onRoutesRemove(Collection<Route> routes) {
+            final Set<RouteDefinition> definitions = routes.stream()
+                .map(route -> route.getRouteContext().getRoute())
+                .collect(Collectors.toSet());
+
+            for (GraalJsContextPool pool : retired) {
+                if (!pool.removeRoutes(definitions)) {
+                    retired.remove(pool);
+                    pool.close();
+                }
+            }
+            for (GraalJsContextPool pool : pools.values()) {
+                pool.removeRoutes(definitions);
+            }
+        }
+    }
+}
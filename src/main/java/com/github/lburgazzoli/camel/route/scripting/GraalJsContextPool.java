@@ -0,0 +1,468 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of contexts holding the callbacks defined by a GraalJS
+ * script.
+ *
+ * A polyglot context can only be entered by one thread at a time so every
+ * context of the pool evaluates the script again and the callback found at
+ * a given position of its routes, as visited by
+ * {@link RouteModelHelper#visitCallbacks}, is used in place of the callback
+ * found at the same position in the routes that have been added to the
+ * {@link CamelContext}, the exchange formatters the script sets on log
+ * components are matched by the scheme of their component. This requires
+ * the script to define its routes and components in a deterministic way.
+ *
+ * The contexts are all created when the pool is filled, as the script is
+ * loaded, so the script is never evaluated on the threads processing the
+ * exchanges. They are detached from the {@link CamelContext}: the script is
+ * bound to a camel context that shares the registry of the actual one but
+ * is never started, to components and executors that are never registered,
+ * so the setup done by the script is not applied again. Callbacks needing
+ * the actual camel context at runtime get it from the exchange.
+ */
+public class GraalJsContextPool implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraalJsContextPool.class);
+    private static final long ACQUIRE_POLL_MILLIS = 100;
+
+    private final String name;
+    private final Engine engine;
+    private final List<Source> sources;
+    private final CamelContext camelContext;
+    private final Context definition;
+    private final Set<String> callbacks;
+    private final boolean typedCallbacks;
+    private final int maxSize;
+    private final BlockingQueue<Entry> idle;
+    private final List<Entry> entries;
+    private final AtomicInteger active;
+    private final Set<RouteDefinition> routes;
+    private volatile boolean closed;
+
+    /**
+     * @param callbacks the positions of the callbacks defined by the script,
+     *                  as visited by {@link RouteModelHelper#visitCallbacks},
+     *                  and of its exchange formatters.
+     */
+    GraalJsContextPool(String name, Engine engine, List<Source> sources, CamelContext camelContext, Context definition, Set<String> callbacks, boolean typedCallbacks, int maxSize, Collection<RouteDefinition> routes) {
+        this.name = name;
+        this.engine = engine;
+        this.sources = sources;
+        this.camelContext = camelContext;
+        this.definition = definition;
+        this.callbacks = callbacks;
+        this.typedCallbacks = typedCallbacks;
+        this.maxSize = maxSize;
+        this.idle = new LinkedBlockingQueue<>();
+        this.entries = new CopyOnWriteArrayList<>();
+        this.active = new AtomicInteger();
+        this.routes = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        this.routes.addAll(routes);
+    }
+
+    /**
+     * The uri of the script this pool belongs to.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The maximum number of contexts this pool can create.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The number of contexts created so far.
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * The number of contexts currently in use.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Creates all the contexts of the pool, the script is evaluated in
+     * every context so any failure is reported while loading the script and
+     * not while processing exchanges. No context is created if the script
+     * does not define any callback.
+     */
+    void fill() {
+        if (callbacks.isEmpty()) {
+            return;
+        }
+
+        final CamelContext detached = new DefaultCamelContext(camelContext.getRegistry());
+
+        while (entries.size() < maxSize) {
+            final Entry entry = create(detached);
+
+            entries.add(entry);
+            idle.offer(entry);
+        }
+    }
+
+    /**
+     * @return true if any of the routes defined by the script is still
+     *         registered.
+     */
+    boolean hasRoutes() {
+        return !routes.isEmpty();
+    }
+
+    /**
+     * Forgets the given routes.
+     *
+     * @return true if any of the routes defined by the script is still
+     *         registered.
+     */
+    boolean removeRoutes(Collection<RouteDefinition> removed) {
+        synchronized (routes) {
+            routes.removeAll(removed);
+
+            return !routes.isEmpty();
+        }
+    }
+
+    /**
+     * Creates a processor that runs the processor found at the given
+     * position of the routes of the script on a context borrowed from this
+     * pool.
+     */
+    Processor processor(String position) {
+        return new PooledProcessor(position);
+    }
+
+    /**
+     * Creates a predicate that runs the predicate found at the given
+     * position of the routes of the script on a context borrowed from this
+     * pool.
+     */
+    Predicate predicate(String position) {
+        return new PooledPredicate(position);
+    }
+
+    /**
+     * Creates an expression that runs the expression found at the given
+     * position of the routes of the script on a context borrowed from this
+     * pool.
+     */
+    Expression expression(String position) {
+        return new PooledExpression(position);
+    }
+
+    /**
+     * Creates an exchange formatter that runs the exchange formatter set by
+     * the script on the log component at the given position on a context
+     * borrowed from this pool.
+     */
+    ExchangeFormatter formatter(String position) {
+        return new PooledFormatter(position);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        for (Entry entry : entries) {
+            entry.context.close(true);
+        }
+
+        entries.clear();
+        idle.clear();
+
+        definition.close(true);
+    }
+
+    @Override
+    public String toString() {
+        return "GraalJsContextPool{"
+            + "name='" + name + '\''
+            + ", maxSize=" + maxSize
+            + ", size=" + entries.size()
+            + ", active=" + active
+            + '}';
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Entry acquire() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("The context pool for " + name + " has been closed");
+        }
+
+        Entry entry;
+
+        // wait for a context to be released, the pool may be closed
+        // meanwhile and would not release any more context
+        while ((entry = idle.poll(ACQUIRE_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (closed) {
+                throw new IllegalStateException("The context pool for " + name + " has been closed");
+            }
+        }
+
+        active.incrementAndGet();
+
+        return entry;
+    }
+
+    /**
+     * Acquires a context for callbacks that can not throw checked exceptions.
+     */
+    private Entry borrow() {
+        try {
+            return acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a context of " + name, e);
+        }
+    }
+
+    private void release(Entry entry) {
+        active.decrementAndGet();
+
+        if (closed) {
+            entry.context.close(true);
+        } else {
+            idle.offer(entry);
+        }
+    }
+
+    private Entry create(CamelContext detached) {
+        LOGGER.debug("Creating context {} of {} for {}", entries.size() + 1, maxSize, name);
+
+        final List<RouteDefinition> routes = new ArrayList<>();
+        final Context context = Context.newBuilder("js").engine(engine).build();
+        final DetachedComponents components = new DetachedComponents(camelContext);
+
+        try {
+            GraalJsRouteLoader.bind(
+                context,
+                detached,
+                components,
+                new DetachedScriptExecutors(detached),
+                uri -> {
+                    RouteDefinition route = new RouteDefinition(uri);
+                    routes.add(route);
+
+                    return route;
+                }
+            );
+
+            for (Source source : sources) {
+                context.eval(source);
+            }
+
+            // only the functions defined by the script are collected, the
+            // callbacks written in java are left in the routes as they are
+            final Map<String, Object> answer = new HashMap<>();
+
+            RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+                @Override
+                public Processor processor(String position, RouteDefinition route, Processor processor) {
+                    if (GraalJsCallbacks.isFunction(context, processor)) {
+                        answer.put(position, typedCallbacks ? GraalJsCallbacks.processor(context, processor) : processor);
+                    }
+                    return processor;
+                }
+
+                @Override
+                public Predicate predicate(String position, RouteDefinition route, Predicate predicate) {
+                    if (GraalJsCallbacks.isFunction(context, predicate)) {
+                        answer.put(position, predicate);
+                    }
+                    return predicate;
+                }
+
+                @Override
+                public Expression expression(String position, RouteDefinition route, Expression expression) {
+                    if (GraalJsCallbacks.isFunction(context, expression)) {
+                        answer.put(position, expression);
+                    }
+                    return expression;
+                }
+            });
+
+            GraalJsCallbacks.formatted(context, components).forEach((position, component) -> {
+                final ExchangeFormatter formatter = component.getExchangeFormatter();
+                answer.put(position, typedCallbacks ? GraalJsCallbacks.formatter(context, formatter) : formatter);
+            });
+
+            if (!answer.keySet().equals(callbacks)) {
+                throw new IllegalStateException(
+                    "Script " + name + " defined callbacks at " + answer.keySet() + " but " + callbacks + " were expected"
+                );
+            }
+
+            return new Entry(context, answer);
+        } catch (RuntimeException e) {
+            context.close(true);
+            throw e;
+        }
+    }
+
+    private static final class Entry {
+        private final Context context;
+        private final Map<String, Object> callbacks;
+
+        Entry(Context context, Map<String, Object> callbacks) {
+            this.context = context;
+            this.callbacks = callbacks;
+        }
+
+        <T> T callback(String position, Class<T> type) {
+            return type.cast(callbacks.get(position));
+        }
+    }
+
+    private final class PooledProcessor implements Processor {
+        private final String position;
+
+        PooledProcessor(String position) {
+            this.position = position;
+        }
+
+        @Override
+        public void process(Exchange exchange) throws Exception {
+            final Entry entry = acquire();
+
+            try {
+                entry.callback(position, Processor.class).process(exchange);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsProcessor[" + name + "#" + position + "]";
+        }
+    }
+
+    private final class PooledPredicate implements Predicate {
+        private final String position;
+
+        PooledPredicate(String position) {
+            this.position = position;
+        }
+
+        @Override
+        public boolean matches(Exchange exchange) {
+            final Entry entry = borrow();
+
+            try {
+                return entry.callback(position, Predicate.class).matches(exchange);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsPredicate[" + name + "#" + position + "]";
+        }
+    }
+
+    private final class PooledExpression implements Expression {
+        private final String position;
+
+        PooledExpression(String position) {
+            this.position = position;
+        }
+
+        @Override
+        public <T> T evaluate(Exchange exchange, Class<T> type) {
+            final Entry entry = borrow();
+
+            try {
+                return entry.callback(position, Expression.class).evaluate(exchange, type);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsExpression[" + name + "#" + position + "]";
+        }
+    }
+
+    private final class PooledFormatter implements ExchangeFormatter {
+        private final String position;
+
+        PooledFormatter(String position) {
+            this.position = position;
+        }
+
+        @Override
+        public String format(Exchange exchange) {
+            final Entry entry = borrow();
+
+            try {
+                return entry.callback(position, ExchangeFormatter.class).format(exchange);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GraalJsFormatter[" + name + "#" + position + "]";
+        }
+    }
+}
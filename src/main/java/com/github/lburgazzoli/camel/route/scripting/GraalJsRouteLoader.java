@@ -16,33 +16,261 @@
  */
 package com.github.lburgazzoli.camel.route.scripting;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
+import org.apache.camel.CamelContext;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
 import org.apache.camel.model.RouteDefinition;
-import org.apache.camel.util.function.ThrowingBiConsumer;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.springframework.core.io.Resource;
 
-public class GraalJsRouteLoader implements ThrowingBiConsumer<Resource, RouteBuilder, Exception> {
+public class GraalJsRouteLoader implements RouteLoader {
+    private final GraalJsContextManager manager;
+    private final boolean owner;
+    private final List<Source> libraries;
+    private boolean typedCallbacks = true;
+    private ScriptExecutorManager executors = new ScriptExecutorManager();
+    private ScriptMetrics metrics;
+
+    /**
+     * @param manager the manager owning the contexts created by this loader,
+     *                all of them are bound to the manager's engine so parsed
+     *                sources and compiled code can be reused.
+     */
+    public GraalJsRouteLoader(GraalJsContextManager manager) {
+        this(manager, false);
+    }
+
+    private GraalJsRouteLoader(GraalJsContextManager manager, boolean owner) {
+        this.manager = manager;
+        this.owner = owner;
+        this.libraries = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Creates a loader owning its engine and its contexts, they are closed
+     * when the loader is closed.
+     */
+    public static GraalJsRouteLoader standalone(int poolSize) {
+        return new GraalJsRouteLoader(new GraalJsContextManager(Engine.create(), poolSize), true);
+    }
+
+    public boolean isTypedCallbacks() {
+        return typedCallbacks;
+    }
+
+    /**
+     * Replaces the host proxies of the functions converted to processors and
+     * exchange formatters with adapters executing the functions directly,
+     * enabled by default.
+     */
+    public void setTypedCallbacks(boolean typedCallbacks) {
+        this.typedCallbacks = typedCallbacks;
+    }
+
+    public ScriptExecutorManager getExecutors() {
+        return executors;
+    }
+
+    /**
+     * Sets the manager owning the executors created by the scripts, by
+     * default the executors are owned by the loader.
+     */
+    public void setExecutors(ScriptExecutorManager executors) {
+        this.executors = executors;
+    }
+
+    public ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the time spent loading scripts, if not set no metric is recorded.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList(".gjs");
+    }
+
+    @Override
+    public void warmUp() {
+        manager.getEngine();
+    }
+
+    @Override
+    public void close() {
+        if (owner) {
+            manager.close();
+            manager.getEngine().close();
+        }
+    }
+
+    @Override
+    public boolean supportsLibraries() {
+        return true;
+    }
+
+    /**
+     * Registers the given library, the library is evaluated in every context
+     * before the script so the functions it defines can be used by the
+     * script as they were its own. As the source is cached and contexts
+     * share the engine, the library is parsed once and its compiled code is
+     * shared by all the contexts.
+     */
+    @Override
+    public void addLibrary(Resource resource) throws Exception {
+        libraries.add(source(resource));
+    }
+
     @Override
     public void accept(Resource resource, RouteBuilder builder) throws Exception {
-        try(Context context = Context.create()) {
-            Value bindings = context.getBindings("js");
+        // pools are keyed by the uri of the script as scripts with the same
+        // file name may be loaded from different locations
+        final String name = ScriptHelper.uri(resource);
+
+        long start = System.nanoTime();
+        long cpu = ScriptHelper.cpuTime();
+
+        final Source source = source(resource);
+
+        // graal parses and compiles lazily while evaluating so only the
+        // creation of the source is recorded as parse phase
+        if (metrics != null) {
+            metrics.phase(ScriptHelper.name(resource), ScriptMetrics.PARSE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+            start = System.nanoTime();
+            cpu = ScriptHelper.cpuTime();
+        }
+
+        // the context is not closed once the script has been evaluated as
+        // the functions it defines are invoked by the routes at runtime so
+        // its lifecycle is delegated to the manager.
+        final Context context = Context.newBuilder("js").engine(manager.getEngine()).build();
+        final Components components = new Components(builder.getContext(), ScriptHelper.uri(resource));
+        final ScriptExecutors executors = new ScriptExecutors(builder.getContext(), this.executors, ScriptHelper.uri(resource));
+
+        try {
+            bind(
+                context,
+                builder.getContext(),
+                components,
+                executors,
+                uri -> builder.from(uri)
+            );
+
+            for (Source library : libraries) {
+                context.eval(library);
+            }
 
-            bindings.putMember("context", builder.getContext());
-            bindings.putMember("components", new Components(builder.getContext()));
-            bindings.putMember("from", (Function<String, RouteDefinition>) uri -> builder.from(uri));
+            context.eval(source);
 
-            try (InputStream is = resource.getInputStream()) {
-                context.eval(
-                    Source.newBuilder("js", new InputStreamReader(is), "").build()
-                );
+            if (metrics != null) {
+                metrics.phase(ScriptHelper.name(resource), ScriptMetrics.EVALUATE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
             }
+        } catch (Exception e) {
+            context.close(true);
+            throw e;
         }
+
+        final List<RouteDefinition> routes = builder.getRouteCollection().getRoutes();
+        final Map<String, LogComponent> formatted = GraalJsCallbacks.formatted(context, components);
+        final Set<String> callbacks = new HashSet<>(formatted.keySet());
+
+        // callbacks are identified by their position in the route model so
+        // the processors written in java, which are not defined by the
+        // script, are neither pooled nor do they shift the other callbacks
+        RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+            @Override
+            public Processor processor(String position, RouteDefinition route, Processor processor) {
+                collect(position, processor);
+                return processor;
+            }
+
+            @Override
+            public Predicate predicate(String position, RouteDefinition route, Predicate predicate) {
+                collect(position, predicate);
+                return predicate;
+            }
+
+            @Override
+            public Expression expression(String position, RouteDefinition route, Expression expression) {
+                collect(position, expression);
+                return expression;
+            }
+
+            private void collect(String position, Object callback) {
+                if (GraalJsCallbacks.isFunction(context, callback)) {
+                    callbacks.add(position);
+                }
+            }
+        });
+
+        final List<Source> sources = new ArrayList<>(libraries);
+        sources.add(source);
+
+        final GraalJsContextPool pool = manager.register(
+            name,
+            sources,
+            builder.getContext(),
+            context,
+            callbacks,
+            typedCallbacks,
+            routes);
+
+        // replace the callbacks bound to the defining context with callbacks
+        // that borrow a context from the pool so they can run concurrently.
+        RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+            @Override
+            public Processor processor(String position, RouteDefinition route, Processor processor) {
+                return callbacks.contains(position) ? pool.processor(position) : processor;
+            }
+
+            @Override
+            public Predicate predicate(String position, RouteDefinition route, Predicate predicate) {
+                return callbacks.contains(position) ? pool.predicate(position) : predicate;
+            }
+
+            @Override
+            public Expression expression(String position, RouteDefinition route, Expression expression) {
+                return callbacks.contains(position) ? pool.expression(position) : expression;
+            }
+        });
+
+        // the exchange formatters set on log components are shared by all the
+        // routes using the components so they are run on the pool as well
+        formatted.forEach((position, component) -> component.setExchangeFormatter(pool.formatter(position)));
+
+        components.report(builder);
+    }
+
+    private static Source source(Resource resource) throws IOException {
+        return Source.newBuilder("js", ScriptHelper.text(resource), resource.getDescription()).cached(true).build();
+    }
+
+    static void bind(Context context, CamelContext camelContext, Components components, ScriptExecutors executors, Function<String, RouteDefinition> from) {
+        Value bindings = context.getBindings("js");
+
+        bindings.putMember("context", camelContext);
+        bindings.putMember("components", components);
+        bindings.putMember("executors", executors);
+        bindings.putMember("from", from);
     }
 }
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+
+import groovy.lang.Closure;
+import org.apache.camel.Component;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.codehaus.groovy.runtime.ConvertedClosure;
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
+
+/**
+ * Replaces the closures groovy has coerced to Camel callbacks with typed
+ * adapters.
+ *
+ * A coerced closure is a {@link Proxy} so every invocation goes through the
+ * invocation handler, an arguments array and the meta class of the closure,
+ * the adapters instead invoke the {@code doCall} method of the closure
+ * through a method handle resolved once.
+ */
+final class GroovyCallbacks {
+    private static final MethodType TYPE = MethodType.methodType(Object.class, Exchange.class);
+
+    private GroovyCallbacks() {
+    }
+
+    /**
+     * Adapts the callbacks of the given routes and the exchange formatters
+     * of the given components, callbacks that can not be adapted are left
+     * untouched.
+     */
+    static void adapt(Collection<RouteDefinition> routes, Collection<Component> components) {
+        RouteModelHelper.visitCallbacks(routes, new RouteModelHelper.CallbackVisitor() {
+            @Override
+            public Processor processor(RouteDefinition route, Processor processor) {
+                final MethodHandle handle = handle(processor);
+                return handle != null ? new GroovyProcessor(handle, processor) : processor;
+            }
+
+            @Override
+            public Predicate predicate(RouteDefinition route, Predicate predicate) {
+                final MethodHandle handle = handle(predicate);
+                return handle != null ? new GroovyPredicate(handle, predicate) : predicate;
+            }
+
+            @Override
+            public Expression expression(RouteDefinition route, Expression expression) {
+                final MethodHandle handle = handle(expression);
+                return handle != null ? new GroovyExpression(handle, expression) : expression;
+            }
+        });
+
+        for (Component component : components) {
+            if (component instanceof LogComponent) {
+                final LogComponent log = (LogComponent) component;
+                final MethodHandle handle = handle(log.getExchangeFormatter());
+
+                if (handle != null) {
+                    log.setExchangeFormatter(new GroovyFormatter(handle, log.getExchangeFormatter()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a handle invoking the closure the given callback has been
+     *         coerced from or null if the callback is not a coerced closure
+     *         or if its closure does not take a single exchange.
+     */
+    private static MethodHandle handle(Object callback) {
+        if (callback == null || !Proxy.isProxyClass(callback.getClass())) {
+            return null;
+        }
+
+        final InvocationHandler handler = Proxy.getInvocationHandler(callback);
+        if (!(handler instanceof ConvertedClosure)) {
+            return null;
+        }
+
+        final Closure<?> closure = (Closure<?>) ((ConvertedClosure) handler).getDelegate();
+
+        for (Method method : closure.getClass().getMethods()) {
+            if ("doCall".equals(method.getName()) && method.getParameterCount() == 1 && method.getParameterTypes()[0].isAssignableFrom(Exchange.class)) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).bindTo(closure).asType(TYPE);
+                } catch (IllegalAccessException e) {
+                    return null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static Object invoke(MethodHandle handle, Exchange exchange) throws Exception {
+        try {
+            return (Object) handle.invokeExact(exchange);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeCamelException(t);
+        }
+    }
+
+    private static final class GroovyProcessor implements Processor {
+        private final MethodHandle handle;
+        private final Object target;
+
+        GroovyProcessor(MethodHandle handle, Object target) {
+            this.handle = handle;
+            this.target = target;
+        }
+
+        @Override
+        public void process(Exchange exchange) throws Exception {
+            invoke(handle, exchange);
+        }
+
+        @Override
+        public String toString() {
+            return "GroovyProcessor[" + target + "]";
+        }
+    }
+
+    private static final class GroovyPredicate implements Predicate {
+        private final MethodHandle handle;
+        private final Object target;
+
+        GroovyPredicate(MethodHandle handle, Object target) {
+            this.handle = handle;
+            this.target = target;
+        }
+
+        @Override
+        public boolean matches(Exchange exchange) {
+            try {
+                return DefaultTypeTransformation.castToBoolean(invoke(handle, exchange));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeCamelException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "GroovyPredicate[" + target + "]";
+        }
+    }
+
+    private static final class GroovyExpression implements Expression {
+        private final MethodHandle handle;
+        private final Object target;
+
+        GroovyExpression(MethodHandle handle, Object target) {
+            this.handle = handle;
+            this.target = target;
+        }
+
+        @Override
+        public <T> T evaluate(Exchange exchange, Class<T> type) {
+            final Object answer;
+
+            try {
+                answer = invoke(handle, exchange);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeCamelException(e);
+            }
+
+            return exchange.getContext().getTypeConverter().convertTo(type, exchange, answer);
+        }
+
+        @Override
+        public String toString() {
+            return "GroovyExpression[" + target + "]";
+        }
+    }
+
+    private static final class GroovyFormatter implements ExchangeFormatter {
+        private final MethodHandle handle;
+        private final Object target;
+
+        GroovyFormatter(MethodHandle handle, Object target) {
+            this.handle = handle;
+            this.target = target;
+        }
+
+        @Override
+        public String format(Exchange exchange) {
+            final Object answer;
+
+            try {
+                answer = invoke(handle, exchange);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeCamelException(e);
+            }
+
+            return answer != null ? answer.toString() : null;
+        }
+
+        @Override
+        public String toString() {
+            return "GroovyFormatter[" + target + "]";
+        }
+    }
+}
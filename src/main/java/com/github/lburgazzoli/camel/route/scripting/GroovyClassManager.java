@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Route;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.support.LifecycleStrategySupport;
+
+/**
+ * Owns the class loaders defining the classes of the groovy scripts so the
+ * classes generated by a script can be unloaded.
+ *
+ * The classes of the most recently used scripts are kept in a bounded cache,
+ * keyed by script uri and content, so a script evaluated again with the
+ * same content, i.e. when lazily loaded routes are activated again, reuses
+ * its classes instead of defining new ones. Classes are released once they
+ * are neither cached nor used by any route, the classes of a previous version
+ * of a script are released as soon as its routes have been removed.
+ *
+ * The classes of libraries are pinned: they are used by every script so they
+ * are kept out of the cache and only released when the manager is closed.
+ */
+public class GroovyClassManager implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private final int maxSize;
+    private final Map<String, GroovyScriptClasses> cache;
+    private final Map<String, GroovyScriptClasses> pinned;
+    private final Set<GroovyScriptClasses> retired;
+    private final Map<RouteDefinition, GroovyScriptClasses> pending;
+    private final RoutesStrategy strategy;
+    private final List<Consumer<String>> listeners;
+
+    public GroovyClassManager() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of scripts whose classes are kept
+     *                when they are not used by any route.
+     */
+    public GroovyClassManager(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.pinned = new LinkedHashMap<>();
+        this.retired = Collections.newSetFromMap(new LinkedHashMap<>());
+        this.pending = Collections.synchronizedMap(new WeakHashMap<>());
+        this.strategy = new RoutesStrategy();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the classes that have not been released yet, whether cached or
+     *         used by routes.
+     */
+    public synchronized Collection<GroovyScriptClasses> getClasses() {
+        final List<GroovyScriptClasses> answer = new ArrayList<>(cache.values());
+        answer.addAll(pinned.values());
+        answer.addAll(retired);
+
+        return answer;
+    }
+
+    /**
+     * @return the names of the scripts having classes that have not been
+     *         released yet.
+     */
+    public synchronized Set<String> getScripts() {
+        final Set<String> answer = new TreeSet<>();
+
+        for (GroovyScriptClasses classes : getClasses()) {
+            answer.add(classes.getName());
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return the classes of the given script that have not been released
+     *         yet, there is more than one entry when the routes of previous
+     *         versions of the script are still running.
+     */
+    public synchronized List<GroovyScriptClasses> getClasses(String name) {
+        final List<GroovyScriptClasses> answer = new ArrayList<>();
+
+        for (GroovyScriptClasses classes : getClasses()) {
+            if (classes.getName().equals(name)) {
+                answer.add(classes);
+            }
+        }
+
+        return answer;
+    }
+
+    /**
+     * Registers a listener notified with the name of a script whenever its
+     * classes are defined for the first time.
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void close() {
+        for (GroovyScriptClasses classes : getClasses()) {
+            classes.release();
+        }
+
+        cache.clear();
+        pinned.clear();
+        retired.clear();
+    }
+
+    /**
+     * @return the cached classes of the script with the given uri identified
+     *         by the given key or new classes defined from the bytecode
+     *         provided by the given supplier.
+     */
+    GroovyScriptClasses acquire(String uri, String name, String key, ClassLoader parent, Supplier<Map<String, byte[]>> bytecode) {
+        return acquire(uri, name, key, parent, bytecode, false);
+    }
+
+    /**
+     * @return the classes of the library with the given uri identified by the
+     *         given key or new classes defined from the bytecode provided by
+     *         the given supplier, the classes are pinned so they are never
+     *         evicted.
+     */
+    GroovyScriptClasses acquireLibrary(String uri, String name, String key, ClassLoader parent, Supplier<Map<String, byte[]>> bytecode) {
+        return acquire(uri, name, key, parent, bytecode, true);
+    }
+
+    /**
+     * Binds the given routes to the classes they have been defined with, the
+     * routes use the classes once they are added to the context so routes
+     * that are defined but never added, i.e. because they have not changed
+     * when reloading a script, do not keep the classes.
+     */
+    void register(GroovyScriptClasses classes, CamelContext camelContext, Collection<RouteDefinition> routes) {
+        synchronized (strategy) {
+            if (!camelContext.getLifecycleStrategies().contains(strategy)) {
+                camelContext.addLifecycleStrategy(strategy);
+            }
+        }
+
+        for (RouteDefinition route : routes) {
+            pending.put(route, classes);
+        }
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private GroovyScriptClasses acquire(String uri, String name, String key, ClassLoader parent, Supplier<Map<String, byte[]>> bytecode, boolean library) {
+        final String id = uri + "@" + key;
+        final Map<String, GroovyScriptClasses> target = library ? pinned : cache;
+        final boolean known;
+        final GroovyScriptClasses answer;
+
+        synchronized (this) {
+            final GroovyScriptClasses cached = target.get(id);
+
+            if (cached != null) {
+                return cached;
+            }
+
+            known = !getClasses(name).isEmpty();
+        }
+
+        // compile outside the lock as it may take a while
+        final GroovyScriptClasses classes = new GroovyScriptClasses(uri, name, key, parent, bytecode.get());
+
+        synchronized (this) {
+            final GroovyScriptClasses cached = target.get(id);
+
+            if (cached != null) {
+                // defined concurrently by another thread
+                classes.release();
+                return cached;
+            }
+
+            answer = classes;
+            target.put(id, answer);
+
+            if (!library) {
+                evict();
+            }
+        }
+
+        if (!known) {
+            listeners.forEach(l -> l.accept(name));
+        }
+
+        return answer;
+    }
+
+    private void evict() {
+        final Iterator<GroovyScriptClasses> it = cache.values().iterator();
+
+        while (cache.size() > maxSize && it.hasNext()) {
+            final GroovyScriptClasses eldest = it.next();
+            it.remove();
+
+            if (eldest.getRouteCount() > 0) {
+                retired.add(eldest);
+            } else {
+                eldest.release();
+            }
+        }
+    }
+
+    /**
+     * @return true if newer classes of the same script have been defined.
+     */
+    private boolean isSuperseded(GroovyScriptClasses classes) {
+        boolean found = false;
+
+        // the cache is sorted by access so the classes of the same script
+        // accessed after the given ones are newer
+        for (GroovyScriptClasses candidate : cache.values()) {
+            if (candidate == classes) {
+                found = true;
+            } else if (found && candidate.getUri().equals(classes.getUri())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private final class RoutesStrategy extends LifecycleStrategySupport {
+        @Override
+        public void onRoutesAdd(Collection<Route> routes) {
+            synchronized (GroovyClassManager.this) {
+                for (Route route : routes) {
+                    final RouteDefinition definition = route.getRouteContext().getRoute();
+                    final GroovyScriptClasses classes = pending.remove(definition);
+
+                    if (classes != null && !classes.isReleased()) {
+                        classes.addRoute(definition);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onRoutesRemove(Collection<Route> routes) {
+            final Set<RouteDefinition> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Route route : routes) {
+                removed.add(route.getRouteContext().getRoute());
+            }
+
+            synchronized (GroovyClassManager.this) {
+                for (Iterator<GroovyScriptClasses> it = retired.iterator(); it.hasNext();) {
+                    final GroovyScriptClasses classes = it.next();
+
+                    if (!classes.removeRoutes(removed)) {
+                        it.remove();
+                        classes.release();
+                    }
+                }
+
+                for (Iterator<GroovyScriptClasses> it = cache.values().iterator(); it.hasNext();) {
+                    final GroovyScriptClasses classes = it.next();
+
+                    if (!classes.removeRoutes(removed) && isSuperseded(classes)) {
+                        it.remove();
+                        classes.release();
+                    }
+                }
+            }
+        }
+    }
+}
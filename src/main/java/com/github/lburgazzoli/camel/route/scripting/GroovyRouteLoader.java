@@ -16,54 +16,391 @@
  */
 package com.github.lburgazzoli.camel.route.scripting;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import groovy.lang.MissingMethodException;
+import groovy.lang.MissingPropertyException;
+import groovy.lang.Script;
+import groovy.transform.CompileStatic;
 import groovy.util.DelegatingScript;
 import org.apache.camel.CamelContext;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.model.RouteDefinition;
-import org.apache.camel.util.function.ThrowingBiConsumer;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
 import org.springframework.core.io.Resource;
+import org.springframework.util.StringUtils;
+
+public class GroovyRouteLoader implements RouteLoader {
+    private final GroovyScriptCache cache;
+    private final GroovyClassManager classes;
+    private final boolean owner;
+    private ScriptExecutorManager executors = new ScriptExecutorManager();
+    private boolean compileStatic;
+    private boolean invokeDynamic;
+    private boolean typedCallbacks = true;
+    private ScriptMetrics metrics;
+    private volatile Map<String, Script> libraries = Collections.emptyMap();
+
+    public GroovyRouteLoader() {
+        this(null);
+    }
+
+    public GroovyRouteLoader(GroovyScriptCache cache) {
+        this(cache, new GroovyClassManager(), true);
+    }
+
+    /**
+     * @param cache   the on disk cache of the compiled scripts, may be null.
+     * @param classes the manager owning the classes of the scripts, it is
+     *                not closed when the loader is closed.
+     */
+    public GroovyRouteLoader(GroovyScriptCache cache, GroovyClassManager classes) {
+        this(cache, classes, false);
+    }
+
+    private GroovyRouteLoader(GroovyScriptCache cache, GroovyClassManager classes, boolean owner) {
+        this.cache = cache;
+        this.classes = classes;
+        this.owner = owner;
+    }
+
+    public GroovyClassManager getClasses() {
+        return classes;
+    }
+
+    public ScriptExecutorManager getExecutors() {
+        return executors;
+    }
+
+    /**
+     * Sets the manager owning the executors created by the scripts, by
+     * default the executors are owned by the loader.
+     */
+    public void setExecutors(ScriptExecutorManager executors) {
+        this.executors = executors;
+    }
+
+    public boolean isCompileStatic() {
+        return compileStatic;
+    }
+
+    /**
+     * Compiles scripts with {@link CompileStatic} against {@link GroovyRoutesScript}
+     * so closures, i.e. processors, are compiled to direct method calls instead
+     * of going through dynamic call sites.
+     *
+     * Scripts must then be type safe: local variables have to be declared and
+     * components should be created with {@link Components#make(String, Class)}
+     * to access their properties.
+     */
+    public void setCompileStatic(boolean compileStatic) {
+        this.compileStatic = compileStatic;
+    }
+
+    public boolean isInvokeDynamic() {
+        return invokeDynamic;
+    }
+
+    /**
+     * Compiles scripts using invokedynamic for dynamic calls.
+     */
+    public void setInvokeDynamic(boolean invokeDynamic) {
+        this.invokeDynamic = invokeDynamic;
+    }
+
+    public boolean isTypedCallbacks() {
+        return typedCallbacks;
+    }
+
+    /**
+     * Replaces the closures coerced to processors, predicates, expressions
+     * and exchange formatters with adapters invoking the closures directly,
+     * enabled by default.
+     */
+    public void setTypedCallbacks(boolean typedCallbacks) {
+        this.typedCallbacks = typedCallbacks;
+    }
+
+    public ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the time spent loading scripts, if not set no metric is recorded.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList(".groovy");
+    }
+
+    @Override
+    public boolean supportsLibraries() {
+        return true;
+    }
+
+    /**
+     * Compiles and runs the given library, the methods and the variables it
+     * defines can be used by the scripts as they were their own and the
+     * library is available by name, i.e. {@code libraries.helpers} for a
+     * {@code helpers.groovy} library.
+     */
+    @Override
+    public void addLibrary(Resource resource) throws Exception {
+        final GroovyScriptClasses classes = load(resource, Script.class, true);
+        final Script library = InvokerHelper.createScript(classes.loadClass(scriptClassName(classes)), new Binding());
+        library.run();
+
+        synchronized (this) {
+            final Map<String, Script> answer = new LinkedHashMap<>(libraries);
+            answer.put(StringUtils.stripFilenameExtension(ScriptHelper.name(resource)), library);
+
+            libraries = Collections.unmodifiableMap(answer);
+        }
+    }
 
-public class GroovyRouteLoader implements ThrowingBiConsumer<Resource, RouteBuilder, Exception> {
     @Override
     public void accept(Resource resource, RouteBuilder builder) throws Exception {
+        final GroovyScriptClasses classes = load(resource, compileStatic ? GroovyRoutesScript.class : DelegatingScript.class, false);
+        final long start = System.nanoTime();
+        final long cpu = ScriptHelper.cpuTime();
+
+        Class<?> type = classes.loadClass(scriptClassName(classes));
+        DelegatingScript script = (DelegatingScript) InvokerHelper.createScript(type, new Binding());
+
+        // set the delegate target
+        final Delegate delegate = new Delegate(
+            builder,
+            libraries,
+            new ScriptExecutors(builder.getContext(), executors, ScriptHelper.uri(resource)),
+            new Components(builder.getContext(), ScriptHelper.uri(resource)));
+        script.setDelegate(delegate);
+        script.run();
+
+        if (typedCallbacks) {
+            GroovyCallbacks.adapt(builder.getRouteCollection().getRoutes(), delegate.components.getComponents());
+        }
+
+        delegate.components.report(builder);
+
+        // the routes keep the classes alive till they are removed
+        this.classes.register(classes, builder.getContext(), builder.getRouteCollection().getRoutes());
+
+        if (metrics != null) {
+            metrics.phase(ScriptHelper.name(resource), ScriptMetrics.EVALUATE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (owner) {
+            classes.close();
+        }
+    }
+
+    /**
+     * Retrieves the classes of the given script, or library, from the manager
+     * or, if not found, from the on disk cache or by compiling the script.
+     */
+    private GroovyScriptClasses load(Resource resource, Class<? extends Script> baseClass, boolean library) throws Exception {
         CompilerConfiguration cc = new CompilerConfiguration();
-        cc.setScriptBaseClass(DelegatingScript.class.getName());
+        cc.setScriptBaseClass(baseClass.getName());
+        cc.setSourceEncoding(ScriptHelper.CHARSET.name());
+
+        if (compileStatic) {
+            cc.addCompilationCustomizers(new ASTTransformationCustomizer(CompileStatic.class));
+        }
+        if (invokeDynamic) {
+            cc.getOptimizationOptions().put(CompilerConfiguration.INVOKEDYNAMIC, true);
+        }
 
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
-        GroovyShell sh = new GroovyShell(cl, new Binding(), cc);
 
-        try (InputStream is = resource.getInputStream()) {
-            Reader reader = new InputStreamReader(is);
-            DelegatingScript script = (DelegatingScript) sh.parse(reader);
+        final byte[] content = ScriptHelper.read(resource);
+
+        // the key identifies the bytecode so it includes anything that may
+        // affect the compilation output and not only the script content.
+        final String key = ScriptHelper.sha256(
+            content,
+            GroovySystem.getVersion(),
+            cc.getScriptBaseClass(),
+            cc.getTargetBytecode(),
+            cc.getSourceEncoding(),
+            new TreeMap<>(cc.getOptimizationOptions()).toString(),
+            Boolean.toString(compileStatic)
+        );
+
+        final String script = ScriptHelper.name(resource);
+
+        final Supplier<Map<String, byte[]>> bytecode = () -> {
+            // the name of the script class is derived from the script name and
+            // the key so it is known also when the classes are retrieved from
+            // the cache, which then holds an entry per script and content
+            final String name = scriptClassName(script, key);
+            final String entry = name + "-" + key;
+
+            Map<String, byte[]> answer = cache != null ? cache.get(entry) : null;
+            if (answer == null) {
+                answer = compile(cc, cl, name, new String(content, Charset.forName(cc.getSourceEncoding())), script);
 
-            // set the delegate target
-            script.setDelegate(new Delegate(builder));
-            script.run();
+                if (cache != null) {
+                    cache.put(entry, answer);
+                }
+            }
+
+            return answer;
+        };
+
+        return library
+            ? classes.acquireLibrary(ScriptHelper.uri(resource), script, key, cl, bytecode)
+            : classes.acquire(ScriptHelper.uri(resource), script, key, cl, bytecode);
+    }
+
+    private static String scriptClassName(GroovyScriptClasses classes) {
+        return scriptClassName(classes.getName(), classes.getKey());
+    }
+
+    /**
+     * @return the name of the class of the given script, made of the file
+     *         name, so it can be told apart in stack traces and profilers,
+     *         and of a short hash of the key.
+     */
+    private static String scriptClassName(String script, String key) {
+        final String base = StringUtils.stripFilenameExtension(script);
+        final StringBuilder answer = new StringBuilder(base.length() + 10);
+
+        for (char c : base.toCharArray()) {
+            answer.append(Character.isJavaIdentifierPart(c) ? c : '_');
         }
+
+        if (answer.length() == 0 || !Character.isJavaIdentifierStart(answer.charAt(0))) {
+            answer.insert(0, "Script");
+        }
+
+        return answer.append('_').append(key, 0, 8).toString();
     }
 
-    private static class Delegate {
+    private Map<String, byte[]> compile(CompilerConfiguration cc, ClassLoader cl, String name, String text, String script) {
+        long start = System.nanoTime();
+        long cpu = ScriptHelper.cpuTime();
+
+        // the class loader is only used to resolve classes while compiling
+        // so it is closed once the bytecode has been generated
+        GroovyClassLoader gcl = new GroovyClassLoader(cl, cc);
+
+        try {
+            return generate(cc, gcl, name, text, script, start, cpu);
+        } finally {
+            IOUtils.closeQuietly(gcl);
+        }
+    }
+
+    private Map<String, byte[]> generate(CompilerConfiguration cc, GroovyClassLoader gcl, String name, String text, String script, long start, long cpu) {
+        CompilationUnit unit = new CompilationUnit(cc, null, gcl);
+        unit.addSource(name + ".groovy", text);
+
+        // the compilation is split so parsing and code generation are
+        // recorded separately
+        unit.compile(Phases.CONVERSION);
+
+        if (metrics != null) {
+            metrics.phase(script, ScriptMetrics.PARSE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+            start = System.nanoTime();
+            cpu = ScriptHelper.cpuTime();
+        }
+
+        unit.compile(Phases.CLASS_GENERATION);
+
+        if (metrics != null) {
+            metrics.phase(script, ScriptMetrics.COMPILE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+        }
+
+        Map<String, byte[]> classes = new HashMap<>();
+        for (Object item : unit.getClasses()) {
+            GroovyClass gc = (GroovyClass)item;
+            classes.put(gc.getName(), gc.getBytes());
+        }
+
+        return classes;
+    }
+
+    /**
+     * The target of the script, a script is evaluated as it was a closure
+     * having this object as delegate.
+     *
+     * Methods and properties the script does not define are looked up in
+     * the libraries.
+     */
+    public static class Delegate {
         private final RouteBuilder builder;
 
         public final CamelContext context;
         public final Components components;
+        public final ScriptExecutors executors;
+        public final Map<String, Script> libraries;
 
         public Delegate(RouteBuilder builder) {
+            this(builder, Collections.emptyMap());
+        }
+
+        public Delegate(RouteBuilder builder, Map<String, Script> libraries) {
+            this(builder, libraries, new ScriptExecutors(builder.getContext(), new ScriptExecutorManager()));
+        }
+
+        public Delegate(RouteBuilder builder, Map<String, Script> libraries, ScriptExecutors executors) {
+            this(builder, libraries, executors, new Components(builder.getContext()));
+        }
+
+        public Delegate(RouteBuilder builder, Map<String, Script> libraries, ScriptExecutors executors, Components components) {
             this.builder = builder;
             this.context = builder.getContext();
-            this.components = new Components(builder.getContext());
+            this.components = components;
+            this.executors = executors;
+            this.libraries = libraries;
         }
 
         public RouteDefinition from(String endpoint) {
             return builder.from(endpoint);
         }
+
+        public Object methodMissing(String name, Object args) {
+            for (Script library : libraries.values()) {
+                if (!library.getMetaClass().respondsTo(library, name, (Object[]) args).isEmpty()) {
+                    return InvokerHelper.invokeMethod(library, name, args);
+                }
+            }
+
+            throw new MissingMethodException(name, Delegate.class, (Object[]) args);
+        }
+
+        public Object propertyMissing(String name) {
+            for (Script library : libraries.values()) {
+                if (library.getBinding().hasVariable(name)) {
+                    return library.getBinding().getVariable(name);
+                }
+            }
+
+            throw new MissingPropertyException(name, Delegate.class);
+        }
     }
 
 }
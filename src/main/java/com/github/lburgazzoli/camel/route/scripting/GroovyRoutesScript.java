@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.Map;
+
+import groovy.lang.Script;
+import groovy.util.DelegatingScript;
+import org.apache.camel.CamelContext;
+import org.apache.camel.model.RouteDefinition;
+
+/**
+ * Base class for statically compiled groovy routes, it exposes the members of
+ * the {@link GroovyRouteLoader.Delegate} as typed methods so the type checker
+ * can resolve them.
+ */
+public abstract class GroovyRoutesScript extends DelegatingScript {
+    public CamelContext getContext() {
+        return delegate().context;
+    }
+
+    public Components getComponents() {
+        return delegate().components;
+    }
+
+    public ScriptExecutors getExecutors() {
+        return delegate().executors;
+    }
+
+    /**
+     * The libraries by name, their members have to be accessed explicitly,
+     * i.e. {@code getLibraries().get('helpers').invokeMethod('proc', e)}, as
+     * the type checker can not resolve them.
+     */
+    public Map<String, Script> getLibraries() {
+        return delegate().libraries;
+    }
+
+    public RouteDefinition from(String endpoint) {
+        return delegate().from(endpoint);
+    }
+
+    private GroovyRouteLoader.Delegate delegate() {
+        return (GroovyRouteLoader.Delegate)getDelegate();
+    }
+}
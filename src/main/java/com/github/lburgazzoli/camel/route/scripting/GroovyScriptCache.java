@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On disk cache of the classes generated by compiling groovy routes.
+ *
+ * Every entry is a directory named after the cache key holding one
+ * {@code .class} file per generated class (the script class and its closures).
+ */
+public class GroovyScriptCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroovyScriptCache.class);
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Path directory;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public GroovyScriptCache(Path directory) {
+        this.directory = directory;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Retrieves the bytecode stored for the given key.
+     *
+     * @return the bytecode indexed by class name or null if the key is not cached.
+     */
+    public Map<String, byte[]> get(String key) {
+        final Path entry = directory.resolve(key);
+
+        if (Files.isDirectory(entry)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(entry, "*" + CLASS_SUFFIX)) {
+                final Map<String, byte[]> classes = new HashMap<>();
+
+                for (Path path : stream) {
+                    final String name = path.getFileName().toString();
+                    classes.put(name.substring(0, name.length() - CLASS_SUFFIX.length()), Files.readAllBytes(path));
+                }
+
+                if (!classes.isEmpty()) {
+                    LOGGER.debug("Groovy script cache hit: {}", key);
+                    hits.incrementAndGet();
+
+                    return classes;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read cached groovy script {}, it will be recompiled", entry, e);
+            }
+        }
+
+        LOGGER.debug("Groovy script cache miss: {}", key);
+        misses.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Stores the bytecode generated for the given key, the entry is first
+     * written to a temporary location and then moved in place so concurrent
+     * readers never see a partially written entry.
+     */
+    public void put(String key, Map<String, byte[]> classes) {
+        Path tmp = null;
+
+        try {
+            Files.createDirectories(directory);
+
+            tmp = Files.createTempDirectory(directory, key);
+
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                Files.write(tmp.resolve(entry.getKey() + CLASS_SUFFIX), entry.getValue());
+            }
+
+            Files.move(tmp, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            // the entry may have been stored by someone else in the meantime
+            // so this is not a failure, the script has just not been cached.
+            LOGGER.debug("Unable to store groovy script {} in cache", key, e);
+        } finally {
+            if (tmp != null) {
+                FileUtils.deleteQuietly(tmp.toFile());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GroovyScriptCache{"
+            + "directory=" + directory
+            + ", hits=" + hits
+            + ", misses=" + misses
+            + '}';
+    }
+}
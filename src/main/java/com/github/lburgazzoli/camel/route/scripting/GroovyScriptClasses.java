@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.model.RouteDefinition;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * The classes generated by compiling a groovy script, they are defined by a
+ * class loader owned by this object so they can be unloaded once neither
+ * the cache of the {@link GroovyClassManager} nor the routes defined by the
+ * script reference them anymore.
+ */
+public class GroovyScriptClasses {
+    private final String uri;
+    private final String name;
+    private final String key;
+    private final ScriptClassLoader loader;
+    private final int bytecodeSize;
+    private final Set<RouteDefinition> routes;
+    private volatile boolean released;
+
+    GroovyScriptClasses(String uri, String name, String key, ClassLoader parent, Map<String, byte[]> classes) {
+        this.uri = uri;
+        this.name = name;
+        this.key = key;
+        this.loader = new ScriptClassLoader(parent, classes);
+        this.bytecodeSize = classes.values().stream().mapToInt(bytes -> bytes.length).sum();
+        this.routes = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * The uri of the script the classes have been generated from, it tells
+     * apart scripts with the same name loaded from different locations.
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * The name of the script the classes have been generated from.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The key identifying the bytecode of the classes.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The number of classes generated by compiling the script.
+     */
+    public int getClassCount() {
+        return loader.classes.size();
+    }
+
+    /**
+     * The number of classes defined so far, closures are defined only when
+     * first used.
+     */
+    public int getLoadedClassCount() {
+        return loader.loaded.size();
+    }
+
+    /**
+     * The size in bytes of the bytecode of the classes, it gives an estimate
+     * of the metaspace used by the script.
+     */
+    public int getBytecodeSize() {
+        return bytecodeSize;
+    }
+
+    /**
+     * The number of routes still using the classes.
+     */
+    public int getRouteCount() {
+        return routes.size();
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    Class<?> loadClass(String className) throws ClassNotFoundException {
+        return loader.loadClass(className);
+    }
+
+    void addRoute(RouteDefinition route) {
+        routes.add(route);
+    }
+
+    /**
+     * @return true if any of the routes defined by the script is still
+     *         registered.
+     */
+    boolean removeRoutes(Collection<RouteDefinition> removed) {
+        synchronized (routes) {
+            routes.removeAll(removed);
+
+            return !routes.isEmpty();
+        }
+    }
+
+    /**
+     * Removes the classes from the groovy runtime caches so nothing but the
+     * instances created from them references the class loader.
+     */
+    void release() {
+        released = true;
+
+        // closures may still be defined by running routes meanwhile
+        synchronized (loader.loaded) {
+            for (Class<?> type : loader.loaded) {
+                InvokerHelper.removeClass(type);
+            }
+        }
+
+        routes.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "GroovyScriptClasses{"
+            + "uri='" + uri + '\''
+            + ", key='" + key + '\''
+            + ", classes=" + getClassCount()
+            + ", routes=" + getRouteCount()
+            + '}';
+    }
+
+    private static final class ScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+        private final List<Class<?>> loaded;
+
+        ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+
+            this.classes = classes;
+            this.loaded = Collections.synchronizedList(new ArrayList<>());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            final Class<?> answer = defineClass(name, bytes, 0, bytes.length);
+            loaded.add(answer);
+
+            return answer;
+        }
+    }
+}
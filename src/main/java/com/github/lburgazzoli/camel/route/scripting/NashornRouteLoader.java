@@ -16,32 +16,268 @@
  */
 package com.github.lburgazzoli.camel.route.scripting;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
+import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.model.RouteDefinition;
-import org.apache.camel.util.function.ThrowingBiConsumer;
 import org.springframework.core.io.Resource;
 
-public class NashornRouteLoader implements ThrowingBiConsumer<Resource, RouteBuilder, Exception> {
+public class NashornRouteLoader implements RouteLoader {
+    private static final String CODE_CACHE_DIRECTORY = "nashorn.persistent.code.cache";
+
+    private final String[] options;
+    private final Map<String, Compilation> scripts;
+    private final List<CompiledScript> libraries;
+    private volatile ScriptEngine engine;
+    private ScriptExecutorManager executors = new ScriptExecutorManager();
+    private ScriptMetrics metrics;
+    private String codeCacheDirectory;
+
+    public NashornRouteLoader() {
+        this(new String[0]);
+    }
+
+    /**
+     * @param options the options used to create the nashorn engine, i.e.
+     *                {@code --optimistic-types=true}.
+     */
+    public NashornRouteLoader(String... options) {
+        this.options = options;
+        this.scripts = new ConcurrentHashMap<>();
+        this.libraries = new CopyOnWriteArrayList<>();
+    }
+
+    public ScriptExecutorManager getExecutors() {
+        return executors;
+    }
+
+    /**
+     * Sets the manager owning the executors created by the scripts, by
+     * default the executors are owned by the loader.
+     */
+    public void setExecutors(ScriptExecutorManager executors) {
+        this.executors = executors;
+    }
+
+    public ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the time spent loading scripts, if not set no metric is recorded.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getCodeCacheDirectory() {
+        return codeCacheDirectory;
+    }
+
+    /**
+     * Sets the directory of the persistent code cache, enabled with the
+     * {@code --persistent-code-cache=true} option. Nashorn only reads it
+     * from a system property when the engine is created so the property
+     * is set while the engine is created and restored right after.
+     */
+    public void setCodeCacheDirectory(String codeCacheDirectory) {
+        this.codeCacheDirectory = codeCacheDirectory;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList(".js");
+    }
+
+    @Override
+    public void warmUp() {
+        engine();
+    }
+
+    @Override
+    public boolean supportsLibraries() {
+        return true;
+    }
+
+    /**
+     * Compiles the given library, the library is evaluated in the global
+     * scope of every script before the script itself so the functions it
+     * defines can be used by the script as they were its own. The compiled
+     * code is shared by all the scripts.
+     */
+    @Override
+    public void addLibrary(Resource resource) throws Exception {
+        libraries.add(compile(resource, ScriptHelper.read(resource)));
+    }
+
     @Override
     public void accept(Resource resource, RouteBuilder builder) throws Exception {
-        final ScriptEngineManager manager = new ScriptEngineManager();
-        final ScriptEngine engine = manager.getEngineByName("nashorn");
+        final CompiledScript script = compile(resource, ScriptHelper.read(resource));
+        final Components components = new Components(builder.getContext(), ScriptHelper.uri(resource));
+
+        // every script is evaluated with its own bindings, hence with its
+        // own global scope, the compiled code is shared.
         final Bindings bindings = new SimpleBindings();
 
         bindings.put("context", builder.getContext());
-        bindings.put("components", new Components(builder.getContext()));
+        bindings.put("components", components);
+        bindings.put("executors", new ScriptExecutors(builder.getContext(), executors, ScriptHelper.uri(resource)));
         bindings.put("from", (Function<String, RouteDefinition>) uri -> builder.from(uri));
 
-        try (InputStream is = resource.getInputStream()) {
-            engine.eval(new InputStreamReader(is), bindings);
+        final long start = System.nanoTime();
+        final long cpu = ScriptHelper.cpuTime();
+
+        for (CompiledScript library : libraries) {
+            library.eval(bindings);
+        }
+
+        script.eval(bindings);
+
+        components.report(builder);
+
+        if (metrics != null) {
+            metrics.phase(ScriptHelper.name(resource), ScriptMetrics.EVALUATE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+        }
+    }
+
+    /**
+     * @return the compiled script of the resource with the given uri or null
+     *         if it has not been compiled.
+     */
+    CompiledScript getCompiledScript(String uri) {
+        final Compilation compilation = scripts.get(uri);
+
+        return compilation != null ? compilation.future.getNow(null) : null;
+    }
+
+    /**
+     * @return the number of scripts and libraries whose compiled script is
+     *         retained.
+     */
+    int getCompiledScripts() {
+        return scripts.size();
+    }
+
+    /**
+     * Compiles the given script once per resource and content, scripts are
+     * compiled concurrently and only callers asking for the same script wait
+     * for each other. Only the compiled script of the latest content of a
+     * resource is retained, it is replaced when the content changes.
+     */
+    private CompiledScript compile(Resource resource, byte[] content) throws ScriptException {
+        final String uri = ScriptHelper.uri(resource);
+        final Compilation candidate = new Compilation(ScriptHelper.sha256(content));
+        final Compilation current = scripts.compute(uri, (k, existing) -> existing != null && existing.digest.equals(candidate.digest) ? existing : candidate);
+
+        if (current != candidate) {
+            return await(current.future);
+        }
+
+        try {
+            final ScriptEngine engine = engine();
+            final long start = System.nanoTime();
+            final long cpu = ScriptHelper.cpuTime();
+
+            // the file name is given by the source itself as the engine
+            // bindings are shared by the scripts compiled concurrently
+            final CompiledScript script = ((Compilable) engine).compile(
+                new String(content, ScriptHelper.CHARSET) + "\n//# sourceURL=" + resource.getDescription()
+            );
+
+            if (metrics != null) {
+                metrics.phase(ScriptHelper.name(resource), ScriptMetrics.COMPILE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+            }
+
+            candidate.future.complete(script);
+
+            return script;
+        } catch (ScriptException | RuntimeException e) {
+            // let the next caller try again
+            scripts.remove(uri, candidate);
+            candidate.future.completeExceptionally(e);
+
+            throw e;
+        }
+    }
+
+    private static CompiledScript await(CompletableFuture<CompiledScript> future) throws ScriptException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScriptException) {
+                throw (ScriptException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new ScriptException(e);
+        }
+    }
+
+    private ScriptEngine engine() {
+        ScriptEngine answer = engine;
+
+        if (answer == null) {
+            synchronized (this) {
+                answer = engine;
+
+                if (answer == null) {
+                    answer = create();
+                    engine = answer;
+                }
+            }
+        }
+
+        return answer;
+    }
+
+    private ScriptEngine create() {
+        if (codeCacheDirectory == null) {
+            return new NashornScriptEngineFactory().getScriptEngine(options);
+        }
+
+        synchronized (NashornRouteLoader.class) {
+            final String previous = System.getProperty(CODE_CACHE_DIRECTORY);
+
+            try {
+                System.setProperty(CODE_CACHE_DIRECTORY, codeCacheDirectory);
+
+                return new NashornScriptEngineFactory().getScriptEngine(options);
+            } finally {
+                if (previous != null) {
+                    System.setProperty(CODE_CACHE_DIRECTORY, previous);
+                } else {
+                    System.clearProperty(CODE_CACHE_DIRECTORY);
+                }
+            }
+        }
+    }
+
+    private static final class Compilation {
+        private final String digest;
+        private final CompletableFuture<CompiledScript> future;
+
+        Compilation(String digest) {
+            this.digest = digest;
+            this.future = new CompletableFuture<>();
         }
     }
 }
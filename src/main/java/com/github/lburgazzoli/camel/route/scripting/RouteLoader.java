@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.List;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.util.function.ThrowingBiConsumer;
+import org.springframework.core.io.Resource;
+
+/**
+ * Adds the routes defined by a script to a {@link RouteBuilder}, loaders are
+ * created by a {@link RouteLoaderFactory}.
+ */
+public interface RouteLoader extends ThrowingBiConsumer<Resource, RouteBuilder, Exception>, AutoCloseable {
+    /**
+     * @return the extensions, including the leading dot, of the scripts this
+     *         loader handles.
+     */
+    List<String> getExtensions();
+
+    /**
+     * @return true if the loader supports library scripts, only then
+     *         {@link #addLibrary(Resource)} can be invoked.
+     */
+    default boolean supportsLibraries() {
+        return false;
+    }
+
+    /**
+     * Registers a library script, the definitions of the library are made
+     * available to the scripts loaded afterwards. Libraries are compiled
+     * once and shared by all the scripts.
+     *
+     * @throws UnsupportedOperationException if the loader does not support
+     *         libraries, see {@link #supportsLibraries()}.
+     */
+    default void addLibrary(Resource resource) throws Exception {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support libraries");
+    }
+
+    /**
+     * Invoked once before the first script is loaded, i.e. to create the
+     * script engine beforehand.
+     */
+    default void warmUp() throws Exception {
+    }
+
+    /**
+     * Releases the resources owned by the loader.
+     */
+    @Override
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Creates {@link RouteLoader}s, factories are discovered with
+ * {@link java.util.ServiceLoader} so they have to be listed in
+ * {@code META-INF/services/com.github.lburgazzoli.camel.route.scripting.RouteLoaderFactory}.
+ */
+public interface RouteLoaderFactory {
+    /**
+     * @return the name of the loader, i.e. the language it supports.
+     */
+    String getName();
+
+    /**
+     * Checks if the loader can be created, the check has to be cheap as it
+     * is performed at startup for all the factories: it should only check
+     * the presence of the classes the loader needs and not create engines.
+     */
+    boolean isAvailable(ClassLoader classLoader);
+
+    /**
+     * Creates the loader, the application context gives access to the
+     * configuration and to the beans the loader may need, none of them is
+     * guaranteed to be available.
+     */
+    RouteLoader newInstance(ApplicationContext applicationContext) throws Exception;
+}
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.model.ExecutorServiceAwareDefinition;
+import org.apache.camel.model.ExpressionNode;
+import org.apache.camel.model.ProcessDefinition;
+import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.language.ExpressionDefinition;
+
+public final class RouteModelHelper {
+    private RouteModelHelper() {
+    }
+
+    /**
+     * Collects the processor definitions of the given type in a depth-first
+     * traversal of the given routes so that evaluating the same script twice
+     * yields the definitions in the same order.
+     */
+    public static <T> List<T> filter(Collection<RouteDefinition> routes, Class<T> type) {
+        final List<T> answer = new ArrayList<>();
+
+        for (RouteDefinition route : routes) {
+            filter(route.getOutputs(), type, answer);
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return true if the given object has been provided by a script, such as
+     *         a function or a closure, and not built by the Camel DSL.
+     */
+    public static boolean isCallback(Object callback) {
+        return callback != null && !callback.getClass().getName().startsWith("org.apache.camel.");
+    }
+
+    /**
+     * Visits the processors, predicates and expressions provided by scripts
+     * to the given routes, a callback returned by the visitor that differs
+     * from the visited one replaces it in the route.
+     *
+     * Every callback is visited along with its position in the route model,
+     * made of the index of its route and of the index of its node among the
+     * nodes of the same kind, so it identifies the same callback when the
+     * script is evaluated again whatever the other callbacks of the routes.
+     */
+    public static void visitCallbacks(Collection<RouteDefinition> routes, CallbackVisitor visitor) {
+        int index = 0;
+
+        for (RouteDefinition route : routes) {
+            final List<RouteDefinition> single = Collections.singletonList(route);
+            final int current = index++;
+
+            int position = 0;
+
+            for (ProcessDefinition definition : filter(single, ProcessDefinition.class)) {
+                final Processor processor = definition.getProcessor();
+                final String id = current + "/process/" + position++;
+
+                if (isCallback(processor)) {
+                    final Processor answer = visitor.processor(id, route, processor);
+
+                    if (answer != processor) {
+                        definition.setProcessor(answer);
+                    }
+                }
+            }
+
+            position = 0;
+
+            for (ExpressionNode node : filter(single, ExpressionNode.class)) {
+                final ExpressionDefinition expression = node.getExpression();
+                final String id = current + "/expression/" + position++;
+
+                if (expression == null) {
+                    continue;
+                }
+
+                if (isCallback(expression.getPredicate())) {
+                    final Predicate predicate = expression.getPredicate();
+                    final Predicate answer = visitor.predicate(id, route, predicate);
+
+                    if (answer != predicate) {
+                        node.setExpression(new ExpressionDefinition(answer));
+                    }
+                } else if (isCallback(expression.getExpressionValue())) {
+                    final Expression value = expression.getExpressionValue();
+                    final Expression answer = visitor.expression(id, route, value);
+
+                    if (answer != value) {
+                        node.setExpression(new ExpressionDefinition(answer));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the route holds processors, route policies or executors
+     *         provided as objects, such as script functions, which are not
+     *         reflected by the route model so two routes can not be compared.
+     */
+    public static boolean hasCallbacks(RouteDefinition route) {
+        if (route.getRoutePolicies() != null && !route.getRoutePolicies().isEmpty()) {
+            return true;
+        }
+
+        for (ProcessDefinition definition : filter(Collections.singletonList(route), ProcessDefinition.class)) {
+            if (definition.getProcessor() != null) {
+                return true;
+            }
+        }
+
+        for (ExecutorServiceAwareDefinition<?> definition : filter(Collections.singletonList(route), ExecutorServiceAwareDefinition.class)) {
+            if (definition.getExecutorService() != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static <T> void filter(List<ProcessorDefinition<?>> outputs, Class<T> type, List<T> answer) {
+        if (outputs == null) {
+            return;
+        }
+
+        for (ProcessorDefinition<?> output : outputs) {
+            if (type.isInstance(output)) {
+                answer.add(type.cast(output));
+            }
+
+            filter(output.getOutputs(), type, answer);
+        }
+    }
+
+    /**
+     * Visitor of the callbacks provided by scripts to routes.
+     */
+    public interface CallbackVisitor {
+        default Processor processor(RouteDefinition route, Processor processor) {
+            return processor;
+        }
+
+        default Predicate predicate(RouteDefinition route, Predicate predicate) {
+            return predicate;
+        }
+
+        default Expression expression(RouteDefinition route, Expression expression) {
+            return expression;
+        }
+
+        /**
+         * Visits a processor knowing its position, as described by
+         * {@link RouteModelHelper#visitCallbacks}.
+         */
+        default Processor processor(String position, RouteDefinition route, Processor processor) {
+            return processor(route, processor);
+        }
+
+        /**
+         * Visits a predicate knowing its position, as described by
+         * {@link RouteModelHelper#visitCallbacks}.
+         */
+        default Predicate predicate(String position, RouteDefinition route, Predicate predicate) {
+            return predicate(route, predicate);
+        }
+
+        /**
+         * Visits an expression knowing its position, as described by
+         * {@link RouteModelHelper#visitCallbacks}.
+         */
+        default Expression expression(String position, RouteDefinition route, Expression expression) {
+            return expression(route, expression);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor created by scripts through {@link ScriptExecutors}, either a
+ * bounded thread pool or an executor running every task in a new virtual
+ * thread.
+ */
+public final class ScriptExecutor {
+    public static final String POOL = "pool";
+    public static final String VIRTUAL = "virtual";
+
+    private final String name;
+    private final String type;
+    private final ExecutorService executor;
+    private final AtomicInteger active;
+
+    ScriptExecutor(String name, String type, ExecutorService executor, AtomicInteger active) {
+        this.name = name;
+        this.type = type;
+        this.executor = executor;
+        this.active = active;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return {@link #POOL} or {@link #VIRTUAL}.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return the number of threads running a task.
+     */
+    public int getActiveCount() {
+        if (active != null) {
+            return active.get();
+        }
+
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getActiveCount() : -1;
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread, always 0 for virtual
+     *         threads executors.
+     */
+    public int getQueueSize() {
+        if (active != null) {
+            return 0;
+        }
+
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : -1;
+    }
+
+    /**
+     * @return the number of threads of the pool, -1 for virtual threads
+     *         executors.
+     */
+    public int getPoolSize() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getPoolSize() : -1;
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptExecutor{"
+            + "name='" + name + '\''
+            + ", type='" + type + '\''
+            + ", active=" + getActiveCount()
+            + ", queue=" + getQueueSize()
+            + '}';
+    }
+}
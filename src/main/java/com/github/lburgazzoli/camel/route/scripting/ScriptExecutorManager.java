@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.ThreadPoolRejectedPolicy;
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
+import org.apache.camel.support.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the executors created by the scripts through {@link ScriptExecutors}.
+ *
+ * Executors are identified by name and shared by the scripts using the same
+ * name, a script evaluated again, i.e. because it has been reloaded, gets the
+ * executors it created the first time and a pool requested with a different
+ * number of threads is resized. A pool requested with a different number of
+ * threads by another script is rejected. Thread pools are created by the
+ * {@link org.apache.camel.spi.ExecutorServiceManager} of the camel context
+ * and all the executors are shut down with the context.
+ */
+public class ScriptExecutorManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptExecutorManager.class);
+    private static final Method OF_VIRTUAL = virtualThreadsBuilder();
+
+    private final Map<String, ScriptExecutor> executors;
+    private final Map<String, String> owners;
+    private final List<Consumer<String>> listeners;
+
+    public ScriptExecutorManager() {
+        this.executors = new ConcurrentHashMap<>();
+        this.owners = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @return the names of the executors that have not been shut down.
+     */
+    public Set<String> getNames() {
+        final Set<String> answer = new TreeSet<>();
+
+        executors.forEach((name, executor) -> {
+            if (!executor.isShutdown()) {
+                answer.add(name);
+            }
+        });
+
+        return answer;
+    }
+
+    /**
+     * @return the executor having the given name or null.
+     */
+    public ScriptExecutor getExecutor(String name) {
+        return executors.get(name);
+    }
+
+    /**
+     * Registers a listener notified with the name of an executor whenever it
+     * is created for the first time.
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    synchronized ScriptExecutor pool(CamelContext context, String owner, String name, int threads, int queueSize) {
+        final ScriptExecutor existing = executors.get(name);
+
+        if (existing != null && !existing.isShutdown()) {
+            if (existing.getExecutor() instanceof ThreadPoolExecutor) {
+                final ThreadPoolExecutor pool = (ThreadPoolExecutor) existing.getExecutor();
+
+                if (pool.getMaximumPoolSize() != threads) {
+                    if (owner == null || !owner.equals(owners.get(name))) {
+                        throw new IllegalArgumentException(
+                            "Executor " + name + " already has " + pool.getMaximumPoolSize() + " threads, " + threads + " requested"
+                        );
+                    }
+
+                    resize(pool, threads);
+                }
+            }
+
+            return existing;
+        }
+
+        if (owner != null) {
+            owners.put(name, owner);
+        } else {
+            owners.remove(name);
+        }
+
+        // the caller runs the tasks the pool can not accept so a slow script
+        // slows down the consumer of its route instead of failing exchanges
+        final ExecutorService executor = context.getExecutorServiceManager().newThreadPool(
+            this,
+            name,
+            new ThreadPoolProfileBuilder(name)
+                .poolSize(threads)
+                .maxPoolSize(threads)
+                .maxQueueSize(queueSize)
+                .rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns)
+                .build());
+
+        return add(new ScriptExecutor(name, ScriptExecutor.POOL, executor, null));
+    }
+
+    synchronized ScriptExecutor virtual(CamelContext context, String name) {
+        final ScriptExecutor existing = executors.get(name);
+
+        if (existing != null && !existing.isShutdown()) {
+            return existing;
+        }
+
+        final AtomicInteger active = new AtomicInteger();
+        final ExecutorService executor;
+
+        try {
+            executor = newVirtualThreadPerTaskExecutor(name, active);
+        } catch (Exception e) {
+            throw new IllegalStateException("Virtual threads are not available", e);
+        }
+
+        try {
+            // virtual threads executors are not known to camel so they are
+            // bound to the lifecycle of the context explicitly
+            context.addService(new ServiceSupport() {
+                @Override
+                protected void doStart() {
+                }
+
+                @Override
+                protected void doStop() {
+                    executor.shutdownNow();
+                }
+            });
+        } catch (Exception e) {
+            executor.shutdownNow();
+            throw RuntimeCamelException.wrapRuntimeCamelException(e);
+        }
+
+        return add(new ScriptExecutor(name, ScriptExecutor.VIRTUAL, executor, active));
+    }
+
+    private ScriptExecutor add(ScriptExecutor executor) {
+        final boolean created = executors.put(executor.getName(), executor) == null;
+
+        LOGGER.debug("Created executor {}", executor);
+
+        if (created) {
+            listeners.forEach(l -> l.accept(executor.getName()));
+        }
+
+        return executor;
+    }
+
+    private static void resize(ThreadPoolExecutor executor, int threads) {
+        // the maximum size can not be lower than the core size
+        if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name, AtomicInteger active) throws Exception {
+        // virtual threads are looked up reflectively as they are not part of
+        // the java version this library is built against
+        final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+
+        Object builder = OF_VIRTUAL.invoke(null);
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+
+        final ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        final ThreadFactory counting = task -> factory.newThread(() -> {
+            active.incrementAndGet();
+
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+
+        return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, counting);
+    }
+
+    private static Method virtualThreadsBuilder() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.ThrottlingInflightRoutePolicy;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.ThreadsDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets scripts isolate the execution of their routes and bound their
+ * concurrency, i.e.
+ *
+ * <pre>
+ * executors.isolate(from('seda:orders'), executors.pool('orders', 4))
+ *     .process(...)
+ * </pre>
+ *
+ * Executors are owned by a {@link ScriptExecutorManager} so they are shared
+ * by name and reused when a script is evaluated again, only the script that
+ * created a pool can change its size.
+ */
+public class ScriptExecutors {
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptExecutors.class);
+
+    private final CamelContext context;
+    private final ScriptExecutorManager manager;
+    private final String owner;
+
+    public ScriptExecutors(CamelContext context, ScriptExecutorManager manager) {
+        this(context, manager, null);
+    }
+
+    /**
+     * @param owner the script the executors are requested by, a pool created
+     *              by a previous evaluation of the same script is resized if
+     *              requested with a different number of threads.
+     */
+    public ScriptExecutors(CamelContext context, ScriptExecutorManager manager, String owner) {
+        this.context = context;
+        this.manager = manager;
+        this.owner = owner;
+    }
+
+    /**
+     * @return a pool with the given name and number of threads and a queue
+     *         of {@link #DEFAULT_QUEUE_SIZE} tasks.
+     */
+    public ExecutorService pool(String name, int threads) {
+        return pool(name, threads, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @return a pool with the given name, number of threads and queue size,
+     *         tasks submitted when the queue is full are run by the caller.
+     * @throws IllegalArgumentException if a pool with the same name but a
+     *         different number of threads has been created by another script.
+     */
+    public ExecutorService pool(String name, int threads, int queueSize) {
+        return manager.pool(context, owner, name, threads, queueSize).getExecutor();
+    }
+
+    /**
+     * @return an executor running every task in a new virtual thread or, if
+     *         the JVM does not support virtual threads, a pool with as many
+     *         threads as processors.
+     */
+    public ExecutorService virtual(String name) {
+        if (ScriptExecutorManager.isVirtualThreadsSupported()) {
+            try {
+                return manager.virtual(context, name).getExecutor();
+            } catch (IllegalStateException e) {
+                LOGGER.debug("Virtual threads not available for executor {}", name, e);
+            }
+        }
+
+        LOGGER.info("Virtual threads are not supported, executor {} uses a thread pool", name);
+
+        return pool(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    public boolean isVirtualThreadsSupported() {
+        return ScriptExecutorManager.isVirtualThreadsSupported();
+    }
+
+    /**
+     * Hands the exchanges of the given route off to the given executor from
+     * this point of the route on so the consumer of the route and the other
+     * routes do not share the threads of the route.
+     */
+    public ThreadsDefinition isolate(RouteDefinition route, ExecutorService executor) {
+        return route.threads().executorService(executor);
+    }
+
+    /**
+     * Hands the exchanges of the given route off to a pool with the given
+     * name and number of threads, see {@link #isolate(RouteDefinition, ExecutorService)}.
+     */
+    public ThreadsDefinition isolate(RouteDefinition route, String name, int threads) {
+        return isolate(route, pool(name, threads));
+    }
+
+    /**
+     * Limits the number of exchanges the given route processes at the same
+     * time, the consumer of the route is suspended once the limit has been
+     * reached and resumed when the exchanges in flight drop below 70% of the
+     * limit. The limit is checked as exchanges begin and complete so the
+     * consumer threads are never blocked, a consumer with concurrent
+     * consumers may go slightly over it.
+     */
+    public RouteDefinition limit(RouteDefinition route, int concurrency) {
+        final ThrottlingInflightRoutePolicy policy = new ThrottlingInflightRoutePolicy();
+        policy.setScope(ThrottlingInflightRoutePolicy.ThrottlingScope.Route);
+        policy.setMaxInflightExchanges(concurrency);
+
+        return route.routePolicy(policy);
+    }
+
+    /**
+     * @return the given endpoint uri with the number of concurrent consumers
+     *         set, for the components supporting the concurrentConsumers
+     *         option, i.e. {@code from(executors.consumers('seda:orders', 4))}.
+     */
+    public String consumers(String uri, int consumers) {
+        return uri + (uri.indexOf('?') < 0 ? '?' : '&') + "concurrentConsumers=" + consumers;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.core.io.Resource;
+
+public final class ScriptHelper {
+    /**
+     * The encoding of the scripts, it does not depend on the platform so a
+     * script is read the same way everywhere.
+     */
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private ScriptHelper() {
+    }
+
+    /**
+     * @return the name identifying the given script in logs and metrics, that
+     *         is the file name if any.
+     */
+    public static String name(Resource resource) {
+        final String name = resource.getFilename();
+
+        return name != null ? name : resource.getDescription();
+    }
+
+    /**
+     * @return the URI identifying the given script across the locations the
+     *         scripts are loaded from, or its description if it has none.
+     */
+    public static String uri(Resource resource) {
+        try {
+            return resource.getURI().toString();
+        } catch (IOException e) {
+            return resource.getDescription();
+        }
+    }
+
+    /**
+     * Reads the content of the given script, scripts on the file system are
+     * read at once through NIO.
+     */
+    public static byte[] read(Resource resource) throws IOException {
+        if (resource.isFile()) {
+            return Files.readAllBytes(resource.getFile().toPath());
+        }
+
+        try (InputStream is = resource.getInputStream()) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    /**
+     * Reads the content of the given script as text.
+     */
+    public static String text(Resource resource) throws IOException {
+        return new String(read(resource), CHARSET);
+    }
+
+    /**
+     * @return the CPU time of the current thread in nanoseconds or -1 if it
+     *         is not supported or not enabled by the JVM.
+     */
+    public static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * @return the CPU time spent by the current thread since the given CPU
+     *         time, as returned by {@link #cpuTime()}, or -1 if unknown.
+     */
+    public static long cpuTimeSince(long start) {
+        return start < 0 ? -1 : cpuTime() - start;
+    }
+
+    /**
+     * Computes the SHA-256 digest of the given script content and of any
+     * additional string that contributes to the identity of the compiled
+     * result, i.e. the engine version or the compiler settings.
+     */
+    public static String sha256(byte[] content, String... qualifiers) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(content);
+
+        for (String qualifier: qualifiers) {
+            digest.update((byte)0);
+            digest.update(qualifier.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final byte[] bytes = digest.digest();
+        final char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+
+        return new String(chars);
+    }
+}
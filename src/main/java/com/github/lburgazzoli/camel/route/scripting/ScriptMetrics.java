@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.model.RouteDefinition;
+
+/**
+ * Records the cost of loading scripts and of invoking the callbacks they
+ * provide to the routes.
+ */
+public interface ScriptMetrics {
+    String PARSE = "parse";
+    String COMPILE = "compile";
+    String EVALUATE = "evaluate";
+
+    /**
+     * Records the time spent in the given phase of the loading of a script.
+     */
+    void phase(String script, String phase, long nanos);
+
+    /**
+     * Records the wall-clock and the CPU time, as measured by {@link ScriptHelper#cpuTime()},
+     * spent in the given phase of the loading of a script, the CPU time is
+     * negative if it can not be measured.
+     */
+    default void phase(String script, String phase, long nanos, long cpuNanos) {
+        phase(script, phase, nanos);
+    }
+
+    /**
+     * Records the number of routes defined by a script.
+     */
+    void routes(String script, int count);
+
+    /**
+     * Records the failure to load a script.
+     */
+    void failure(String script);
+
+    /**
+     * Wraps a processor provided by a script to record its invocations.
+     */
+    Processor processor(String script, RouteDefinition route, Processor processor);
+
+    /**
+     * Wraps a predicate provided by a script to record its invocations.
+     */
+    Predicate predicate(String script, RouteDefinition route, Predicate predicate);
+
+    /**
+     * Wraps an expression provided by a script to record its invocations.
+     */
+    Expression expression(String script, RouteDefinition route, Expression expression);
+}
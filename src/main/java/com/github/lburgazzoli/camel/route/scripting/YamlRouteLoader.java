@@ -0,0 +1,444 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Component;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.ChoiceDefinition;
+import org.apache.camel.model.ConvertBodyDefinition;
+import org.apache.camel.model.ExpressionNode;
+import org.apache.camel.model.FilterDefinition;
+import org.apache.camel.model.LogDefinition;
+import org.apache.camel.model.OtherwiseDefinition;
+import org.apache.camel.model.ProcessDefinition;
+import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.model.RemoveHeaderDefinition;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.SetBodyDefinition;
+import org.apache.camel.model.SetHeaderDefinition;
+import org.apache.camel.model.SetPropertyDefinition;
+import org.apache.camel.model.ToDefinition;
+import org.apache.camel.model.WhenDefinition;
+import org.apache.camel.model.language.ExpressionDefinition;
+import org.apache.camel.model.language.LanguageExpression;
+import org.apache.camel.util.IntrospectionSupport;
+import org.springframework.core.io.Resource;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+
+/**
+ * Loads routes declared in yaml, the routes are built while the document is
+ * parsed so no script engine is involved and no object other than the route
+ * model is created.
+ *
+ * <pre>
+ * components:
+ *   - name: audit
+ *     type: org.apache.camel.component.log.LogComponent
+ *     properties:
+ *       exchangeFormatter: "#myFormatter"
+ * routes:
+ *   - from: timer:yaml?period=1s
+ *     id: yaml
+ *     steps:
+ *       - set-body:
+ *           constant: yaml
+ *       - set-header:
+ *           name: RandomValue
+ *           simple: ${random(1,100)}
+ *       - filter:
+ *           simple: ${header.RandomValue} &gt; 50
+ *           steps:
+ *             - to: audit:yaml
+ *       - to: log:yaml
+ * </pre>
+ *
+ * Components are looked up, or created when a type is given, and configured
+ * the same way scripts do through {@link Components}, routes are created with
+ * {@link RouteBuilder#from(String)} so {@code from} has to be the first key
+ * of a route. Expressions are given as a mapping from the language to the
+ * expression or as a plain string for the simple language.
+ */
+public class YamlRouteLoader implements RouteLoader {
+    private ScriptMetrics metrics;
+
+    public ScriptMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records the time spent loading scripts, if not set no metric is recorded.
+     */
+    public void setMetrics(ScriptMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Arrays.asList(".yaml", ".yml");
+    }
+
+    @Override
+    public void accept(Resource resource, RouteBuilder builder) throws Exception {
+        final long start = System.nanoTime();
+        final long cpu = ScriptHelper.cpuTime();
+        final Components components = new Components(builder.getContext(), ScriptHelper.uri(resource));
+
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), ScriptHelper.CHARSET)) {
+            final Events events = new Events(new Yaml().parse(reader).iterator(), resource.getDescription());
+
+            events.expect(StreamStartEvent.class);
+
+            while (events.peek() instanceof DocumentStartEvent) {
+                events.next();
+
+                if (events.peek() instanceof ScalarEvent) {
+                    // empty document
+                    events.next();
+                } else {
+                    events.mapping(key -> document(events, key, builder, components));
+                }
+
+                events.expect(DocumentEndEvent.class);
+            }
+
+            events.expect(StreamEndEvent.class);
+        }
+
+        if (metrics != null) {
+            metrics.phase(ScriptHelper.name(resource), ScriptMetrics.PARSE, System.nanoTime() - start, ScriptHelper.cpuTimeSince(cpu));
+        }
+    }
+
+    // ********************************
+    //
+    // Document
+    //
+    // ********************************
+
+    private void document(Events events, String key, RouteBuilder builder, Components components) throws Exception {
+        switch (key) {
+        case "components":
+            events.sequence(() -> component(events, builder.getContext(), components));
+            break;
+        case "routes":
+            events.sequence(() -> route(events, builder));
+            break;
+        default:
+            throw events.unexpected(key);
+        }
+    }
+
+    private void component(Events events, CamelContext context, Components components) throws Exception {
+        final Map<String, String> values = new HashMap<>();
+        final Map<String, Object> properties = new HashMap<>();
+
+        events.mapping(key -> {
+            switch (key) {
+            case "name":
+            case "type":
+                values.put(key, events.scalar());
+                break;
+            case "properties":
+                events.mapping(name -> properties.put(name, events.scalar()));
+                break;
+            default:
+                throw events.unexpected(key);
+            }
+        });
+
+        final String name = values.get("name");
+        if (name == null) {
+            throw new IllegalArgumentException("Missing component name in " + events.source);
+        }
+
+        final String type = values.get("type");
+        final Component component = type != null ? components.make(name, type) : components.get(name);
+
+        IntrospectionSupport.setProperties(context, context.getTypeConverter(), component, properties);
+
+        // the properties that have been set are removed from the map
+        if (!properties.isEmpty()) {
+            throw new IllegalArgumentException("Unknown properties " + properties.keySet() + " of component " + name + " in " + events.source);
+        }
+    }
+
+    private void route(Events events, RouteBuilder builder) throws Exception {
+        events.expect(MappingStartEvent.class);
+
+        if (!"from".equals(events.scalar())) {
+            throw new IllegalArgumentException("A route must start with 'from' in " + events.source + events.mark());
+        }
+
+        final RouteDefinition route = builder.from(events.scalar());
+
+        while (!(events.peek() instanceof MappingEndEvent)) {
+            final String key = events.scalar();
+
+            switch (key) {
+            case "id":
+                route.routeId(events.scalar());
+                break;
+            case "group":
+                route.group(events.scalar());
+                break;
+            case "auto-startup":
+                route.setAutoStartup(events.scalar());
+                break;
+            case "steps":
+                steps(events, route);
+                break;
+            default:
+                throw events.unexpected(key);
+            }
+        }
+
+        events.expect(MappingEndEvent.class);
+    }
+
+    // ********************************
+    //
+    // Steps
+    //
+    // ********************************
+
+    private void steps(Events events, ProcessorDefinition<?> parent) throws Exception {
+        events.sequence(() -> events.mapping(key -> parent.addOutput(step(events, key))));
+    }
+
+    private ProcessorDefinition<?> step(Events events, String key) throws Exception {
+        switch (key) {
+        case "to":
+            return new ToDefinition(events.scalar());
+        case "log":
+            return new LogDefinition(events.scalar());
+        case "process": {
+            final ProcessDefinition answer = new ProcessDefinition();
+            answer.setRef(events.scalar());
+            return answer;
+        }
+        case "convert-body-to":
+            return new ConvertBodyDefinition(events.scalar());
+        case "remove-header":
+            return new RemoveHeaderDefinition(events.scalar());
+        case "set-body": {
+            final SetBodyDefinition answer = new SetBodyDefinition();
+            answer.setExpression(expression(events));
+            return answer;
+        }
+        case "set-header": {
+            final SetHeaderDefinition answer = new SetHeaderDefinition();
+            expressionNode(events, answer, answer::setHeaderName);
+            return answer;
+        }
+        case "set-property": {
+            final SetPropertyDefinition answer = new SetPropertyDefinition();
+            expressionNode(events, answer, answer::setPropertyName);
+            return answer;
+        }
+        case "filter": {
+            final FilterDefinition answer = new FilterDefinition();
+            expressionNode(events, answer, null);
+            return answer;
+        }
+        case "choice": {
+            final ChoiceDefinition answer = new ChoiceDefinition();
+            events.mapping(name -> {
+                switch (name) {
+                case "when":
+                    events.sequence(() -> {
+                        final WhenDefinition when = new WhenDefinition();
+                        expressionNode(events, when, null);
+                        answer.getWhenClauses().add(when);
+                    });
+                    break;
+                case "otherwise": {
+                    final OtherwiseDefinition otherwise = new OtherwiseDefinition();
+                    steps(events, otherwise);
+                    answer.setOtherwise(otherwise);
+                    break;
+                }
+                default:
+                    throw events.unexpected(name);
+                }
+            });
+            return answer;
+        }
+        default:
+            throw events.unexpected(key);
+        }
+    }
+
+    /**
+     * Reads a mapping holding the expression of the given node and, depending
+     * on the node, the name it applies to and the nested steps.
+     */
+    private void expressionNode(Events events, ExpressionNode node, Handler name) throws Exception {
+        events.mapping(key -> {
+            if ("name".equals(key) && name != null) {
+                name.handle(events.scalar());
+            } else if ("steps".equals(key)) {
+                steps(events, node);
+            } else {
+                node.setExpression(new LanguageExpression(key, events.scalar()));
+            }
+        });
+
+        if (node.getExpression() == null) {
+            throw new IllegalArgumentException("Missing expression in " + events.source + events.mark());
+        }
+    }
+
+    private ExpressionDefinition expression(Events events) throws Exception {
+        if (events.peek() instanceof ScalarEvent) {
+            return new LanguageExpression("simple", events.scalar());
+        }
+
+        final ExpressionDefinition[] answer = new ExpressionDefinition[1];
+        events.mapping(key -> answer[0] = new LanguageExpression(key, events.scalar()));
+
+        if (answer[0] == null) {
+            throw new IllegalArgumentException("Missing expression in " + events.source + events.mark());
+        }
+
+        return answer[0];
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(String value) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Item {
+        void read() throws Exception;
+    }
+
+    /**
+     * A cursor over the events of a yaml stream.
+     */
+    private static final class Events {
+        private final Iterator<Event> iterator;
+        private final String source;
+        private Event current;
+
+        Events(Iterator<Event> iterator, String source) {
+            this.iterator = iterator;
+            this.source = source;
+        }
+
+        Event peek() {
+            if (current == null && iterator.hasNext()) {
+                current = iterator.next();
+            }
+
+            return current;
+        }
+
+        Event next() {
+            final Event answer = peek();
+            if (answer == null) {
+                throw new IllegalArgumentException("Unexpected end of " + source);
+            }
+
+            current = null;
+
+            return answer;
+        }
+
+        <T extends Event> T expect(Class<T> type) {
+            final Event event = next();
+            if (!type.isInstance(event)) {
+                throw new IllegalArgumentException("Unexpected " + event + " in " + source + mark(event));
+            }
+
+            return type.cast(event);
+        }
+
+        String scalar() {
+            return expect(ScalarEvent.class).getValue();
+        }
+
+        /**
+         * Reads a mapping, the handler is invoked with every key and has to
+         * read the value.
+         */
+        void mapping(Handler handler) throws Exception {
+            expect(MappingStartEvent.class);
+
+            while (!(peek() instanceof MappingEndEvent)) {
+                handler.handle(scalar());
+            }
+
+            expect(MappingEndEvent.class);
+        }
+
+        /**
+         * Reads a sequence, the item is invoked once per element and has to
+         * read it.
+         */
+        void sequence(Item item) throws Exception {
+            expect(SequenceStartEvent.class);
+
+            while (!(peek() instanceof SequenceEndEvent)) {
+                item.read();
+            }
+
+            expect(SequenceEndEvent.class);
+        }
+
+        String mark() {
+            return mark(peek());
+        }
+
+        private static String mark(Event event) {
+            if (event == null || event.getStartMark() == null) {
+                return "";
+            }
+
+            return " at line " + (event.getStartMark().getLine() + 1) + ", column " + (event.getStartMark().getColumn() + 1);
+        }
+
+        IllegalArgumentException unexpected(String key) {
+            return new IllegalArgumentException("Unexpected key '" + key + "' in " + source + mark());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// A statically typed flavour of ext/camel/routes.groovy, it compiles with
+// camel.routes.loader.groovy.compile-static enabled as every variable is
+// declared and the closures declare the type of their parameters.
+
+import org.apache.camel.Exchange
+import org.apache.camel.Processor
+import org.apache.camel.component.log.LogComponent
+import org.apache.camel.spi.ExchangeFormatter
+
+// ****************
+//
+// Setup
+//
+// ****************
+
+LogComponent sss = components.make('sss', LogComponent)
+sss.exchangeFormatter = { Exchange e -> 'sss - body=' + e.in.body + ', headers=' + e.in.headers } as ExchangeFormatter
+
+// ****************
+//
+// Route
+//
+// ****************
+
+from('timer:groovy-static?period=1s')
+    .routeId('groovy-static')
+    .process({ Exchange e -> e.in.body = UUID.randomUUID().toString() } as Processor)
+    .to('sss:groovy-static')
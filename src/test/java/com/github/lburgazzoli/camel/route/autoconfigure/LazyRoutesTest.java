@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.YamlRouteLoader;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.SimpleRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyRoutesTest {
+    private static final String SCRIPT = "lazy.yaml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimpleRegistry registry;
+    private DefaultCamelContext context;
+    private ProducerTemplate template;
+    private LazyRoutes lazy;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new SimpleRegistry();
+
+        context = new DefaultCamelContext(registry);
+        context.start();
+
+        template = context.createProducerTemplate();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testActivatedBySend() throws Exception {
+        bind(0, "      - set-body:", "          constant: lazy");
+
+        assertThat(lazy.getScripts()).containsExactly(SCRIPT);
+        assertThat(lazy.getEndpoints()).containsExactly("direct:lazy");
+        assertThat(lazy.isActive(SCRIPT)).isFalse();
+        assertThat(context.getRoute("lazy")).isNull();
+
+        assertThat(template.requestBody("direct:lazy", "x", String.class)).isEqualTo("lazy");
+        assertThat(lazy.isActive(SCRIPT)).isTrue();
+        assertThat(context.getRoute("lazy")).isNotNull();
+    }
+
+    @Test
+    public void testActivateAndDeactivate() throws Exception {
+        bind(0, "      - set-body:", "          constant: lazy");
+
+        assertThat(lazy.activate("direct:unknown")).isFalse();
+        assertThat(lazy.activate("direct://lazy?timeout=1000")).isTrue();
+        assertThat(lazy.isActive(SCRIPT)).isTrue();
+        assertThat(context.getRoute("lazy")).isNotNull();
+
+        assertThat(lazy.deactivateScript(SCRIPT)).isTrue();
+        assertThat(lazy.isActive(SCRIPT)).isFalse();
+        assertThat(context.getRoute("lazy")).isNull();
+
+        // activated again the next time a message is sent to it
+        assertThat(template.requestBody("direct:lazy", "x", String.class)).isEqualTo("lazy");
+        assertThat(lazy.isActive(SCRIPT)).isTrue();
+    }
+
+    @Test
+    public void testIdleRoutesAreUnloaded() throws Exception {
+        bind(100, "      - set-body:", "          constant: lazy");
+
+        assertThat(template.requestBody("direct:lazy", "x", String.class)).isEqualTo("lazy");
+        assertThat(lazy.isActive(SCRIPT)).isTrue();
+
+        await(() -> !lazy.isActive(SCRIPT));
+
+        assertThat(context.getRoute("lazy")).isNull();
+    }
+
+    @Test
+    public void testRoutesWithInflightExchangesAreNotUnloaded() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        registry.put("blocker", (Processor) exchange -> {
+            entered.countDown();
+            released.await(10, TimeUnit.SECONDS);
+            exchange.getIn().setBody("done");
+        });
+
+        bind(100, "      - process: blocker");
+
+        final Future<String> reply = template.asyncRequestBody("direct:lazy", "x", String.class);
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // longer than the idle timeout and the period of the checks
+        Thread.sleep(2500);
+        assertThat(lazy.isActive(SCRIPT)).isTrue();
+
+        released.countDown();
+        assertThat(reply.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+
+        await(() -> !lazy.isActive(SCRIPT));
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void bind(long idleTimeout, String... steps) throws Exception {
+        final File file = new File(folder.getRoot(), SCRIPT);
+        Files.write(
+            file.toPath(),
+            String.join("\n",
+                "routes:",
+                "  - from: direct:lazy",
+                "    id: lazy",
+                "    steps:",
+                String.join("\n", steps)).getBytes(ScriptHelper.CHARSET));
+
+        final Resource resource = new FileSystemResource(file);
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".yaml", new YamlRouteLoader());
+
+        lazy = new LazyRoutes(idleTimeout);
+
+        final RoutesLoader loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            new RoutesLoaderConfigurationProperties(),
+            Collections.singletonList(mapping),
+            null,
+            new RoutesLoaderProgress(),
+            lazy,
+            null);
+
+        lazy.register(resource, mapping, LazyRoutes.scan(resource));
+        lazy.bind(context, loader);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
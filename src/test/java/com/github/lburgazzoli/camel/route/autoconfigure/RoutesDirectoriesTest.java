@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesDirectoriesTest {
+    private static final int SCRIPTS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private RoutesLoaderConfigurationProperties configuration;
+    private RoutesLoaderProgress progress;
+    private AtomicInteger evaluating;
+    private AtomicInteger peak;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new RoutesLoaderConfigurationProperties();
+        configuration.setLocations(Collections.emptySet());
+        configuration.getDirectories().setLocations(Collections.singletonList(folder.getRoot().getAbsolutePath()));
+        configuration.getDirectories().setPatterns(Collections.singletonList("**/*.txt"));
+
+        progress = new RoutesLoaderProgress();
+        evaluating = new AtomicInteger();
+        peak = new AtomicInteger();
+        context = new DefaultCamelContext();
+
+        for (int i = 0; i < SCRIPTS; i++) {
+            write((i % 2 == 0 ? "even/" : "odd/") + String.format("%02d.txt", i), "r" + i);
+        }
+
+        write("ignored.yaml", "ignored");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testScriptsAreLoadedInWalkOrder() throws Exception {
+        load();
+
+        assertThat(progress.getTotal()).isEqualTo(SCRIPTS);
+        assertThat(progress.getLoaded()).isEqualTo(SCRIPTS);
+        assertThat(ids()).containsExactlyElementsOf(expected());
+        assertThat(peak.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInFlightScriptsAreBounded() throws Exception {
+        configuration.getParallel().setEnabled(true);
+        configuration.getParallel().setThreads(8);
+        configuration.getDirectories().setInFlight(3);
+
+        load();
+
+        assertThat(progress.getTotal()).isEqualTo(SCRIPTS);
+        assertThat(progress.getLoaded()).isEqualTo(SCRIPTS);
+        assertThat(ids()).containsExactlyElementsOf(expected());
+        assertThat(peak.get()).isBetween(1, 3);
+    }
+
+    @Test
+    public void testMissingDirectoriesAreReported() throws Exception {
+        configuration.getDirectories().setLocations(Arrays.asList(new File(folder.getRoot(), "missing").getAbsolutePath(), folder.getRoot().getAbsolutePath()));
+
+        load();
+
+        assertThat(progress.getLoaded()).isEqualTo(SCRIPTS);
+        assertThat(progress.isDone()).isTrue();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void write(String name, String id) throws Exception {
+        final File file = new File(folder.getRoot(), name);
+
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), id.getBytes(ScriptHelper.CHARSET));
+    }
+
+    private void load() {
+        // a script made of the id of the route it defines, the evaluation
+        // takes a while so concurrent evaluations overlap
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".txt", (script, builder) -> {
+            final String id = ScriptHelper.text(script);
+
+            peak.accumulateAndGet(evaluating.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(20);
+            } finally {
+                evaluating.decrementAndGet();
+            }
+
+            builder.from("direct:" + id).routeId(id).setBody().constant(id);
+        });
+
+        final RoutesLoader loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Collections.singletonList(mapping),
+            null,
+            progress,
+            null,
+            null);
+
+        loader.beforeApplicationStart(context);
+    }
+
+    private List<String> expected() {
+        final List<String> answer = new ArrayList<>();
+
+        for (int i = 0; i < SCRIPTS; i += 2) {
+            answer.add("r" + i);
+        }
+        for (int i = 1; i < SCRIPTS; i += 2) {
+            answer.add("r" + i);
+        }
+
+        return answer;
+    }
+
+    private List<String> ids() {
+        return context.getRouteDefinitions().stream().map(RouteDefinition::getId).collect(Collectors.toList());
+    }
+}
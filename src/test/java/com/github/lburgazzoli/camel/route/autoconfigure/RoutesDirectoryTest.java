@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StringUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoutesDirectoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWalkIsDepthFirstAndOrdered() throws Exception {
+        touch("b.yaml", "a/z.yaml", "a/b/c.yaml", "a/a.yaml", "c.yaml");
+
+        assertThat(walk(Collections.singletonList("**/*"))).containsExactly(
+            "a/a.yaml",
+            "a/b/c.yaml",
+            "a/z.yaml",
+            "b.yaml",
+            "c.yaml");
+    }
+
+    @Test
+    public void testFilesAreMatchedByRelativePath() throws Exception {
+        touch("a.yaml", "a.groovy", "sub/b.yaml", "sub/b.js", "other/c.yaml");
+
+        assertThat(walk(Arrays.asList("*.groovy", "sub/*.yaml"))).containsExactly("a.groovy", "sub/b.yaml");
+    }
+
+    @Test
+    public void testRootMustBeADirectory() throws Exception {
+        final File file = folder.newFile("routes.yaml");
+
+        assertThatThrownBy(() -> new RoutesDirectory(file.toPath(), Collections.singletonList("**/*"))).isInstanceOf(IOException.class);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void touch(String... names) throws Exception {
+        for (String name : names) {
+            final Path path = folder.getRoot().toPath().resolve(name);
+
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+    }
+
+    private List<String> walk(List<String> patterns) throws Exception {
+        final Path root = folder.getRoot().toPath();
+        final RoutesDirectory directory = new RoutesDirectory(root, patterns);
+        final List<String> answer = new ArrayList<>();
+
+        while (directory.hasNext()) {
+            answer.add(StringUtils.cleanPath(root.relativize(directory.next()).toString()));
+        }
+
+        return answer;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File indexed;
+    private File scanned;
+    private URLClassLoader classLoader;
+    private PathMatchingResourcePatternResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        indexed = folder.newFolder("indexed");
+        scanned = folder.newFolder("scanned");
+
+        touch(indexed, "ext/camel/a.js");
+        touch(indexed, "ext/camel/b.groovy");
+        touch(scanned, "ext/camel/c.js");
+
+        // the index of the first root is generated before a script is added
+        // so the script is not found as the index is authoritative for its
+        // root
+        RoutesIndex.main(new String[] { indexed.getAbsolutePath(), "ext/camel/*" });
+        touch(indexed, "ext/camel/unlisted.js");
+
+        classLoader = new URLClassLoader(new URL[] { indexed.toURI().toURL(), scanned.toURI().toURL() }, null);
+        resolver = new PathMatchingResourcePatternResolver(classLoader);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        classLoader.close();
+    }
+
+    @Test
+    public void testGenerator() throws Exception {
+        final List<String> lines = Files.readAllLines(new File(indexed, RoutesIndex.DEFAULT_LOCATION).toPath());
+
+        assertThat(lines).containsExactly("classpath*:ext/camel/a.js", "classpath*:ext/camel/b.groovy");
+    }
+
+    @Test
+    public void testIndexedRootsAreResolvedAgainstTheirIndex() throws Exception {
+        final RoutesIndex index = RoutesIndex.load(resolver, "classpath*:" + RoutesIndex.DEFAULT_LOCATION);
+
+        assertThat(index.isEmpty()).isFalse();
+        assertThat(index.getEntries()).containsExactly("ext/camel/a.js", "ext/camel/b.groovy");
+
+        // the root without an index is scanned
+        assertThat(names(index.resolve(resolver, "classpath*:ext/camel/*"))).containsExactlyInAnyOrder("a.js", "b.groovy", "c.js");
+        assertThat(names(index.resolve(resolver, "classpath*:ext/camel/*.js"))).containsExactlyInAnyOrder("a.js", "c.js");
+        assertThat(names(index.resolve(resolver, "classpath*:**/*.js"))).containsExactlyInAnyOrder("a.js", "c.js");
+    }
+
+    @Test
+    public void testClasspathLocationsUseTheFirstRoot() throws Exception {
+        final RoutesIndex index = RoutesIndex.load(resolver, "classpath*:" + RoutesIndex.DEFAULT_LOCATION);
+
+        assertThat(names(index.resolve(resolver, "classpath:ext/camel/*"))).containsExactlyInAnyOrder("a.js", "b.groovy");
+    }
+
+    @Test
+    public void testWithoutIndexEverythingIsScanned() throws Exception {
+        final RoutesIndex index = RoutesIndex.load(resolver, "classpath*:META-INF/missing.idx");
+
+        assertThat(index.isEmpty()).isTrue();
+        assertThat(names(index.resolve(resolver, "classpath*:ext/camel/*"))).containsExactlyInAnyOrder("a.js", "b.groovy", "c.js", "unlisted.js");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static void touch(File root, String path) throws IOException {
+        final File file = new File(root, path);
+
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), new byte[0]);
+    }
+
+    private static List<String> names(List<Resource> resources) {
+        return resources.stream().map(Resource::getFilename).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesLoaderAsyncTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private RoutesLoaderConfigurationProperties configuration;
+    private RoutesLoaderProgress progress;
+    private CountDownLatch gate;
+    private RoutesLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new RoutesLoaderConfigurationProperties();
+        configuration.setLocations(Collections.singleton("file:" + folder.getRoot().getAbsolutePath() + "/*.txt"));
+        configuration.getAsync().setEnabled(true);
+
+        progress = new RoutesLoaderProgress();
+        gate = new CountDownLatch(0);
+
+        // a script made of the id of the route it defines, the evaluation
+        // waits for the gate to be opened
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".txt", (script, builder) -> {
+            final String id = ScriptHelper.text(script);
+
+            gate.await(5, TimeUnit.SECONDS);
+
+            builder.from("direct:" + id).routeId(id).setBody().constant(id);
+        });
+
+        loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Collections.singletonList(mapping),
+            null,
+            progress,
+            null,
+            null);
+
+        context = new DefaultCamelContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testRoutesAreLoadedOnceTheContextHasStarted() throws Exception {
+        gate = new CountDownLatch(1);
+
+        write("a.txt", "a");
+        write("b.txt", "b");
+
+        start();
+
+        // the context is started while the scripts are being loaded
+        assertThat(context.getStatus().isStarted()).isTrue();
+        assertThat(context.getRouteDefinitions()).isEmpty();
+        assertThat(progress.isDone()).isFalse();
+        assertThat(health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        gate.countDown();
+        progress.getFuture().get(5, TimeUnit.SECONDS);
+
+        assertThat(ids()).containsExactly("a", "b");
+        assertThat(context.getRouteStatus("a").isStarted()).isTrue();
+        assertThat(context.getRouteStatus("b").isStarted()).isTrue();
+
+        final Health health = health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("total", 2).containsEntry("loaded", 2).containsEntry("failed", 0);
+    }
+
+    @Test
+    public void testScriptsAreLoadedByPriority() throws Exception {
+        configuration.getAsync().setPriorities(Arrays.asList("c*", "b*"));
+
+        write("a.txt", "a");
+        write("b.txt", "b");
+        write("c.txt", "c");
+
+        start();
+        progress.getFuture().get(5, TimeUnit.SECONDS);
+
+        assertThat(ids()).containsExactly("c", "b", "a");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void write(String name, String id) throws Exception {
+        Files.write(new File(folder.getRoot(), name).toPath(), id.getBytes(ScriptHelper.CHARSET));
+    }
+
+    private void start() throws Exception {
+        loader.beforeApplicationStart(context);
+        context.start();
+        loader.afterApplicationStart(context);
+    }
+
+    private Health health() {
+        return new RoutesLoaderHealthIndicator(progress).health();
+    }
+
+    private List<String> ids() {
+        return context.getRouteDefinitions().stream().map(RouteDefinition::getId).collect(Collectors.toList());
+    }
+}
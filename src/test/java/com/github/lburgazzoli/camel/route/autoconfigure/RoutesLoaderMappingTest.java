@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.github.lburgazzoli.camel.route.scripting.GroovyRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.YamlRouteLoader;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesLoaderMappingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatches() throws Exception {
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".yaml", new YamlRouteLoader());
+
+        assertThat(mapping.matches(new FileSystemResource(new File(folder.getRoot(), "routes.yaml")))).isTrue();
+        assertThat(mapping.matches(new FileSystemResource(new File(folder.getRoot(), "routes.groovy")))).isFalse();
+    }
+
+    @Test
+    public void testSupportsLibraries() {
+        assertThat(new GroovyRouteLoader().supportsLibraries()).isTrue();
+        assertThat(new YamlRouteLoader().supportsLibraries()).isFalse();
+    }
+
+    @Test
+    public void testLibrariesAreOnlyAddedToLoadersSupportingThem() throws Exception {
+        final File routes = folder.newFolder("routes");
+        final File libraries = folder.newFolder("libraries");
+
+        write(new File(libraries, "helpers.groovy"), "def greeting() { 'hello' }");
+        write(new File(libraries, "helpers.yaml"), "routes: []");
+        write(new File(routes, "routes.groovy"), "from('direct:a').routeId('a').setBody().constant(greeting())");
+
+        final RoutesLoaderConfigurationProperties configuration = new RoutesLoaderConfigurationProperties();
+        configuration.setLocations(Collections.singleton("file:" + routes.getAbsolutePath() + "/*"));
+        configuration.getLibraries().setLocations(Collections.singleton("file:" + libraries.getAbsolutePath() + "/*"));
+
+        // the yaml library is reported as a failure, it does not prevent the
+        // other scripts from being loaded
+        final RoutesLoader loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Arrays.asList(
+                new RoutesLoaderMapping(".groovy", new GroovyRouteLoader()),
+                new RoutesLoaderMapping(".yaml", new YamlRouteLoader())),
+            null,
+            new RoutesLoaderProgress(),
+            null,
+            null);
+
+        final DefaultCamelContext context = new DefaultCamelContext();
+
+        try {
+            loader.beforeApplicationStart(context);
+            context.start();
+
+            assertThat(context.createProducerTemplate().requestBody("direct:a", null, String.class)).isEqualTo("hello");
+        } finally {
+            context.stop();
+        }
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(ScriptHelper.CHARSET));
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.ScriptMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoutesLoaderMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MeterRegistry registry;
+    private DefaultCamelContext context;
+    private RoutesLoader loader;
+    private RoutesLoaderMapping mapping;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new SimpleMeterRegistry();
+
+        // a script made of the id of the route it defines, the route is made
+        // of a processor, a predicate and an expression
+        mapping = new RoutesLoaderMapping(".txt", (script, builder) -> {
+            final String id = ScriptHelper.text(script);
+
+            if ("fail".equals(id)) {
+                throw new IllegalArgumentException("Failed to evaluate " + script.getFilename());
+            }
+
+            builder.from("direct:" + id)
+                .routeId(id)
+                .process(e -> e.getIn().setBody(e.getIn().getBody(String.class) + "-p"))
+                .filter(e -> true)
+                    .transform(new Expression() {
+                        @Override
+                        public <T> T evaluate(Exchange exchange, Class<T> type) {
+                            return exchange.getContext().getTypeConverter().convertTo(type, exchange.getIn().getBody(String.class) + "-e");
+                        }
+                    })
+                .end();
+        });
+
+        loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            new RoutesLoaderConfigurationProperties(),
+            Collections.singletonList(mapping),
+            new RoutesLoaderMetrics(registry),
+            new RoutesLoaderProgress(),
+            null,
+            null);
+
+        context = new DefaultCamelContext();
+        context.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testCallbacksAreTimed() throws Exception {
+        load(write("m.txt", "m"));
+
+        final ProducerTemplate template = context.createProducerTemplate();
+        assertThat(template.requestBody("direct:m", "x", String.class)).isEqualTo("x-p-e");
+        assertThat(template.requestBody("direct:m", "y", String.class)).isEqualTo("y-p-e");
+
+        assertThat(registry.get("camel.routes.loader.script.routes").tag("script", "m.txt").counter().count()).isEqualTo(1);
+
+        for (String type : new String[] { "processor", "predicate", "expression" }) {
+            assertThat(registry.get("camel.routes.loader.callback").tag("script", "m.txt").tag("route", "m").tag("type", type).timer().count())
+                .as(type)
+                .isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testFailuresAreCounted() throws Exception {
+        final Resource resource = write("f.txt", "fail");
+
+        assertThatThrownBy(() -> load(resource)).isInstanceOf(Exception.class);
+
+        assertThat(registry.get("camel.routes.loader.script.failures").tag("script", "f.txt").counter().count()).isEqualTo(1);
+        assertThat(registry.find("camel.routes.loader.script.routes").counter()).isNull();
+    }
+
+    @Test
+    public void testPhasesAreTimed() {
+        final ScriptMetrics metrics = new RoutesLoaderMetrics(registry);
+        metrics.phase("m.groovy", ScriptMetrics.PARSE, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.phase("m.groovy", ScriptMetrics.PARSE, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.phase("m.groovy", ScriptMetrics.EVALUATE, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(registry.get("camel.routes.loader.script.load").tag("script", "m.groovy").tag("phase", ScriptMetrics.PARSE).timer().count()).isEqualTo(2);
+        assertThat(registry.get("camel.routes.loader.script.load").tag("script", "m.groovy").tag("phase", ScriptMetrics.PARSE).timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(8);
+        assertThat(registry.get("camel.routes.loader.script.load").tag("script", "m.groovy").tag("phase", ScriptMetrics.EVALUATE).timer().count()).isEqualTo(1);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource write(String name, String content) throws Exception {
+        final File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(Resource resource) throws Exception {
+        loader.add(context, resource, loader.builder(context, resource, mapping));
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesLoaderTimelineTest {
+
+    @Test
+    public void testPhasesAreGroupedByEngineAndScript() throws Exception {
+        final RoutesLoaderTimeline timeline = new RoutesLoaderTimeline();
+        timeline.record(RoutesLoaderTimeline.SCAN, null, null, 1_000_000, -1);
+        timeline.record("compile", "groovy", "a.groovy", 2_000_000, 1_000_000);
+        timeline.record("evaluate", "groovy", "a.groovy", 3_000_000, 1_000_000);
+        timeline.record(RoutesLoaderTimeline.ADD, "js", "b.js", 4_000_000, -1);
+        timeline.complete();
+
+        final Map<String, Object> answer = timeline.toMap();
+
+        assertThat(answer).containsEntry("complete", true).containsEntry("dropped", 0);
+        assertThat(map(answer, "phases")).containsOnlyKeys(RoutesLoaderTimeline.SCAN, "compile", "evaluate", RoutesLoaderTimeline.ADD);
+        assertThat(map(answer, "engines")).containsOnlyKeys("groovy", "js");
+        assertThat(map(map(answer, "engines"), "groovy")).containsOnlyKeys("compile", "evaluate");
+        assertThat(map(answer, "scripts")).containsOnlyKeys("a.groovy", "b.js");
+        assertThat(map(map(answer, "scripts"), "a.groovy")).containsEntry("engine", "groovy");
+        assertThat(map(map(map(answer, "scripts"), "a.groovy"), "compile")).containsEntry("count", 1).containsEntry("wall", 2.0).containsEntry("cpu", 1.0);
+        assertThat((List<?>) answer.get("timeline")).hasSize(4);
+
+        // the json document is the same tree
+        assertThat(new ObjectMapper().readValue(timeline.toJson(), Map.class)).containsOnlyKeys(answer.keySet().toArray(new String[0]));
+    }
+
+    @Test
+    public void testPhasesAreIgnoredOnceComplete() {
+        final RoutesLoaderTimeline timeline = new RoutesLoaderTimeline();
+        timeline.record(RoutesLoaderTimeline.ADD, "groovy", "a.groovy", RoutesLoaderTimeline.start());
+        timeline.complete();
+
+        // i.e. a reload
+        timeline.record(RoutesLoaderTimeline.ADD, "groovy", "a.groovy", RoutesLoaderTimeline.start());
+
+        assertThat(timeline.isComplete()).isTrue();
+        assertThat((List<?>) timeline.toMap().get("timeline")).hasSize(1);
+    }
+
+    @Test
+    public void testPhasesBeyondTheLimitAreDropped() {
+        final RoutesLoaderTimeline timeline = new RoutesLoaderTimeline();
+
+        for (int i = 0; i < RoutesLoaderTimeline.MAX_SPANS + 10; i++) {
+            timeline.record(RoutesLoaderTimeline.ADD, null, null, 0, -1);
+        }
+
+        final Map<String, Object> answer = timeline.toMap();
+
+        assertThat(answer).containsEntry("complete", false).containsEntry("dropped", 10);
+        assertThat((List<?>) answer.get("timeline")).hasSize(RoutesLoaderTimeline.MAX_SPANS);
+    }
+
+    @Test
+    public void testMetricsRecordPhasesAndForward() {
+        final RoutesLoaderTimeline timeline = new RoutesLoaderTimeline();
+        final RoutesLoaderTimeline forwarded = new RoutesLoaderTimeline();
+
+        timeline.metrics("groovy", forwarded.metrics("groovy", null)).phase("a.groovy", "compile", 1_000_000);
+
+        assertThat(map(timeline.toMap(), "engines")).containsOnlyKeys("groovy");
+        assertThat(map(forwarded.toMap(), "engines")).containsOnlyKeys("groovy");
+    }
+
+    @Test
+    public void testEngineNames() {
+        final RoutesLoaderTimeline timeline = new RoutesLoaderTimeline();
+        final Object loader = new Object();
+
+        assertThat(timeline.engine(loader)).isEqualTo("Object");
+
+        timeline.engine(loader, "groovy");
+
+        assertThat(timeline.engine(loader)).isEqualTo("groovy");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.get(key);
+    }
+}
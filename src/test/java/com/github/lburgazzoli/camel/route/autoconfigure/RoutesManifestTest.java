@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeysAreTheSnapshotKeys() throws Exception {
+        final Path script = write("a.yaml", "routes: []");
+        final RoutesManifest manifest = RoutesManifest.load(new File(folder.getRoot(), "manifest").toPath());
+
+        assertThat(manifest.key(script, ".yaml")).isEqualTo(RoutesSnapshot.key(Files.readAllBytes(script), ".yaml"));
+    }
+
+    @Test
+    public void testUnchangedScriptsAreNotRead() throws Exception {
+        final Path location = new File(folder.getRoot(), "manifest").toPath();
+        final Path script = write("a.yaml", "routes: [a]");
+        final FileTime modified = Files.getLastModifiedTime(script);
+
+        final RoutesManifest manifest = RoutesManifest.load(location);
+        final String key = manifest.key(script, ".yaml");
+        manifest.save();
+
+        // same size and last modified time, the recorded key is trusted
+        write("a.yaml", "routes: [b]");
+        Files.setLastModifiedTime(script, modified);
+
+        assertThat(RoutesManifest.load(location).key(script, ".yaml")).isEqualTo(key);
+
+        // a different last modified time, the script is read again
+        Files.setLastModifiedTime(script, FileTime.fromMillis(modified.toMillis() + 1000));
+
+        assertThat(RoutesManifest.load(location).key(script, ".yaml")).isNotEqualTo(key);
+    }
+
+    @Test
+    public void testSaveKeepsOnlyTheScriptsSeen() throws Exception {
+        final Path location = new File(folder.getRoot(), "manifest").toPath();
+        final Path a = write("a.yaml", "routes: [a]");
+        final Path b = write("b.yaml", "routes: [b]");
+
+        RoutesManifest manifest = RoutesManifest.load(location);
+        manifest.key(a, ".yaml");
+        manifest.key(b, ".yaml");
+        manifest.save();
+
+        assertThat(Files.readAllLines(location, StandardCharsets.UTF_8)).hasSize(2);
+
+        manifest = RoutesManifest.load(location);
+        manifest.key(b, ".yaml");
+        manifest.save();
+
+        assertThat(Files.readAllLines(location, StandardCharsets.UTF_8)).hasSize(1).allMatch(line -> line.endsWith(b.toAbsolutePath().normalize().toString()));
+    }
+
+    @Test
+    public void testMalformedLinesAreIgnored() throws Exception {
+        final Path location = write("manifest", "malformed", "key\tsize\tmodified\t/a.yaml");
+        final Path script = write("a.yaml", "routes: []");
+
+        assertThat(RoutesManifest.load(location).key(script, ".yaml")).isEqualTo(RoutesSnapshot.key(Files.readAllBytes(script), ".yaml"));
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Path write(String name, String... lines) throws Exception {
+        final Path path = new File(folder.getRoot(), name).toPath();
+        Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+
+        return path;
+    }
+}
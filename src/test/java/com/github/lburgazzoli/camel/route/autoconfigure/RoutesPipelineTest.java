@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesPipelineTest {
+    private static final int THREADS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private RoutesLoaderConfigurationProperties configuration;
+    private RoutesLoaderProgress progress;
+    private Set<String> threads;
+    private CyclicBarrier barrier;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new RoutesLoaderConfigurationProperties();
+        configuration.setLocations(Collections.singleton("file:" + folder.getRoot().getAbsolutePath() + "/*.txt"));
+        configuration.getParallel().setEnabled(true);
+        configuration.getParallel().setThreads(THREADS);
+
+        progress = new RoutesLoaderProgress();
+        threads = ConcurrentHashMap.newKeySet();
+        context = new DefaultCamelContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testScriptsAreEvaluatedConcurrently() throws Exception {
+        // each evaluation waits for another one to be in progress so the
+        // scripts can only be loaded if they are evaluated concurrently
+        barrier = new CyclicBarrier(2);
+
+        for (int i = 0; i < 8; i++) {
+            write(String.format("%02d.txt", i), "r" + i);
+        }
+
+        load();
+
+        assertThat(progress.getLoaded()).isEqualTo(8);
+        assertThat(progress.getFailed()).isZero();
+        assertThat(threads).hasSize(THREADS);
+        assertThat(threads).allMatch(name -> !name.equals(Thread.currentThread().getName()));
+
+        // the routes are added in the order of the scripts
+        assertThat(ids()).containsExactly("r0", "r1", "r2", "r3", "r4", "r5", "r6", "r7");
+    }
+
+    @Test
+    public void testFailuresDoNotStopTheLoading() throws Exception {
+        write("00.txt", "r0");
+        write("01.txt", "fail");
+        write("02.txt", "r2");
+
+        load();
+
+        assertThat(progress.getLoaded()).isEqualTo(2);
+        assertThat(progress.getFailed()).isEqualTo(1);
+        assertThat(progress.isDone()).isTrue();
+        assertThat(ids()).containsExactly("r0", "r2");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void write(String name, String id) throws Exception {
+        Files.write(new File(folder.getRoot(), name).toPath(), id.getBytes(ScriptHelper.CHARSET));
+    }
+
+    private void load() {
+        // a script made of the id of the route it defines
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".txt", (script, builder) -> {
+            final String id = ScriptHelper.text(script);
+
+            threads.add(Thread.currentThread().getName());
+
+            if (barrier != null) {
+                barrier.await(5, TimeUnit.SECONDS);
+            }
+            if ("fail".equals(id)) {
+                throw new IllegalArgumentException("Failed to evaluate " + script.getFilename());
+            }
+
+            builder.from("direct:" + id).routeId(id).setBody().constant(id);
+        });
+
+        final RoutesLoader loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Collections.singletonList(mapping),
+            null,
+            progress,
+            null,
+            null);
+
+        loader.beforeApplicationStart(context);
+    }
+
+    private List<String> ids() {
+        return context.getRouteDefinitions().stream().map(RouteDefinition::getId).collect(Collectors.toList());
+    }
+}
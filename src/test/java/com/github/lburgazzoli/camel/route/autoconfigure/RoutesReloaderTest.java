@@ -0,0 +1,263 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import com.github.lburgazzoli.camel.route.scripting.YamlRouteLoader;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesReloaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private RoutesLoader loader;
+    private RoutesLoaderMapping mapping;
+    private RoutesLoaderMapping callbacks;
+    private Resource resource;
+
+    @Before
+    public void setUp() throws Exception {
+        final RoutesLoaderConfigurationProperties configuration = new RoutesLoaderConfigurationProperties();
+        configuration.getWatch().setEnabled(true);
+
+        mapping = new RoutesLoaderMapping(".yaml", new YamlRouteLoader());
+
+        // a script made of a callback returning the content of the script
+        callbacks = new RoutesLoaderMapping(".txt", (script, builder) -> {
+            final String body = ScriptHelper.text(script);
+            builder.from("direct:callback").routeId("callback").process(e -> e.getIn().setBody(body));
+        });
+
+        loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Arrays.asList(mapping, callbacks),
+            null,
+            new RoutesLoaderProgress(),
+            null,
+            null);
+
+        context = new DefaultCamelContext();
+        context.start();
+
+        resource = new FileSystemResource(new File(folder.getRoot(), "routes.yaml"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testUnchangedRoutesAreKept() throws Exception {
+        write("routes:", route("a", "direct:a", "a"), route("b", "direct:b", "b"));
+        load();
+
+        final RouteDefinition a = context.getRouteDefinition("a");
+        final RouteDefinition b = context.getRouteDefinition("b");
+
+        reload();
+
+        assertThat(ids()).containsExactly("a", "b");
+        assertThat(context.getRouteDefinition("a")).isSameAs(a);
+        assertThat(context.getRouteDefinition("b")).isSameAs(b);
+    }
+
+    @Test
+    public void testChangedRoutesAreSwapped() throws Exception {
+        write("routes:", route("a", "direct:a", "a"), route("b", "direct:b", "b"));
+        load();
+
+        final RouteDefinition a = context.getRouteDefinition("a");
+        final RouteDefinition b = context.getRouteDefinition("b");
+
+        write("routes:", route("a", "direct:a", "a"), route("b", "direct:b", "b2"));
+        reload();
+
+        // direct endpoints accept a single consumer so the route is replaced
+        // under the same id
+
+        assertThat(ids()).containsExactly("a", "b");
+        assertThat(context.getRouteDefinition("a")).isSameAs(a);
+        assertThat(context.getRouteDefinition("b")).isNotSameAs(b);
+        assertThat(request("direct:b")).isEqualTo("b2");
+    }
+
+    @Test
+    public void testChangedRoutesAreStartedSideBySide() throws Exception {
+        final String uri = "seda:s?multipleConsumers=true";
+
+        write("routes:", route("s", uri, "s"));
+        load();
+
+        write("routes:", route("s", uri, "s2"));
+        reload();
+
+        // the endpoint accepts two consumers so the new route is started
+        // before the previous one is removed
+        assertThat(ids()).containsExactly("s-1");
+        assertThat(context.getRoute("s")).isNull();
+        assertThat(request(uri)).isEqualTo("s2");
+
+        write("routes:", route("s", uri, "s3"));
+        reload();
+
+        assertThat(ids()).containsExactly("s-2");
+        assertThat(context.getRoute("s-1")).isNull();
+        assertThat(request(uri)).isEqualTo("s3");
+    }
+
+    @Test
+    public void testCallbackRoutesAreKeptWhenScriptIsUnchanged() throws Exception {
+        final Resource script = new FileSystemResource(new File(folder.getRoot(), "callback.txt"));
+
+        Files.write(script.getFile().toPath(), "v1".getBytes(ScriptHelper.CHARSET));
+        loader.add(context, script, loader.builder(context, script, callbacks));
+
+        final RouteDefinition definition = context.getRouteDefinition("callback");
+
+        loader.getReloader().reload(context, script);
+
+        assertThat(context.getRouteDefinition("callback")).isSameAs(definition);
+
+        Files.write(script.getFile().toPath(), "v2".getBytes(ScriptHelper.CHARSET));
+        loader.getReloader().reload(context, script);
+
+        assertThat(context.getRouteDefinition("callback")).isNotSameAs(definition);
+        assertThat(request("direct:callback")).isEqualTo("v2");
+    }
+
+    @Test
+    public void testRoutesAreAddedAndRemoved() throws Exception {
+        write("routes:", route("a", "direct:a", "a"), route("b", "direct:b", "b"));
+        load();
+
+        write("routes:", route("a", "direct:a", "a"), route("c", "direct:b", "c"));
+        reload();
+
+        assertThat(ids()).containsExactly("a", "c");
+        assertThat(context.getRoute("b")).isNull();
+        assertThat(context.getRoute("c")).isNotNull();
+
+        // the new route consumes from the endpoint of the removed one
+        assertThat(request("direct:b")).isEqualTo("c");
+    }
+
+    @Test
+    public void testRoutesWithoutIdAreMatchedByPosition() throws Exception {
+        write("routes:", route(null, "seda:a?multipleConsumers=true", "a1"), route(null, "seda:a?multipleConsumers=true", "a2"), route(null, "direct:b", "b"));
+        load();
+
+        final List<String> ids = ids();
+        assertThat(ids).hasSize(3);
+
+        final RouteDefinition first = context.getRouteDefinition(ids.get(0));
+
+        // routes consuming from the same endpoint are matched by position
+        write("routes:", route(null, "seda:a?multipleConsumers=true", "a1"), route(null, "seda:a?multipleConsumers=true", "a3"), route(null, "direct:b", "b"));
+        reload();
+
+        final List<String> reloaded = ids();
+        assertThat(reloaded).hasSize(3);
+        assertThat(reloaded.get(0)).isEqualTo(ids.get(0));
+        assertThat(reloaded.get(1)).isEqualTo(ids.get(1) + "-1");
+        assertThat(reloaded.get(2)).isEqualTo(ids.get(2));
+        assertThat(context.getRouteDefinition(ids.get(0))).isSameAs(first);
+        assertThat(context.getRouteDefinition(reloaded.get(1)).getOutputs().get(0).toString()).contains("a3");
+    }
+
+    @Test
+    public void testFailedReloadKeepsRoutes() throws Exception {
+        write("routes:", route("a", "direct:a", "a"));
+        load();
+
+        final RouteDefinition a = context.getRouteDefinition("a");
+
+        write("routes:", "  - id: a", "    from: direct:a");
+        reload();
+
+        assertThat(ids()).containsExactly("a");
+        assertThat(context.getRouteDefinition("a")).isSameAs(a);
+        assertThat(request("direct:a")).isEqualTo("a");
+    }
+
+    @Test
+    public void testUnload() throws Exception {
+        write("routes:", route("a", "direct:a", "a"), route("b", "direct:b", "b"));
+        load();
+
+        loader.getReloader().unload(context, resource);
+
+        assertThat(ids()).isEmpty();
+        assertThat(context.getRoutes()).isEmpty();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static String route(String id, String from, String body) {
+        return String.join("\n",
+            "  - from: " + from,
+            id != null ? "    id: " + id : "",
+            "    steps:",
+            "      - set-body:",
+            "          constant: " + body);
+    }
+
+    private void write(String... lines) throws Exception {
+        Files.write(resource.getFile().toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+    }
+
+    private void load() throws Exception {
+        loader.add(context, resource, loader.builder(context, resource, mapping));
+    }
+
+    private void reload() {
+        loader.getReloader().reload(context, resource);
+    }
+
+    private List<String> ids() {
+        return loader.getReloader().getRouteIds(resource);
+    }
+
+    private String request(String uri) {
+        final ProducerTemplate template = context.createProducerTemplate();
+
+        return template.requestBody(uri, null, String.class);
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoutesSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private Resource plain;
+    private Resource callbacks;
+
+    @Before
+    public void setUp() throws Exception {
+        plain = write("ext/camel/plain.yaml",
+            "components:",
+            "  - name: audit",
+            "    type: org.apache.camel.component.log.LogComponent",
+            "routes:",
+            "  - from: direct:plain",
+            "    id: plain",
+            "    steps:",
+            "      - set-body:",
+            "          constant: plain",
+            "      - to: audit:plain");
+
+        // routes with callbacks can not be rebuilt from the xml model
+        callbacks = write("ext/camel/callbacks.groovy",
+            "from('direct:callbacks').routeId('callbacks').process { it.in.body = 'callbacks' }");
+
+        // scripts failing to evaluate are left to the runtime
+        write("ext/camel/broken.yaml", "routes:", "  - id: broken");
+
+        // scripts not matching the patterns are ignored
+        write("other/other.yaml", "routes:", "  - from: direct:other");
+
+        context = new DefaultCamelContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testOnlyScriptsThatCanBeRebuiltAreSnapshotted() throws Exception {
+        final RoutesSnapshot snapshot = generate();
+
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.contains(plain, ".yaml")).isTrue();
+        assertThat(snapshot.contains(callbacks, ".groovy")).isFalse();
+        assertThat(snapshot.contains(plain, ".yml")).isFalse();
+    }
+
+    @Test
+    public void testRoutesAndComponentsAreRebuilt() throws Exception {
+        final RoutesSnapshot snapshot = generate();
+
+        context.start();
+
+        assertThat(apply(snapshot, plain)).isTrue();
+        assertThat(context.getRouteDefinition("plain")).isNotNull();
+        assertThat(context.hasComponent("audit")).isInstanceOf(LogComponent.class);
+
+        final ProducerTemplate template = context.createProducerTemplate();
+        assertThat(template.requestBody("direct:plain", null, String.class)).isEqualTo("plain");
+    }
+
+    @Test
+    public void testApplicationComponentsAreKept() throws Exception {
+        final RoutesSnapshot snapshot = generate();
+        final LogComponent audit = new LogComponent();
+
+        context.addComponent("audit", audit);
+
+        assertThat(apply(snapshot, plain)).isTrue();
+        assertThat(context.getComponent("audit")).isSameAs(audit);
+    }
+
+    @Test
+    public void testChangedScriptsAreNotApplied() throws Exception {
+        final RoutesSnapshot snapshot = generate();
+
+        write("ext/camel/plain.yaml", "routes:", "  - from: direct:changed", "    id: changed");
+
+        assertThat(snapshot.contains(plain, ".yaml")).isFalse();
+        assertThat(apply(snapshot, plain)).isFalse();
+        assertThat(context.getRouteDefinitions()).isEmpty();
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        write(RoutesSnapshot.DEFAULT_LOCATION, "version: 0", "entries: []");
+
+        assertThatThrownBy(this::load).hasMessageContaining("Unsupported routes snapshot version");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource write(String name, String... lines) throws Exception {
+        final File file = new File(folder.getRoot(), name);
+
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private RoutesSnapshot generate() throws Exception {
+        RoutesSnapshot.main(new String[] { folder.getRoot().getAbsolutePath(), "ext/camel/*" });
+
+        return load();
+    }
+
+    private RoutesSnapshot load() throws Exception {
+        final File file = new File(folder.getRoot(), RoutesSnapshot.DEFAULT_LOCATION);
+
+        return RoutesSnapshot.load(new PathMatchingResourcePatternResolver(), "file:" + file.getAbsolutePath());
+    }
+
+    private boolean apply(RoutesSnapshot snapshot, Resource resource) throws Exception {
+        final boolean[] answer = new boolean[1];
+
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                answer[0] = snapshot.apply(resource, ".yaml", this);
+            }
+        });
+
+        return answer[0];
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.autoconfigure;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.lburgazzoli.camel.route.scripting.GroovyRouteLoader;
+import com.github.lburgazzoli.camel.route.scripting.ScriptHelper;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.ExchangeFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutesWarmUpTest {
+    private static final int ITERATIONS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefaultCamelContext context;
+    private RoutesLoaderConfigurationProperties configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new RoutesLoaderConfigurationProperties();
+        configuration.getWarmUp().setEnabled(true);
+        configuration.getWarmUp().setIterations(ITERATIONS);
+        configuration.getWarmUp().setBatchSize(10);
+
+        context = new DefaultCamelContext();
+        context.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testCallbacksAreWarmedUp() throws Exception {
+        final AtomicInteger processed = new AtomicInteger();
+        final RouteDefinition route = new RouteDefinition("direct:a").routeId("a");
+
+        route.process(e -> processed.incrementAndGet());
+        route.filter(e -> processed.get() > 0).to("mock:a");
+
+        new RoutesWarmUp(configuration.getWarmUp()).warmUp(context, "routes", Collections.singletonList(route), Collections.emptyList());
+
+        assertThat(processed.get()).isBetween(1, ITERATIONS);
+    }
+
+    @Test
+    public void testFormattersAreWarmedUpOnce() throws Exception {
+        final AtomicInteger formatted = new AtomicInteger();
+        final ExchangeFormatter formatter = e -> "f" + formatted.incrementAndGet();
+        final RoutesWarmUp warmUp = new RoutesWarmUp(configuration.getWarmUp());
+
+        warmUp.warmUp(context, "first", Collections.emptyList(), Arrays.asList(formatter));
+
+        final int count = formatted.get();
+        assertThat(count).isBetween(1, ITERATIONS);
+
+        // a formatter shared by another script is not warmed up again
+        warmUp.warmUp(context, "second", Collections.emptyList(), Arrays.asList(formatter));
+
+        assertThat(formatted.get()).isEqualTo(count);
+    }
+
+    @Test
+    public void testFormattersSetByScriptsAreWarmedUp() throws Exception {
+        final RoutesLoaderMapping mapping = new RoutesLoaderMapping(".groovy", new GroovyRouteLoader());
+        final RoutesLoader loader = new RoutesLoader(
+            new GenericApplicationContext(),
+            configuration,
+            Collections.singletonList(mapping),
+            null,
+            new RoutesLoaderProgress(),
+            null,
+            null);
+
+        final Resource resource = script(
+            "routes.groovy",
+            "components.get('log').exchangeFormatter = { e ->",
+            "    def options = e.context.globalOptions",
+            "    options.put('formatted', String.valueOf(Integer.parseInt(options.getOrDefault('formatted', '0')) + 1))",
+            "    'formatted'",
+            "}",
+            "",
+            "from('direct:a').routeId('a').to('log:a')"
+        );
+
+        loader.add(context, resource, loader.builder(context, resource, mapping));
+
+        assertThat(context.getRoute("a")).isNotNull();
+        assertThat(context.getGlobalOptions()).containsKey("formatted");
+        assertThat(Integer.parseInt(context.getGlobalOptions().get("formatted"))).isBetween(1, ITERATIONS);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource script(String name, String... lines) throws Exception {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+}
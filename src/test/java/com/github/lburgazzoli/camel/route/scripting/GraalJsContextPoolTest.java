@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.SimpleRegistry;
+import org.graalvm.polyglot.Engine;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GraalJsContextPoolTest {
+    private static final int POOL_SIZE = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private Engine engine;
+    private GraalJsContextManager manager;
+    private GraalJsRouteLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("GraalJS is not available", isGraalJsAvailable());
+
+        final SimpleRegistry registry = new SimpleRegistry();
+        registry.put("upper", (Processor) e -> e.getIn().setBody(e.getIn().getBody(String.class).toUpperCase()));
+
+        context = new DefaultCamelContext(registry);
+        context.start();
+
+        engine = Engine.create();
+        manager = new GraalJsContextManager(engine, POOL_SIZE);
+        loader = new GraalJsRouteLoader(manager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (context != null) {
+            context.stop();
+        }
+        if (manager != null) {
+            manager.close();
+        }
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testCallbacksMappedByPosition() throws Exception {
+        final Resource resource = script(
+            "routes.gjs",
+            "function append(suffix) {",
+            "    return function(e) { e.getIn().setBody(e.getIn().getBody() + suffix) }",
+            "}",
+            "",
+            "from('direct:start')",
+            "    .routeId('start')",
+            "    .process(append('-a'))",
+            "    .filter(function(e) { return e.getIn().getBody().startsWith('keep') })",
+            "        .process(append('-c'))",
+            "    .end()",
+            "    .process(append('-b'))"
+        );
+
+        load(resource);
+
+        final GraalJsContextPool pool = manager.getPool(ScriptHelper.uri(resource));
+        assertThat(pool).isNotNull();
+
+        final ProducerTemplate template = context.createProducerTemplate();
+        assertThat(template.requestBody("direct:start", "keep", String.class)).isEqualTo("keep-a-c-b");
+        assertThat(template.requestBody("direct:start", "drop", String.class)).isEqualTo("drop-a-b");
+        assertThat(pool.getSize()).isEqualTo(POOL_SIZE);
+        assertThat(pool.getActive()).isEqualTo(0);
+    }
+
+    @Test
+    public void testJavaProcessorsDoNotShiftCallbacks() throws Exception {
+        final Resource resource = script(
+            "mixed.gjs",
+            "from('direct:start')",
+            "    .routeId('mixed')",
+            "    .process(context.getRegistry().lookupByName('upper'))",
+            "    .process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-a') })",
+            "    .process(context.getRegistry().lookupByName('upper'))",
+            "    .process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-b') })"
+        );
+
+        load(resource);
+
+        final ProducerTemplate template = context.createProducerTemplate();
+        assertThat(template.requestBody("direct:start", "m", String.class)).isEqualTo("M-A-b");
+    }
+
+    @Test
+    public void testPoolIsFilledOnLoadWithDetachedContexts() throws Exception {
+        final Resource resource = script(
+            "detached.gjs",
+            "var count = context.getGlobalOptions().get('evaluations')",
+            "context.getGlobalOptions().put('evaluations', count == null ? '1' : String(Number(count) + 1))",
+            "from('direct:start')",
+            "    .routeId('detached')",
+            "    .process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-a') })"
+        );
+
+        load(resource);
+
+        // all the contexts have been created while loading the script but
+        // the script has changed the actual camel context only once
+        final GraalJsContextPool pool = manager.getPool(ScriptHelper.uri(resource));
+        assertThat(pool.getSize()).isEqualTo(POOL_SIZE);
+        assertThat(pool.getActive()).isEqualTo(0);
+        assertThat(context.getGlobalOptions()).containsEntry("evaluations", "1");
+
+        final ProducerTemplate template = context.createProducerTemplate();
+        assertThat(template.requestBody("direct:start", "m", String.class)).isEqualTo("m-a");
+        assertThat(pool.getSize()).isEqualTo(POOL_SIZE);
+    }
+
+    @Test
+    public void testConcurrentCallbacks() throws Exception {
+        final Resource resource = script(
+            "concurrent.gjs",
+            "from('direct:start')",
+            "    .routeId('concurrent')",
+            "    .process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-a') })",
+            "    .process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-b') })"
+        );
+
+        load(resource);
+
+        final GraalJsContextPool pool = manager.getPool(ScriptHelper.uri(resource));
+        final ProducerTemplate template = context.createProducerTemplate();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final String body = "m" + i;
+                results.add(executor.submit(() -> template.requestBody("direct:start", body, String.class)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get()).isEqualTo("m" + i + "-a-b");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(pool.getSize()).isEqualTo(POOL_SIZE);
+        assertThat(pool.getActive()).isEqualTo(0);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource script(String name, String... lines) throws Exception {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(Resource resource) throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+
+    private static boolean isGraalJsAvailable() {
+        try (Engine engine = Engine.create()) {
+            return engine.getLanguages().containsKey("js");
+        } catch (Throwable e) {
+            // no polyglot implementation on this jvm
+            return false;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelExecutionException;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.model.ProcessDefinition;
+import org.graalvm.polyglot.Engine;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GraalJsRouteLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private Engine engine;
+    private GraalJsContextManager manager;
+    private GraalJsRouteLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("GraalJS is not available", isGraalJsAvailable());
+
+        context = new DefaultCamelContext();
+        context.start();
+
+        engine = Engine.create();
+        manager = new GraalJsContextManager(engine, 1);
+        loader = new GraalJsRouteLoader(manager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (context != null) {
+            context.stop();
+        }
+        if (manager != null) {
+            manager.close();
+        }
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testScriptsShareTheEngine() throws Exception {
+        final Resource a = script("a", "routes.gjs", route("a"));
+        final Resource b = script("b", "routes.gjs", route("b"));
+
+        load(loader, a);
+        load(loader, b);
+
+        // scripts with the same file name are told apart by their uri
+        assertThat(manager.getPools()).hasSize(2);
+        assertThat(manager.getPool(ScriptHelper.uri(a))).isNotNull();
+        assertThat(manager.getPool(ScriptHelper.uri(b))).isNotNull();
+        assertThat(manager.getEngine()).isSameAs(engine);
+
+        assertThat(request("direct:a")).isEqualTo("x-a");
+        assertThat(request("direct:b")).isEqualTo("x-b");
+    }
+
+    @Test
+    public void testFunctionsAreInvokedThroughTypedAdapters() throws Exception {
+        final Resource resource = script(
+            "a",
+            "typed.gjs",
+            "var c = components.make('fmt', 'org.apache.camel.component.log.LogComponent')",
+            "c.setExchangeFormatter(function(e) { return 'fmt - ' + e.getIn().getBody() })",
+            route("a"));
+
+        load(loader, resource);
+
+        final String name = ScriptHelper.uri(resource);
+        final LogComponent component = context.getComponent("fmt", LogComponent.class);
+        final ProcessDefinition definition = RouteModelHelper.filter(context.getRouteDefinitions(), ProcessDefinition.class).get(0);
+
+        // callbacks run on the contexts of the pool
+        assertThat(definition.getProcessor().toString()).isEqualTo("GraalJsProcessor[" + name + "#0/process/0]");
+        assertThat(component.getExchangeFormatter().toString()).isEqualTo("GraalJsFormatter[" + name + "#component/fmt]");
+
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody("b");
+
+        assertThat(request("direct:a")).isEqualTo("x-a");
+        assertThat(component.getExchangeFormatter().format(exchange)).isEqualTo("fmt - b");
+    }
+
+    @Test
+    public void testLibraries() throws Exception {
+        loader.addLibrary(script("lib", "helpers.gjs", "function suffix(body) { return body + '-lib' }"));
+
+        load(loader, script("a", "routes.gjs",
+            "from('direct:a').routeId('a').process(function(e) { e.getIn().setBody(suffix(e.getIn().getBody())) })"));
+
+        // the library is evaluated in every context of the pool as well
+        assertThat(request("direct:a")).isEqualTo("x-lib");
+    }
+
+    @Test
+    public void testFailedScriptsDoNotKeepContexts() throws Exception {
+        final Resource resource = script("a", "broken.gjs", "from('direct:a'");
+
+        assertThatThrownBy(() -> load(loader, resource)).isInstanceOf(Exception.class);
+        assertThat(manager.getPools()).isEmpty();
+    }
+
+    @Test
+    public void testStandaloneLoaderClosesItsContexts() throws Exception {
+        final GraalJsRouteLoader standalone = GraalJsRouteLoader.standalone(1);
+        final Resource resource = script("a", "routes.gjs", route("a"));
+
+        load(standalone, resource);
+
+        assertThat(request("direct:a")).isEqualTo("x-a");
+
+        standalone.close();
+
+        // the contexts running the callbacks are gone with the engine
+        assertThatThrownBy(() -> request("direct:a")).isInstanceOf(CamelExecutionException.class);
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static String route(String id) {
+        return "from('direct:" + id + "').routeId('" + id + "').process(function(e) { e.getIn().setBody(e.getIn().getBody() + '-" + id + "') })";
+    }
+
+    private Resource script(String directory, String name, String... lines) throws Exception {
+        final File root = new File(folder.getRoot(), directory);
+        final File file = new File(root, name);
+
+        Files.createDirectories(root.toPath());
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(GraalJsRouteLoader loader, Resource resource) throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+
+    private String request(String uri) {
+        final ProducerTemplate template = context.createProducerTemplate();
+
+        return template.requestBody(uri, "x", String.class);
+    }
+
+    private static boolean isGraalJsAvailable() {
+        try (Engine engine = Engine.create()) {
+            return engine.getLanguages().containsKey("js");
+        } catch (Throwable e) {
+            // no polyglot implementation on this jvm
+            return false;
+        }
+    }
+}
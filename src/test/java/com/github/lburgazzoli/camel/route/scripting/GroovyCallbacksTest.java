@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.model.FilterDefinition;
+import org.apache.camel.model.ProcessDefinition;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.TransformDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GroovyCallbacksTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private GroovyRouteLoader loader;
+    private Resource resource;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        context.start();
+
+        loader = new GroovyRouteLoader(null, new GroovyClassManager());
+
+        final File file = folder.newFile("callbacks.groovy");
+        Files.write(file.toPath(), String.join("\n",
+            "c = components.make('fmt', 'org.apache.camel.component.log.LogComponent')",
+            "c.exchangeFormatter = { 'fmt - ' + it.in.body }",
+            "",
+            "from('direct:start')",
+            "    .routeId('callbacks')",
+            "    .process { it.in.body = it.in.body + '-p' }",
+            "    .filter { it.in.body.startsWith('keep') }",
+            "        .transform { it.in.body + '-e' }",
+            "    .end()"
+        ).getBytes(ScriptHelper.CHARSET));
+
+        resource = new FileSystemResource(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testClosuresAreAdapted() throws Exception {
+        load();
+
+        final List<RouteDefinition> routes = context.getRouteDefinitions();
+
+        assertThat(RouteModelHelper.filter(routes, ProcessDefinition.class).get(0).getProcessor().toString()).startsWith("GroovyProcessor[");
+        assertThat(RouteModelHelper.filter(routes, FilterDefinition.class).get(0).getExpression().getPredicate().toString()).startsWith("GroovyPredicate[");
+        assertThat(RouteModelHelper.filter(routes, TransformDefinition.class).get(0).getExpression().getExpressionValue().toString()).startsWith("GroovyExpression[");
+        assertThat(context.getComponent("fmt", LogComponent.class).getExchangeFormatter().toString()).startsWith("GroovyFormatter[");
+
+        assertCallbacks();
+    }
+
+    @Test
+    public void testClosuresAreLeftUntouchedIfNotTyped() throws Exception {
+        loader.setTypedCallbacks(false);
+        load();
+
+        final List<RouteDefinition> routes = context.getRouteDefinitions();
+
+        assertThat(Proxy.isProxyClass(RouteModelHelper.filter(routes, ProcessDefinition.class).get(0).getProcessor().getClass())).isTrue();
+        assertThat(Proxy.isProxyClass(context.getComponent("fmt", LogComponent.class).getExchangeFormatter().getClass())).isTrue();
+
+        assertCallbacks();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private void load() throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+
+    private void assertCallbacks() {
+        final ProducerTemplate template = context.createProducerTemplate();
+
+        assertThat(template.requestBody("direct:start", "keep", String.class)).isEqualTo("keep-p-e");
+        assertThat(template.requestBody("direct:start", "drop", String.class)).isEqualTo("drop-p");
+
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody("b");
+
+        assertThat(context.getComponent("fmt", LogComponent.class).getExchangeFormatter().format(exchange)).isEqualTo("fmt - b");
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GroovyClassManagerTest {
+    private static final String SCRIPT = "routes.groovy";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private GroovyClassManager manager;
+    private GroovyRouteLoader loader;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        context.start();
+
+        manager = new GroovyClassManager(1);
+        loader = new GroovyRouteLoader(null, manager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+        manager.close();
+    }
+
+    @Test
+    public void testClassesReleasedWhenSuperseded() throws Exception {
+        final Resource resource = script("v1");
+        load(resource);
+
+        final GroovyScriptClasses v1 = single();
+        assertThat(v1.getRouteCount()).isEqualTo(1);
+
+        script("v2");
+        load(resource);
+
+        // the routes of the previous version are still running
+        assertThat(manager.getClasses(SCRIPT)).hasSize(2);
+        assertThat(v1.isReleased()).isFalse();
+
+        removeRoute("v1");
+
+        final GroovyScriptClasses v2 = single();
+        assertThat(v2).isNotSameAs(v1);
+        assertThat(v2.isReleased()).isFalse();
+        assertThat(v1.isReleased()).isTrue();
+    }
+
+    @Test
+    public void testClassesCachedWhenUnused() throws Exception {
+        final Resource resource = script("v1");
+        load(resource);
+
+        final GroovyScriptClasses classes = single();
+
+        // the classes are kept for the script to be evaluated again, i.e.
+        // when lazy routes are activated again
+        removeRoute("v1");
+
+        assertThat(classes.getRouteCount()).isEqualTo(0);
+        assertThat(classes.isReleased()).isFalse();
+
+        load(resource);
+
+        assertThat(single()).isSameAs(classes);
+        assertThat(classes.getRouteCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testClassesReleasedWhenEvicted() throws Exception {
+        final Resource resource = script("v1");
+        load(resource);
+
+        final GroovyScriptClasses classes = single();
+        removeRoute("v1");
+
+        // the cache holds the classes of a single script
+        load(script("other.groovy", "other"));
+
+        assertThat(classes.isReleased()).isTrue();
+        assertThat(manager.getScripts()).containsExactly("other.groovy");
+    }
+
+    @Test
+    public void testScriptsWithTheSameNameDoNotSupersedeEachOther() throws Exception {
+        final GroovyClassManager manager = new GroovyClassManager(2);
+        final GroovyRouteLoader loader = new GroovyRouteLoader(null, manager);
+
+        try {
+            final Resource a = script(folder.newFolder("a"), SCRIPT, "a");
+            final Resource b = script(folder.newFolder("b"), SCRIPT, "b");
+
+            load(loader, a);
+            load(loader, b);
+
+            assertThat(manager.getClasses(SCRIPT)).hasSize(2);
+
+            final GroovyScriptClasses classes = manager.getClasses(SCRIPT).stream()
+                .filter(c -> c.getUri().equals(ScriptHelper.uri(a)))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+
+            // the classes of the first script are kept in the cache as the
+            // second script is loaded from another location
+            removeRoute("a");
+
+            assertThat(classes.getRouteCount()).isEqualTo(0);
+            assertThat(classes.isReleased()).isFalse();
+            assertThat(manager.getClasses(SCRIPT)).hasSize(2);
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void testClassesReleasedWhenClosed() throws Exception {
+        load(script("v1"));
+
+        final GroovyScriptClasses classes = single();
+        manager.close();
+
+        assertThat(classes.isReleased()).isTrue();
+        assertThat(manager.getClasses()).isEmpty();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource script(String version) throws Exception {
+        return script(SCRIPT, version);
+    }
+
+    private Resource script(String name, String version) throws Exception {
+        return script(folder.getRoot(), name, version);
+    }
+
+    private Resource script(File directory, String name, String version) throws Exception {
+        final File file = new File(directory, name);
+
+        Files.write(
+            file.toPath(),
+            String.format("from('direct:%s').routeId('%s').setBody().constant('%s')", version, version, version).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(Resource resource) throws Exception {
+        load(loader, resource);
+    }
+
+    private void load(GroovyRouteLoader loader, Resource resource) throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+
+    private void removeRoute(String id) throws Exception {
+        context.stopRoute(id);
+        context.removeRoute(id);
+    }
+
+    private GroovyScriptClasses single() {
+        assertThat(manager.getClasses(SCRIPT)).hasSize(1);
+
+        return manager.getClasses(SCRIPT).get(0);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.log.LogComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GroovyRouteLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private GroovyRouteLoader loader;
+
+    @Before
+    public void setUp() {
+        context = new DefaultCamelContext();
+        loader = new GroovyRouteLoader(null, new GroovyClassManager());
+    }
+
+    @Test
+    public void testStaticSampleWithCompileStatic() throws Exception {
+        loader.setCompileStatic(true);
+        load(new ClassPathResource("ext/camel/static/routes.groovy"));
+
+        assertThat(context.getRouteDefinition("groovy-static")).isNotNull();
+        assertThat(context.getRouteDefinition("groovy-static").getInputs().get(0).getUri()).isEqualTo("timer:groovy-static?period=1s");
+
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody("b");
+
+        final LogComponent component = context.getComponent("sss", LogComponent.class);
+        assertThat(component.getExchangeFormatter().format(exchange)).startsWith("sss - body=b");
+    }
+
+    @Test
+    public void testStaticSampleWithoutCompileStatic() throws Exception {
+        load(new ClassPathResource("ext/camel/static/routes.groovy"));
+
+        assertThat(context.getRouteDefinition("groovy-static")).isNotNull();
+    }
+
+    @Test
+    public void testDynamicSampleDoesNotCompileStatically() {
+        loader.setCompileStatic(true);
+
+        assertThatThrownBy(() -> load(new ClassPathResource("ext/camel/routes.groovy")))
+            .isInstanceOf(Exception.class);
+    }
+
+    @Test
+    public void testLibraries() throws Exception {
+        loader.addLibrary(write("helpers.groovy",
+            "def suffix(String body) { body + '-lib' }",
+            "prefix = 'lib'"));
+
+        load(write("a.groovy", "from('direct:a').routeId(prefix + '-a').setBody().constant(suffix('a'))"));
+        load(write("b.groovy", "from('direct:b').routeId('b').setBody().constant(libraries.helpers.suffix('b'))"));
+
+        assertThat(context.getRouteDefinition("lib-a").getOutputs().get(0).toString()).contains("a-lib");
+        assertThat(context.getRouteDefinition("b").getOutputs().get(0).toString()).contains("b-lib");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource write(String name, String... lines) throws Exception {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(Resource resource) throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GroovyScriptCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GroovyScriptCache cache;
+    private CamelContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new GroovyScriptCache(new File(folder.getRoot(), "cache").toPath());
+        context = new DefaultCamelContext();
+        context.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.getMisses()).isEqualTo(1);
+
+        cache.put("key", Collections.singletonMap("Script", new byte[] { 1, 2, 3 }));
+
+        final Map<String, byte[]> classes = cache.get("key");
+
+        assertThat(classes).containsOnlyKeys("Script");
+        assertThat(classes.get("Script")).containsExactly(1, 2, 3);
+        assertThat(cache.getHits()).isEqualTo(1);
+
+        // entries are not replaced once stored
+        cache.put("key", Collections.singletonMap("Other", new byte[] { 4 }));
+
+        assertThat(cache.get("key")).containsOnlyKeys("Script");
+    }
+
+    @Test
+    public void testScriptsAreLoadedFromTheCache() throws Exception {
+        final Resource script = write("routes.groovy", "from('direct:a').routeId('a').setBody().constant('a')");
+
+        // each loader has its own class manager so the classes are not
+        // shared in memory, as after a restart
+        load(new GroovyRouteLoader(cache, new GroovyClassManager()), script);
+
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isZero();
+        assertThat(cache.getDirectory().toFile().list()).hasSize(1);
+
+        context.removeRouteDefinitions(context.getRouteDefinitions());
+        load(new GroovyRouteLoader(cache, new GroovyClassManager()), script);
+
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(request("direct:a")).isEqualTo("a");
+    }
+
+    @Test
+    public void testChangedScriptsAreCompiledAgain() throws Exception {
+        final Resource script = write("routes.groovy", "from('direct:a').routeId('a').setBody().constant('a')");
+
+        load(new GroovyRouteLoader(cache, new GroovyClassManager()), script);
+        context.removeRouteDefinitions(context.getRouteDefinitions());
+
+        write("routes.groovy", "from('direct:a').routeId('a').setBody().constant('b')");
+        load(new GroovyRouteLoader(cache, new GroovyClassManager()), script);
+
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+        assertThat(cache.getDirectory().toFile().list()).hasSize(2);
+        assertThat(request("direct:a")).isEqualTo("b");
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private Resource write(String name, String content) throws Exception {
+        final File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(ScriptHelper.CHARSET));
+
+        return new FileSystemResource(file);
+    }
+
+    private void load(GroovyRouteLoader loader, Resource resource) throws Exception {
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(resource, this);
+            }
+        });
+    }
+
+    private String request(String uri) {
+        final ProducerTemplate template = context.createProducerTemplate();
+
+        return template.requestBody(uri, null, String.class);
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+import javax.script.CompiledScript;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NashornRouteLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("Nashorn is not available", ClassUtils.isPresent("jdk.nashorn.api.scripting.NashornScriptEngineFactory", null));
+
+        context = new DefaultCamelContext();
+    }
+
+    @Test
+    public void testScriptsAreCompiledOncePerContent() throws Exception {
+        final NashornRouteLoader loader = new NashornRouteLoader();
+        final File file = folder.newFile("routes.js");
+        final Resource resource = new FileSystemResource(file);
+        final String uri = ScriptHelper.uri(resource);
+
+        write(file, "from('direct:a').routeId('a').setBody().constant('v1')");
+
+        assertThat(load(loader, resource).getRouteCollection().getRoutes()).hasSize(1);
+
+        final CompiledScript compiled = loader.getCompiledScript(uri);
+        assertThat(compiled).isNotNull();
+
+        load(loader, resource);
+
+        assertThat(loader.getCompiledScript(uri)).isSameAs(compiled);
+        assertThat(loader.getCompiledScripts()).isEqualTo(1);
+
+        // a new content replaces the compiled script of the resource
+        write(file, "from('direct:a').routeId('a').setBody().constant('v2')");
+
+        final RouteBuilder builder = load(loader, resource);
+
+        assertThat(loader.getCompiledScript(uri)).isNotSameAs(compiled);
+        assertThat(loader.getCompiledScripts()).isEqualTo(1);
+        assertThat(builder.getRouteCollection().getRoutes().get(0).getOutputs().get(0).toString()).contains("v2");
+    }
+
+    @Test
+    public void testFailedCompilationIsNotRetained() throws Exception {
+        final NashornRouteLoader loader = new NashornRouteLoader();
+        final File file = folder.newFile("broken.js");
+        final Resource resource = new FileSystemResource(file);
+
+        write(file, "from('direct:a'");
+
+        try {
+            load(loader, resource);
+        } catch (Exception e) {
+            // expected
+        }
+
+        assertThat(loader.getCompiledScripts()).isEqualTo(0);
+
+        write(file, "from('direct:a').to('log:a')");
+        load(loader, resource);
+
+        assertThat(loader.getCompiledScripts()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLibraries() throws Exception {
+        final NashornRouteLoader loader = new NashornRouteLoader();
+        final File library = folder.newFile("helpers.js");
+        final File file = folder.newFile("routes.js");
+
+        write(library, "function suffix(body) { return body + '-lib' }");
+        write(file, "from('direct:a').routeId('a').setBody().constant(suffix('a'))");
+
+        loader.addLibrary(new FileSystemResource(library));
+
+        final RouteBuilder builder = load(loader, new FileSystemResource(file));
+
+        assertThat(builder.getRouteCollection().getRoutes().get(0).getOutputs().get(0).toString()).contains("a-lib");
+    }
+
+    @Test
+    public void testCodeCacheDirectoryIsScopedToTheEngine() throws Exception {
+        final NashornRouteLoader loader = new NashornRouteLoader("--persistent-code-cache=true");
+        loader.setCodeCacheDirectory(folder.newFolder("cache").getAbsolutePath());
+        loader.warmUp();
+
+        assertThat(System.getProperty("nashorn.persistent.code.cache")).isNull();
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(ScriptHelper.CHARSET));
+    }
+
+    private RouteBuilder load(NashornRouteLoader loader, Resource resource) throws Exception {
+        final RouteBuilder builder = new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+            }
+        };
+
+        loader.accept(resource, builder);
+
+        return builder;
+    }
+}
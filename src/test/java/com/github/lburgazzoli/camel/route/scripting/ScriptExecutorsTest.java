@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.ThrottlingInflightRoutePolicy;
+import org.apache.camel.model.RouteDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.FileSystemResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ScriptExecutorsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CamelContext context;
+    private ScriptExecutorManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new DefaultCamelContext();
+        context.start();
+
+        manager = new ScriptExecutorManager();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testPoolsAreSharedByName() {
+        final ScriptExecutors a = new ScriptExecutors(context, manager, "a.groovy");
+        final ScriptExecutors b = new ScriptExecutors(context, manager, "b.groovy");
+        final List<String> created = new ArrayList<>();
+
+        manager.addListener(created::add);
+
+        final ExecutorService pool = a.pool("shared", 2);
+
+        assertThat(b.pool("shared", 2)).isSameAs(pool);
+        assertThat(manager.getNames()).containsExactly("shared");
+        assertThat(created).containsExactly("shared");
+
+        // only the script that created the pool can change its size
+        assertThatThrownBy(() -> b.pool("shared", 4)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(a.pool("shared", 4)).isSameAs(pool);
+        assertThat(((ThreadPoolExecutor) pool).getMaximumPoolSize()).isEqualTo(4);
+        assertThat(((ThreadPoolExecutor) pool).getCorePoolSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void testPoolsAreShutDownWithTheContext() throws Exception {
+        final ExecutorService pool = new ScriptExecutors(context, manager).pool("p", 1);
+
+        context.stop();
+
+        assertThat(pool.isShutdown()).isTrue();
+        assertThat(manager.getNames()).isEmpty();
+    }
+
+    @Test
+    public void testVirtualFallsBackToAPool() {
+        final ScriptExecutors executors = new ScriptExecutors(context, manager);
+        final ExecutorService executor = executors.virtual("v");
+
+        assertThat(manager.getNames()).containsExactly("v");
+
+        if (!executors.isVirtualThreadsSupported()) {
+            assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+        }
+    }
+
+    @Test
+    public void testLimitAndConsumers() {
+        final ScriptExecutors executors = new ScriptExecutors(context, manager);
+        final RouteDefinition route = executors.limit(new RouteDefinition("direct:a"), 10);
+
+        assertThat(route.getRoutePolicies()).hasSize(1);
+        assertThat(((ThrottlingInflightRoutePolicy) route.getRoutePolicies().get(0)).getMaxInflightExchanges()).isEqualTo(10);
+
+        assertThat(executors.consumers("seda:a", 4)).isEqualTo("seda:a?concurrentConsumers=4");
+        assertThat(executors.consumers("seda:a?size=10", 4)).isEqualTo("seda:a?size=10&concurrentConsumers=4");
+    }
+
+    @Test
+    public void testRoutesAreIsolatedFromTheScriptDsl() throws Exception {
+        final File file = folder.newFile("isolated.groovy");
+        Files.write(file.toPath(), String.join("\n",
+            "executors.isolate(from('direct:isolated').routeId('isolated'), 'isolated', 2)",
+            "    .process { it.in.body = Thread.currentThread().name }"
+        ).getBytes(ScriptHelper.CHARSET));
+
+        final GroovyRouteLoader loader = new GroovyRouteLoader();
+        loader.setExecutors(manager);
+
+        context.addRoutes(new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+                loader.accept(new FileSystemResource(file), this);
+            }
+        });
+
+        final ProducerTemplate template = context.createProducerTemplate();
+
+        assertThat(template.requestBody("direct:isolated", null, String.class)).contains("isolated");
+        assertThat(manager.getNames()).containsExactly("isolated");
+    }
+}
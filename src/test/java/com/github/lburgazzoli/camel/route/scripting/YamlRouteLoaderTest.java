@@ -0,0 +1,341 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.lburgazzoli.camel.route.scripting;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaComponent;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.ChoiceDefinition;
+import org.apache.camel.model.ConvertBodyDefinition;
+import org.apache.camel.model.ExpressionNode;
+import org.apache.camel.model.FilterDefinition;
+import org.apache.camel.model.LogDefinition;
+import org.apache.camel.model.ProcessDefinition;
+import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.model.RemoveHeaderDefinition;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.SetBodyDefinition;
+import org.apache.camel.model.SetHeaderDefinition;
+import org.apache.camel.model.SetPropertyDefinition;
+import org.apache.camel.model.ToDefinition;
+import org.apache.camel.model.WhenDefinition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.yaml.snakeyaml.error.MarkedYAMLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class YamlRouteLoaderTest {
+    private CamelContext context;
+
+    @Before
+    public void setUp() {
+        context = new DefaultCamelContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        context.stop();
+    }
+
+    @Test
+    public void testRoute() throws Exception {
+        final List<RouteDefinition> routes = load(
+            "routes:",
+            "  - from: direct:start",
+            "    id: start",
+            "    group: yaml",
+            "    auto-startup: false"
+        );
+
+        assertThat(routes).hasSize(1);
+        assertThat(routes.get(0).getInputs().get(0).getUri()).isEqualTo("direct:start");
+        assertThat(routes.get(0).getId()).isEqualTo("start");
+        assertThat(routes.get(0).getGroup()).isEqualTo("yaml");
+        assertThat(routes.get(0).getAutoStartup()).isEqualTo("false");
+    }
+
+    @Test
+    public void testSteps() throws Exception {
+        final List<RouteDefinition> routes = load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps:",
+            "      - to: log:yaml",
+            "      - log: ${body}",
+            "      - process: myProcessor",
+            "      - convert-body-to: java.lang.String",
+            "      - remove-header: RandomValue",
+            "      - set-body:",
+            "          constant: yaml",
+            "      - set-body: ${header.RandomValue}",
+            "      - set-header:",
+            "          name: RandomValue",
+            "          simple: ${random(1,100)}",
+            "      - set-property:",
+            "          name: Count",
+            "          constant: 1",
+            "      - filter:",
+            "          simple: ${header.RandomValue} > 50",
+            "          steps:",
+            "            - to: mock:filtered"
+        );
+
+        final List<ProcessorDefinition<?>> steps = routes.get(0).getOutputs();
+        assertThat(steps).hasSize(10);
+
+        assertThat(step(steps, 0, ToDefinition.class).getUri()).isEqualTo("log:yaml");
+        assertThat(step(steps, 1, LogDefinition.class).getMessage()).isEqualTo("${body}");
+        assertThat(step(steps, 2, ProcessDefinition.class).getRef()).isEqualTo("myProcessor");
+        assertThat(step(steps, 3, ConvertBodyDefinition.class).getType()).isEqualTo("java.lang.String");
+        assertThat(step(steps, 4, RemoveHeaderDefinition.class).getHeaderName()).isEqualTo("RandomValue");
+
+        assertExpression(step(steps, 5, SetBodyDefinition.class), "constant", "yaml");
+        assertExpression(step(steps, 6, SetBodyDefinition.class), "simple", "${header.RandomValue}");
+
+        final SetHeaderDefinition header = step(steps, 7, SetHeaderDefinition.class);
+        assertThat(header.getHeaderName()).isEqualTo("RandomValue");
+        assertExpression(header, "simple", "${random(1,100)}");
+
+        final SetPropertyDefinition property = step(steps, 8, SetPropertyDefinition.class);
+        assertThat(property.getPropertyName()).isEqualTo("Count");
+        assertExpression(property, "constant", "1");
+
+        final FilterDefinition filter = step(steps, 9, FilterDefinition.class);
+        assertExpression(filter, "simple", "${header.RandomValue} > 50");
+        assertThat(step(filter.getOutputs(), 0, ToDefinition.class).getUri()).isEqualTo("mock:filtered");
+    }
+
+    @Test
+    public void testNestedChoice() throws Exception {
+        final List<RouteDefinition> routes = load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps:",
+            "      - choice:",
+            "          when:",
+            "            - simple: ${header.kind} == 'a'",
+            "              steps:",
+            "                - choice:",
+            "                    when:",
+            "                      - simple: ${header.sub} == 'x'",
+            "                        steps:",
+            "                          - to: mock:ax",
+            "                    otherwise:",
+            "                      - to: mock:a",
+            "            - simple: ${header.kind} == 'b'",
+            "              steps:",
+            "                - to: mock:b",
+            "          otherwise:",
+            "            - log: other",
+            "            - to: mock:other",
+            "      - to: mock:end"
+        );
+
+        final List<ProcessorDefinition<?>> steps = routes.get(0).getOutputs();
+        assertThat(steps).hasSize(2);
+        assertThat(step(steps, 1, ToDefinition.class).getUri()).isEqualTo("mock:end");
+
+        final ChoiceDefinition choice = step(steps, 0, ChoiceDefinition.class);
+        assertThat(choice.getWhenClauses()).hasSize(2);
+
+        final WhenDefinition a = choice.getWhenClauses().get(0);
+        assertExpression(a, "simple", "${header.kind} == 'a'");
+
+        final ChoiceDefinition nested = step(a.getOutputs(), 0, ChoiceDefinition.class);
+        assertThat(nested.getWhenClauses()).hasSize(1);
+        assertExpression(nested.getWhenClauses().get(0), "simple", "${header.sub} == 'x'");
+        assertThat(step(nested.getWhenClauses().get(0).getOutputs(), 0, ToDefinition.class).getUri()).isEqualTo("mock:ax");
+        assertThat(step(nested.getOtherwise().getOutputs(), 0, ToDefinition.class).getUri()).isEqualTo("mock:a");
+
+        final WhenDefinition b = choice.getWhenClauses().get(1);
+        assertExpression(b, "simple", "${header.kind} == 'b'");
+        assertThat(step(b.getOutputs(), 0, ToDefinition.class).getUri()).isEqualTo("mock:b");
+
+        assertThat(choice.getOtherwise().getOutputs()).hasSize(2);
+        assertThat(step(choice.getOtherwise().getOutputs(), 0, LogDefinition.class).getMessage()).isEqualTo("other");
+        assertThat(step(choice.getOtherwise().getOutputs(), 1, ToDefinition.class).getUri()).isEqualTo("mock:other");
+    }
+
+    @Test
+    public void testComponents() throws Exception {
+        load(
+            "components:",
+            "  - name: yyy",
+            "    type: org.apache.camel.component.seda.SedaComponent",
+            "    properties:",
+            "      queueSize: 100"
+        );
+
+        assertThat(context.hasComponent("yyy")).isInstanceOf(SedaComponent.class);
+        assertThat(((SedaComponent) context.hasComponent("yyy")).getQueueSize()).isEqualTo(100);
+    }
+
+    @Test
+    public void testMultipleDocuments() throws Exception {
+        final List<RouteDefinition> routes = load(
+            "components:",
+            "  - name: yyy",
+            "    type: org.apache.camel.component.seda.SedaComponent",
+            "---",
+            "routes:",
+            "  - from: yyy:a",
+            "    id: a",
+            "---",
+            "---",
+            "routes:",
+            "  - from: direct:b",
+            "    id: b"
+        );
+
+        assertThat(context.hasComponent("yyy")).isInstanceOf(SedaComponent.class);
+        assertThat(routes.stream().map(RouteDefinition::getId).collect(Collectors.toList())).containsExactly("a", "b");
+    }
+
+    @Test
+    public void testRouteNotStartingWithFrom() {
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - id: start",
+            "    from: direct:start"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("A route must start with 'from'")
+            .hasMessageEndingWith("at line 2, column 9");
+    }
+
+    @Test
+    public void testUnknownKeys() {
+        assertThatThrownBy(() -> load(
+            "flows:",
+            "  - from: direct:start"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unexpected key 'flows'")
+            .hasMessageEndingWith("at line 2, column 3");
+
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - from: direct:start",
+            "    foo: bar"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unexpected key 'foo'")
+            .hasMessageEndingWith("at line 3, column 10");
+
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps:",
+            "      - foo: bar"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unexpected key 'foo'")
+            .hasMessageEndingWith("at line 4, column 14");
+
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps:",
+            "      - choice:",
+            "          unless:",
+            "            - to: mock:a"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unexpected key 'unless'")
+            .hasMessageEndingWith("at line 6, column 13");
+    }
+
+    @Test
+    public void testMissingExpression() {
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps:",
+            "      - set-header:",
+            "          name: RandomValue"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Missing expression in");
+    }
+
+    @Test
+    public void testInvalidComponents() {
+        assertThatThrownBy(() -> load(
+            "components:",
+            "  - type: org.apache.camel.component.seda.SedaComponent"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Missing component name");
+
+        assertThatThrownBy(() -> load(
+            "components:",
+            "  - name: yyy",
+            "    type: org.apache.camel.component.seda.SedaComponent",
+            "    properties:",
+            "      queueLength: 100"
+        ))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Unknown properties [queueLength] of component yyy");
+    }
+
+    @Test
+    public void testMalformedYaml() {
+        assertThatThrownBy(() -> load(
+            "routes:",
+            "  - from: direct:start",
+            "    steps: ["
+        ))
+            .isInstanceOfSatisfying(MarkedYAMLException.class, e -> assertThat(e.getProblemMark().getLine()).isEqualTo(2));
+    }
+
+    // ********************************
+    //
+    // Helpers
+    //
+    // ********************************
+
+    private List<RouteDefinition> load(String... lines) throws Exception {
+        final RouteBuilder builder = new RouteBuilder(context) {
+            @Override
+            public void configure() throws Exception {
+            }
+        };
+
+        new YamlRouteLoader().accept(new ByteArrayResource(String.join("\n", lines).getBytes(ScriptHelper.CHARSET), "yaml"), builder);
+
+        return builder.getRouteCollection().getRoutes();
+    }
+
+    private static <T> T step(List<ProcessorDefinition<?>> steps, int index, Class<T> type) {
+        assertThat(steps.get(index)).isInstanceOf(type);
+
+        return type.cast(steps.get(index));
+    }
+
+    private static void assertExpression(ExpressionNode node, String language, String expression) {
+        assertThat(node.getExpression().getLanguage()).isEqualTo(language);
+        assertThat(node.getExpression().getExpression()).isEqualTo(expression);
+    }
+}